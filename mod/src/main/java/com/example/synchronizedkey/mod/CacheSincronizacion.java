@@ -0,0 +1,133 @@
+package com.example.synchronizedkey.mod;
+
+import net.fabricmc.loader.api.FabricLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Caché local de la última lista de acciones recibida de cada servidor.
+ *
+ * Cada servidor tiene un archivo en config/synchronizedkey/cache con el
+ * formato [long hash][cuerpo binario de la lista]. Al conectarse, el mod
+ * envía ese hash en el saludo y, si coincide con el del servidor, este
+ * responde con una confirmación corta en lugar de la lista completa.
+ *
+ * Todas las lecturas y escrituras se hacen en un hilo de E/S propio para
+ * no bloquear el hilo del cliente ni el de red.
+ */
+public class CacheSincronizacion {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("SynchronizedKey-Cache");
+
+    /** Directorio donde se guardan los archivos de caché */
+    private final Path directorio;
+
+    /** Hilo único de E/S: serializa escrituras y lecturas del mismo archivo */
+    private final ExecutorService ejecutorIO = Executors.newSingleThreadExecutor(tarea -> {
+        Thread hilo = new Thread(tarea, "SynchronizedKey-IO");
+        hilo.setDaemon(true);
+        return hilo;
+    });
+
+    public CacheSincronizacion() {
+        this.directorio = FabricLoader.getInstance().getConfigDir().resolve("synchronizedkey").resolve("cache");
+    }
+
+    /**
+     * Lee el hash guardado para un servidor.
+     *
+     * @param claveServidor Clave del servidor (ver obtenerClaveServidor)
+     * @return Hash guardado, o SIN_HASH si no hay caché o no se pudo leer
+     */
+    public CompletableFuture<Long> leerHash(String claveServidor) {
+        return CompletableFuture.supplyAsync(() -> {
+            Path archivo = archivoDe(claveServidor);
+            if (!Files.isRegularFile(archivo)) {
+                return ProtocoloTeclas.SIN_HASH;
+            }
+            try (DataInputStream entrada = new DataInputStream(Files.newInputStream(archivo))) {
+                return entrada.readLong();
+            } catch (IOException e) {
+                LOGGER.warn("No se pudo leer el hash de la caché '{}': {}", archivo, e.getMessage());
+                return ProtocoloTeclas.SIN_HASH;
+            }
+        }, ejecutorIO);
+    }
+
+    /**
+     * Lee el cuerpo guardado para un servidor si su hash coincide.
+     *
+     * @param claveServidor Clave del servidor
+     * @param hashEsperado  Hash confirmado por el servidor
+     * @return Cuerpo binario de la lista, o null si no existe o no coincide
+     */
+    public CompletableFuture<byte[]> leerCuerpo(String claveServidor, long hashEsperado) {
+        return CompletableFuture.supplyAsync(() -> {
+            Path archivo = archivoDe(claveServidor);
+            if (!Files.isRegularFile(archivo)) {
+                return null;
+            }
+            try (InputStream flujo = Files.newInputStream(archivo);
+                 DataInputStream entrada = new DataInputStream(flujo)) {
+                if (entrada.readLong() != hashEsperado) {
+                    return null;
+                }
+                return entrada.readAllBytes();
+            } catch (IOException e) {
+                LOGGER.warn("No se pudo leer la caché '{}': {}", archivo, e.getMessage());
+                return null;
+            }
+        }, ejecutorIO);
+    }
+
+    /**
+     * Guarda de forma asíncrona la lista recibida de un servidor.
+     * Se escribe primero en un archivo temporal y luego se reemplaza, para
+     * no dejar nunca un archivo a medias.
+     *
+     * @param claveServidor Clave del servidor
+     * @param hash          Hash de la lista calculado por el servidor
+     * @param cuerpo        Cuerpo binario de la lista (no se modifica después)
+     */
+    public void guardar(String claveServidor, long hash, byte[] cuerpo) {
+        ejecutorIO.execute(() -> {
+            Path archivo = archivoDe(claveServidor);
+            Path temporal = archivo.resolveSibling(archivo.getFileName() + ".tmp");
+            try {
+                Files.createDirectories(directorio);
+                try (OutputStream flujo = Files.newOutputStream(temporal);
+                     DataOutputStream salida = new DataOutputStream(flujo)) {
+                    salida.writeLong(hash);
+                    salida.write(cuerpo);
+                }
+                Files.move(temporal, archivo, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                LOGGER.warn("No se pudo guardar la caché '{}': {}", archivo, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Convierte la clave del servidor en un nombre de archivo seguro.
+     *
+     * @param claveServidor Clave del servidor (dirección)
+     * @return Ruta del archivo de caché
+     */
+    private Path archivoDe(String claveServidor) {
+        String nombre = claveServidor.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9._-]", "_");
+        return directorio.resolve(nombre + ".bin");
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.synchronizedkey.mod;
+
+/**
+ * Cola circular de tamaño fijo con las teclas dinámicas pulsadas desde
+ * el último tick.
+ *
+ * La llena KeyBindingMixin al pulsarse una tecla y la vacía
+ * KeybindInputHandler en cada tick, así que el coste por tick depende de
+ * las pulsaciones y no del número de teclas del servidor. Ambos se
+ * ejecutan en el hilo del cliente, por lo que no necesita sincronización.
+ */
+public final class ColaPulsaciones {
+
+    /**
+     * Capacidad de la cola (potencia de 2); las pulsaciones que no caben se
+     * descartan. Coincide con el máximo de un lote, así que las pulsaciones
+     * de un tick siempre caben en un solo lote.
+     */
+    static final int CAPACIDAD = ProtocoloTeclas.MAXIMO_PULSACIONES_LOTE;
+
+    private final TeclaDinamica[] elementos = new TeclaDinamica[CAPACIDAD];
+
+    /** Posición del siguiente elemento a sacar */
+    private int inicio = 0;
+
+    /** Número de elementos en la cola */
+    private int cantidad = 0;
+
+    /**
+     * Añade una pulsación al final de la cola.
+     *
+     * @param tecla Tecla dinámica pulsada
+     * @return false si la cola estaba llena y se descartó
+     */
+    public boolean agregar(TeclaDinamica tecla) {
+        if (cantidad == CAPACIDAD) {
+            return false;
+        }
+        elementos[(inicio + cantidad) & (CAPACIDAD - 1)] = tecla;
+        cantidad++;
+        return true;
+    }
+
+    /**
+     * Saca la pulsación más antigua.
+     *
+     * @return Tecla pulsada, o null si la cola está vacía
+     */
+    public TeclaDinamica sacar() {
+        if (cantidad == 0) {
+            return null;
+        }
+        TeclaDinamica tecla = elementos[inicio];
+        elementos[inicio] = null;
+        inicio = (inicio + 1) & (CAPACIDAD - 1);
+        cantidad--;
+        return tecla;
+    }
+
+    /**
+     * @return true si no hay pulsaciones pendientes
+     */
+    public boolean estaVacia() {
+        return cantidad == 0;
+    }
+
+    /**
+     * Descarta las pulsaciones pendientes (al cambiar las teclas o salir del mundo).
+     */
+    public void vaciar() {
+        while (sacar() != null) {
+            // Se limpian las referencias para no retener KeyBindings eliminados
+        }
+    }
+}
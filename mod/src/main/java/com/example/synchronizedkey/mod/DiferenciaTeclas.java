@@ -0,0 +1,50 @@
+package com.example.synchronizedkey.mod;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Cambios entre la lista de acciones que tiene registrada el cliente y
+ * una lista nueva, con el mismo formato que un delta del servidor.
+ *
+ * Se calcula en el hilo de red al recibir una lista completa, para que el
+ * hilo del cliente solo tenga que aplicar los cambios (ver
+ * DynamicKeybindManager#aplicarDelta) en lugar de comparar las listas.
+ *
+ * @param handlesEliminados Handles (de la lista anterior) de las acciones que ya no están
+ * @param cambios           Acciones nuevas o con algún dato distinto
+ */
+public record DiferenciaTeclas(Set<Integer> handlesEliminados, List<KeybindData> cambios) {
+
+    /**
+     * Compara dos listas de acciones por ID.
+     *
+     * @param anterior Lista registrada en el cliente
+     * @param nueva    Lista recibida
+     * @return Diferencia que convierte la anterior en la nueva
+     */
+    public static DiferenciaTeclas calcular(List<KeybindData> anterior, List<KeybindData> nueva) {
+        Map<String, KeybindData> anterioresPorId = new HashMap<>(anterior.size() * 2);
+        for (KeybindData accion : anterior) {
+            anterioresPorId.put(accion.id(), accion);
+        }
+
+        List<KeybindData> cambios = new ArrayList<>();
+        for (KeybindData accion : nueva) {
+            if (!accion.equals(anterioresPorId.remove(accion.id()))) {
+                cambios.add(accion);
+            }
+        }
+
+        // Las que quedan no están en la lista nueva
+        Set<Integer> handlesEliminados = new HashSet<>();
+        for (KeybindData eliminada : anterioresPorId.values()) {
+            handlesEliminados.add(eliminada.handle());
+        }
+        return new DiferenciaTeclas(handlesEliminados, cambios);
+    }
+}
@@ -19,19 +19,51 @@ import java.util.*;
  *
  * Utiliza lógica DIFERENCIAL para que al recibir un nuevo paquete de
  * sincronización (ej: /sk reload), se reutilicen los KeyBinding existentes
- * y se conserven las teclas personalizadas por el jugador.
+ * y se conserven las teclas personalizadas por el jugador. Esas teclas se
+ * guardan además por servidor (ver TeclasPersonalizadas) y se restauran al
+ * volver a crear las teclas en la siguiente conexión.
  */
 public class DynamicKeybindManager {
 
     private static final Logger LOGGER = LoggerFactory.getLogger("SynchronizedKey-Teclas");
 
     /**
-     * Mapa de teclas dinámicas activas: actionId -> KeyBinding.
-     * Se usa para detectar pulsaciones y para limpieza.
+     * Mapa de teclas dinámicas activas: actionId -> (handle, KeyBinding).
+     * Se usa al aplicar cada sincronización y para limpieza.
      * Los objetos KeyBinding se reutilizan entre reloads para
-     * preservar las asignaciones personalizadas del jugador.
+     * preservar las asignaciones personalizadas del jugador; solo
+     * se actualiza el handle asignado por el servidor.
      */
-    private final Map<String, KeyBinding> dynamicKeyMap = new HashMap<>();
+    private final Map<String, TeclaDinamica> dynamicKeyMap = new HashMap<>();
+
+    /**
+     * Las mismas teclas indexadas por su KeyBinding (por identidad), para
+     * reconocer en el momento de la pulsación si una tecla es dinámica.
+     */
+    private final Map<KeyBinding, TeclaDinamica> teclasPorBinding = new IdentityHashMap<>();
+
+    /**
+     * Tecla que tenía asignado el código de cada tecla dinámica en el
+     * índice de vanilla cuando esta se creó (por identidad), para
+     * devolvérselo al eliminarla.
+     */
+    private final Map<KeyBinding, KeyBinding> teclasDesplazadas = new IdentityHashMap<>();
+
+    /** Pulsaciones de teclas dinámicas pendientes de enviar en el próximo tick */
+    private final ColaPulsaciones colaPulsaciones = new ColaPulsaciones();
+
+    /**
+     * Generación de configuración del servidor a la que pertenecen los
+     * handles actuales. Se envía junto a cada pulsación.
+     */
+    private volatile int generacion = 0;
+
+    /**
+     * Instante (System.currentTimeMillis) en que termina el enfriamiento de
+     * cada acción, indexado por handle. Lo informa el servidor al usar una
+     * acción con cooldown_ms; mientras dura, las pulsaciones no se envían.
+     */
+    private long[] finEnfriamientoPorHandle = new long[0];
 
     /**
      * Nombre de la categoría dinámica actual (ej: "Servidor: MiServer").
@@ -45,19 +77,53 @@ public class DynamicKeybindManager {
      */
     private static final int CATEGORIA_ORDEN_PRIORIDAD = 100;
 
+    /** Almacén de las teclas personalizadas por servidor */
+    private final TeclasPersonalizadas teclasPersonalizadas;
+
+    /** Servidor cuyas teclas personalizadas se están usando (null sin conexión) */
+    private String claveServidor = null;
+
+    /**
+     * Teclas personalizadas del servidor actual: id de acción → clave de
+     * traducción de la tecla. Es el mapa en memoria del almacén.
+     */
+    private Map<String, String> personalizadas = new HashMap<>();
+
+    /** true si las teclas personalizadas cambiaron y hay que guardarlas al salir */
+    private boolean personalizadasModificadas = false;
+
+    /**
+     * Constructor del gestor de teclas.
+     *
+     * @param teclasPersonalizadas Almacén de las teclas personalizadas por servidor
+     */
+    public DynamicKeybindManager(TeclasPersonalizadas teclasPersonalizadas) {
+        this.teclasPersonalizadas = teclasPersonalizadas;
+    }
+
     /**
      * Registra las teclas dinámicas recibidas del servidor usando lógica
      * DIFERENCIAL. En lugar de borrar todo y recrear:
      * - Reutiliza KeyBindings existentes (conserva teclas personalizadas).
      * - Crea nuevos KeyBindings solo para acciones nuevas.
      * - Elimina KeyBindings de acciones que ya no envía el servidor.
+     * Las teclas nuevas se crean con la tecla que el jugador les asignó en
+     * conexiones anteriores, si la cambió.
      *
-     * @param acciones   Lista de acciones con sus teclas
-     * @param serverName Nombre del servidor (para la categoría)
+     * @param acciones       Lista de acciones con sus teclas
+     * @param serverName     Nombre del servidor (para la categoría)
+     * @param generacion     Generación de configuración de los handles recibidos
+     * @param claveServidor  Clave del servidor para las teclas personalizadas
+     * @param personalizadas Teclas personalizadas de ese servidor (ya cargadas)
      */
-    public void registrarTeclasDinamicas(List<KeybindData> acciones, String serverName) {
+    public void registrarTeclasDinamicas(List<KeybindData> acciones, String serverName, int generacion,
+                                         String claveServidor, Map<String, String> personalizadas) {
+        usarPersonalizadas(claveServidor, personalizadas);
         String categoria = "Servidor: " + serverName;
         categoriaActual = categoria;
+        this.generacion = generacion;
+        // Las pulsaciones pendientes son de los handles anteriores
+        colaPulsaciones.vaciar();
 
         // Registrar la categoría en el mapa de orden para evitar NPE
         // al ordenar categorías (compatibilidad con el mod Controlling)
@@ -72,40 +138,35 @@ public class DynamicKeybindManager {
         // --- Paso 1: Registrar nuevas teclas y reutilizar existentes ---
         List<KeyBinding> nuevasTeclas = new ArrayList<>();
         for (KeybindData accion : acciones) {
-            if (dynamicKeyMap.containsKey(accion.id())) {
+            TeclaDinamica existente = dynamicKeyMap.get(accion.id());
+            if (existente != null) {
                 // La tecla ya existe → reutilizar el objeto KeyBinding existente.
                 // Esto preserva la tecla que el jugador haya configurado manualmente.
+                // El handle puede cambiar entre generaciones, así que se actualiza.
+                ponerTecla(accion.id(), accion.handle(), existente.tecla());
                 LOGGER.info("Tecla '{}' ya existe, reutilizando (conserva config de usuario)",
                         accion.id());
             } else {
                 // Acción nueva → crear un nuevo KeyBinding
-                KeyBinding tecla = new KeyBinding(
-                        accion.label(), // Se muestra como nombre de la tecla
-                        InputUtil.Type.KEYSYM,
-                        accion.defaultKey(), // Código GLFW por defecto
-                        categoria // Categoría en el menú de controles
-                );
-
-                dynamicKeyMap.put(accion.id(), tecla);
-                nuevasTeclas.add(tecla);
-                LOGGER.info("Tecla dinámica NUEVA registrada: '{}' -> {} (GLFW: {})",
-                        accion.id(), accion.label(), accion.defaultKey());
+                nuevasTeclas.add(crearTecla(accion, categoria));
             }
         }
 
         // --- Paso 2: Eliminar teclas obsoletas (ya no vienen del servidor) ---
         List<KeyBinding> teclasEliminadas = new ArrayList<>();
-        Iterator<Map.Entry<String, KeyBinding>> iterador = dynamicKeyMap.entrySet().iterator();
+        Iterator<Map.Entry<String, TeclaDinamica>> iterador = dynamicKeyMap.entrySet().iterator();
         while (iterador.hasNext()) {
-            Map.Entry<String, KeyBinding> entrada = iterador.next();
+            Map.Entry<String, TeclaDinamica> entrada = iterador.next();
             if (!idsRecibidos.contains(entrada.getKey())) {
-                teclasEliminadas.add(entrada.getValue());
+                recordarPersonalizada(entrada.getKey(), entrada.getValue().tecla());
+                teclasEliminadas.add(entrada.getValue().tecla());
+                teclasPorBinding.remove(entrada.getValue().tecla());
                 iterador.remove();
                 LOGGER.info("Tecla obsoleta eliminada: '{}'", entrada.getKey());
             }
         }
 
-        // --- Paso 3: Actualizar allKeys solo si hubo cambios ---
+        // --- Paso 3: Actualizar allKeys y el índice por código solo si hubo cambios ---
         if (!nuevasTeclas.isEmpty() || !teclasEliminadas.isEmpty()) {
             actualizarAllKeys(nuevasTeclas, teclasEliminadas);
             LOGGER.info("allKeys actualizado: +{} nuevas, -{} eliminadas",
@@ -114,13 +175,194 @@ public class DynamicKeybindManager {
             LOGGER.info("Sin cambios en teclas dinámicas, allKeys intacto.");
         }
 
-        // Recalcular el mapa interno de teclas por código
-        KeyBinding.updateKeysByCode();
-
         LOGGER.info("Total de teclas dinámicas activas: {} (categoría: '{}')",
                 dynamicKeyMap.size(), categoria);
     }
 
+    /**
+     * Aplica un delta de sincronización recibido tras un /sk reload, sin
+     * recorrer la lista completa de acciones:
+     * - Elimina las teclas cuyos handles ya no existen.
+     * - Crea las teclas de las acciones nuevas y actualiza el handle de las
+     *   modificadas (reutilizando su KeyBinding).
+     *
+     * @param handlesEliminados Handles de la generación anterior que se eliminan
+     * @param cambios           Acciones nuevas o modificadas
+     * @param serverName        Nombre del servidor (para la categoría)
+     * @param generacion        Generación de configuración resultante
+     */
+    public void aplicarDelta(Set<Integer> handlesEliminados, List<KeybindData> cambios,
+                             String serverName, int generacion) {
+        String categoria = "Servidor: " + serverName;
+        categoriaActual = categoria;
+        this.generacion = generacion;
+        // Las pulsaciones pendientes son de los handles anteriores
+        colaPulsaciones.vaciar();
+        registrarOrdenCategoria(categoria);
+
+        // --- Paso 1: Eliminar las teclas de los handles borrados ---
+        List<KeyBinding> teclasEliminadas = new ArrayList<>();
+        if (!handlesEliminados.isEmpty()) {
+            Iterator<Map.Entry<String, TeclaDinamica>> iterador = dynamicKeyMap.entrySet().iterator();
+            while (iterador.hasNext()) {
+                Map.Entry<String, TeclaDinamica> entrada = iterador.next();
+                if (handlesEliminados.contains(entrada.getValue().handle())) {
+                    recordarPersonalizada(entrada.getKey(), entrada.getValue().tecla());
+                    teclasEliminadas.add(entrada.getValue().tecla());
+                    teclasPorBinding.remove(entrada.getValue().tecla());
+                    iterador.remove();
+                    LOGGER.info("Tecla obsoleta eliminada (delta): '{}'", entrada.getKey());
+                }
+            }
+        }
+
+        // --- Paso 2: Añadir nuevas y actualizar las modificadas ---
+        List<KeyBinding> nuevasTeclas = new ArrayList<>();
+        for (KeybindData accion : cambios) {
+            TeclaDinamica existente = dynamicKeyMap.get(accion.id());
+            if (existente != null) {
+                ponerTecla(accion.id(), accion.handle(), existente.tecla());
+            } else {
+                nuevasTeclas.add(crearTecla(accion, categoria));
+            }
+        }
+
+        // --- Paso 3: Las acciones sin cambios conservan su handle, pero sus
+        // pulsaciones deben enviarse con la nueva generación ---
+        for (TeclaDinamica teclaDinamica : List.copyOf(dynamicKeyMap.values())) {
+            if (teclaDinamica.pulsacion() instanceof KeybindPayload.Pulsacion pulsacion
+                    && pulsacion.generacion() != generacion) {
+                ponerTecla(teclaDinamica.id(), teclaDinamica.handle(), teclaDinamica.tecla());
+            }
+        }
+
+        if (!nuevasTeclas.isEmpty() || !teclasEliminadas.isEmpty()) {
+            actualizarAllKeys(nuevasTeclas, teclasEliminadas);
+        }
+
+        LOGGER.info("Delta aplicado: +{} nuevas, -{} eliminadas, {} cambios (generación {})",
+                nuevasTeclas.size(), teclasEliminadas.size(), cambios.size(), generacion);
+    }
+
+    /**
+     * Crea el KeyBinding de una acción nueva y lo añade al mapa de teclas.
+     *
+     * @param accion    Acción recibida del servidor
+     * @param categoria Categoría en el menú de controles
+     * @return KeyBinding creado (aún no añadido a allKeys)
+     */
+    private KeyBinding crearTecla(KeybindData accion, String categoria) {
+        // El constructor de KeyBinding ocupa su código en el índice de vanilla;
+        // se recuerda la tecla que lo tenía para devolvérselo al eliminar esta
+        Map<InputUtil.Key, KeyBinding> teclasPorCodigo = KeyBindingAccessor.getKeyToBindings();
+        InputUtil.Key codigoPorDefecto = InputUtil.Type.KEYSYM.createFromCode(accion.defaultKey());
+        KeyBinding desplazada = teclasPorCodigo.get(codigoPorDefecto);
+
+        KeyBinding tecla = new KeyBinding(
+                accion.label(), // Se muestra como nombre de la tecla
+                InputUtil.Type.KEYSYM,
+                accion.defaultKey(), // Código GLFW por defecto
+                categoria // Categoría en el menú de controles
+        );
+
+        // Restaurar la tecla que el jugador eligió en una conexión anterior
+        InputUtil.Key codigoPersonalizado = obtenerPersonalizada(accion.id());
+        if (codigoPersonalizado != null && !codigoPersonalizado.equals(codigoPorDefecto)) {
+            tecla.setBoundKey(codigoPersonalizado);
+            if (desplazada != null) {
+                teclasPorCodigo.put(codigoPorDefecto, desplazada);
+            } else {
+                teclasPorCodigo.remove(codigoPorDefecto, tecla);
+            }
+            desplazada = teclasPorCodigo.put(codigoPersonalizado, tecla);
+            LOGGER.info("Tecla personalizada restaurada para '{}': {}", accion.id(),
+                    codigoPersonalizado.getTranslationKey());
+        }
+
+        if (desplazada != null) {
+            teclasDesplazadas.put(tecla, desplazada);
+        }
+        ponerTecla(accion.id(), accion.handle(), tecla);
+        LOGGER.info("Tecla dinámica NUEVA registrada: '{}' -> {} (GLFW: {})",
+                accion.id(), accion.label(), accion.defaultKey());
+        return tecla;
+    }
+
+    /**
+     * Cambia a las teclas personalizadas de otro servidor, guardando antes
+     * las del anterior si cambiaron.
+     *
+     * @param clave               Clave del servidor
+     * @param nuevasPersonalizadas Teclas personalizadas de ese servidor
+     */
+    private void usarPersonalizadas(String clave, Map<String, String> nuevasPersonalizadas) {
+        if (clave.equals(claveServidor)) {
+            return;
+        }
+        guardarPersonalizadas();
+        claveServidor = clave;
+        personalizadas = nuevasPersonalizadas;
+    }
+
+    /**
+     * @param id ID de la acción
+     * @return Tecla personalizada por el jugador, o null si usa la del servidor
+     */
+    private InputUtil.Key obtenerPersonalizada(String id) {
+        String claveTecla = personalizadas.get(id);
+        if (claveTecla == null) {
+            return null;
+        }
+        try {
+            return InputUtil.fromTranslationKey(claveTecla);
+        } catch (IllegalArgumentException e) {
+            LOGGER.warn("Tecla personalizada desconocida para '{}': {}", id, claveTecla);
+            return null;
+        }
+    }
+
+    /**
+     * Anota la tecla actual de una acción en las teclas personalizadas: la
+     * guarda si el jugador la cambió y la olvida si vuelve a ser la del
+     * servidor.
+     *
+     * @param id    ID de la acción
+     * @param tecla KeyBinding de la acción
+     */
+    private void recordarPersonalizada(String id, KeyBinding tecla) {
+        String actual = tecla.isDefault() ? null : tecla.getBoundKeyTranslationKey();
+        String anterior = actual == null ? personalizadas.remove(id) : personalizadas.put(id, actual);
+        if (!Objects.equals(anterior, actual)) {
+            personalizadasModificadas = true;
+        }
+    }
+
+    /**
+     * Guarda en segundo plano las teclas personalizadas del servidor actual
+     * si cambiaron.
+     */
+    private void guardarPersonalizadas() {
+        if (personalizadasModificadas && claveServidor != null) {
+            teclasPersonalizadas.guardar(claveServidor, Map.copyOf(personalizadas));
+        }
+        personalizadasModificadas = false;
+    }
+
+    /**
+     * Guarda una tecla dinámica en los dos índices, con el payload de
+     * pulsación de la generación actual ya construido.
+     *
+     * @param id     ID de la acción
+     * @param handle Handle de la acción en la generación actual
+     * @param tecla  KeyBinding de la acción (nuevo o reutilizado)
+     */
+    private void ponerTecla(String id, int handle, KeyBinding tecla) {
+        TeclaDinamica teclaDinamica = new TeclaDinamica(id, handle, tecla,
+                KeybindPayload.crearPulsacion(id, generacion, handle));
+        dynamicKeyMap.put(id, teclaDinamica);
+        teclasPorBinding.put(tecla, teclaDinamica);
+    }
+
     /**
      * Limpia todas las teclas dinámicas registradas.
      * Se llama al desconectarse del servidor para evitar conflictos
@@ -133,29 +375,90 @@ public class DynamicKeybindManager {
 
         LOGGER.info("Limpiando {} teclas dinámicas...", dynamicKeyMap.size());
 
-        // Quitar las teclas dinámicas del array allKeys
+        // Guardar las teclas que el jugador haya cambiado en esta sesión
+        for (TeclaDinamica teclaDinamica : dynamicKeyMap.values()) {
+            recordarPersonalizada(teclaDinamica.id(), teclaDinamica.tecla());
+        }
+        guardarPersonalizadas();
+
+        // Quitar las teclas dinámicas del array allKeys y del índice por código
         removerDeAllKeys();
+        for (KeyBinding tecla : teclasPorBinding.keySet()) {
+            desindexarTecla(tecla);
+        }
 
         // Quitar la categoría dinámica del mapa de orden
         desregistrarOrdenCategoria();
 
-        // Limpiar nuestro mapa interno
+        // Limpiar nuestros mapas internos, las pulsaciones pendientes y los enfriamientos
         dynamicKeyMap.clear();
-
-        // Recalcular el mapa interno de teclas por código
-        KeyBinding.updateKeysByCode();
+        teclasPorBinding.clear();
+        teclasDesplazadas.clear();
+        colaPulsaciones.vaciar();
+        finEnfriamientoPorHandle = new long[0];
 
         LOGGER.info("Teclas dinámicas limpiadas correctamente.");
     }
 
     /**
-     * Devuelve el mapa de teclas dinámicas activas.
-     * Usado por KeybindInputHandler para detectar pulsaciones.
+     * Llamado por KeyBindingMixin cuando el juego registra la pulsación de
+     * un KeyBinding. Si es una tecla dinámica, se encola para enviarla en
+     * el próximo tick. Se ejecuta en el hilo del cliente.
      *
-     * @return Mapa actionId -> KeyBinding (solo lectura conceptual)
+     * @param tecla KeyBinding pulsado
+     */
+    public void alPulsarTecla(KeyBinding tecla) {
+        TeclaDinamica teclaDinamica = teclasPorBinding.get(tecla);
+        if (teclaDinamica != null && !colaPulsaciones.agregar(teclaDinamica)) {
+            LOGGER.debug("Cola de pulsaciones llena, se descarta la de '{}'", teclaDinamica.id());
+        }
+    }
+
+    /**
+     * Devuelve las pulsaciones de teclas dinámicas pendientes.
+     * Usado por KeybindInputHandler para enviarlas en cada tick.
+     *
+     * @return Cola de pulsaciones
+     */
+    public ColaPulsaciones obtenerColaPulsaciones() {
+        return colaPulsaciones;
+    }
+
+    /**
+     * @return Generación de configuración de los handles actuales
      */
-    public Map<String, KeyBinding> obtenerDynamicKeyMap() {
-        return dynamicKeyMap;
+    public int obtenerGeneracion() {
+        return generacion;
+    }
+
+    /**
+     * Registra el enfriamiento restante de una acción informado por el
+     * servidor. Se ignora si es de otra generación de configuración.
+     *
+     * @param generacion     Generación de configuración del handle
+     * @param handle         Handle de la acción
+     * @param restanteMillis Milisegundos de enfriamiento restantes
+     */
+    public void iniciarEnfriamiento(int generacion, int handle, int restanteMillis) {
+        if (generacion != this.generacion || handle < 0) {
+            return;
+        }
+        if (handle >= finEnfriamientoPorHandle.length) {
+            finEnfriamientoPorHandle = Arrays.copyOf(finEnfriamientoPorHandle, handle + 1);
+        }
+        finEnfriamientoPorHandle[handle] = System.currentTimeMillis() + restanteMillis;
+    }
+
+    /**
+     * Indica si una acción sigue en enfriamiento.
+     *
+     * @param handle Handle de la acción
+     * @param ahora  Instante actual (System.currentTimeMillis)
+     * @return true si la pulsación no debe enviarse al servidor
+     */
+    public boolean estaEnfriando(int handle, long ahora) {
+        return handle >= 0 && handle < finEnfriamientoPorHandle.length
+                && ahora < finEnfriamientoPorHandle[handle];
     }
 
     /**
@@ -168,13 +471,22 @@ public class DynamicKeybindManager {
     }
 
     /**
-     * Actualiza el array allKeys de GameOptions de forma diferencial.
-     * Elimina las teclas obsoletas y añade las nuevas, sin tocar las existentes.
+     * Actualiza el array allKeys de GameOptions de forma diferencial, en
+     * una sola pasada: quita las teclas obsoletas (buscándolas por
+     * identidad) y añade las nuevas al final, sin tocar las demás. El
+     * índice de teclas por código se actualiza solo para estas teclas, en
+     * lugar de recalcularlo entero con KeyBinding.updateKeysByCode(), que
+     * recorre todas las teclas del juego.
      *
      * @param nuevas     Lista de KeyBindings nuevos a añadir
      * @param eliminadas Lista de KeyBindings obsoletos a quitar
      */
     private void actualizarAllKeys(List<KeyBinding> nuevas, List<KeyBinding> eliminadas) {
+        // Las nuevas ya quedaron indexadas por su código al construirlas
+        for (KeyBinding tecla : eliminadas) {
+            desindexarTecla(tecla);
+        }
+
         MinecraftClient cliente = MinecraftClient.getInstance();
         if (cliente.options == null) {
             return;
@@ -182,29 +494,38 @@ public class DynamicKeybindManager {
 
         GameOptions opciones = cliente.options;
         KeyBinding[] teclasActuales = opciones.allKeys;
-
-        // Crear un set de las eliminadas para búsqueda rápida
-        Set<KeyBinding> setEliminadas = new HashSet<>(eliminadas);
-
-        // Filtrar las eliminadas del array actual
-        List<KeyBinding> listaResultante = new ArrayList<>();
-        for (KeyBinding tecla : teclasActuales) {
-            if (!setEliminadas.contains(tecla)) {
-                listaResultante.add(tecla);
+        KeyBinding[] resultado;
+        if (eliminadas.isEmpty()) {
+            resultado = Arrays.copyOf(teclasActuales, teclasActuales.length + nuevas.size());
+        } else {
+            Set<KeyBinding> setEliminadas = Collections.newSetFromMap(new IdentityHashMap<>(eliminadas.size() * 2));
+            setEliminadas.addAll(eliminadas);
+            resultado = new KeyBinding[teclasActuales.length + nuevas.size()];
+            int tamano = 0;
+            for (KeyBinding tecla : teclasActuales) {
+                if (!setEliminadas.contains(tecla)) {
+                    resultado[tamano++] = tecla;
+                }
+            }
+            if (tamano + nuevas.size() < resultado.length) {
+                resultado = Arrays.copyOf(resultado, tamano + nuevas.size());
             }
         }
 
         // Añadir las nuevas al final
-        listaResultante.addAll(nuevas);
+        int posicion = resultado.length - nuevas.size();
+        for (KeyBinding tecla : nuevas) {
+            resultado[posicion++] = tecla;
+        }
 
         // Reemplazar el array en GameOptions usando el Accessor Mixin
-        ((GameOptionsAccessor) opciones).setAllKeys(
-                listaResultante.toArray(new KeyBinding[0]));
+        ((GameOptionsAccessor) opciones).setAllKeys(resultado);
     }
 
     /**
      * Remueve las teclas dinámicas del array allKeys de GameOptions.
-     * Filtra el array para quedarse solo con las teclas no dinámicas.
+     * Filtra el array para quedarse solo con las teclas no dinámicas,
+     * comprobando cada una por identidad en el índice de teclas dinámicas.
      */
     private void removerDeAllKeys() {
         MinecraftClient cliente = MinecraftClient.getInstance();
@@ -214,14 +535,41 @@ public class DynamicKeybindManager {
 
         GameOptions opciones = cliente.options;
         KeyBinding[] teclasActuales = opciones.allKeys;
-
-        // Filtrar las teclas dinámicas del array
-        KeyBinding[] arrayFiltrado = Arrays.stream(teclasActuales)
-                .filter(tecla -> !dynamicKeyMap.containsValue(tecla))
-                .toArray(KeyBinding[]::new);
+        KeyBinding[] arrayFiltrado = new KeyBinding[teclasActuales.length];
+        int tamano = 0;
+        for (KeyBinding tecla : teclasActuales) {
+            if (!teclasPorBinding.containsKey(tecla)) {
+                arrayFiltrado[tamano++] = tecla;
+            }
+        }
 
         // Reemplazar el array en GameOptions usando el Accessor Mixin
-        ((GameOptionsAccessor) opciones).setAllKeys(arrayFiltrado);
+        ((GameOptionsAccessor) opciones).setAllKeys(Arrays.copyOf(arrayFiltrado, tamano));
+    }
+
+    /**
+     * Quita una tecla dinámica de los índices estáticos de KeyBinding (por
+     * ID y por código). Si al crearla ocupó el código de otra tecla que
+     * sigue registrada, se le devuelve.
+     *
+     * @param tecla KeyBinding dinámico que se elimina
+     */
+    private void desindexarTecla(KeyBinding tecla) {
+        Map<String, KeyBinding> teclasPorId = KeyBindingAccessor.getKeysById();
+        teclasPorId.remove(tecla.getTranslationKey(), tecla);
+
+        KeyBinding desplazada = teclasDesplazadas.remove(tecla);
+        InputUtil.Key codigo = ((KeyBindingAccessor) tecla).getBoundKey();
+        Map<InputUtil.Key, KeyBinding> teclasPorCodigo = KeyBindingAccessor.getKeyToBindings();
+        if (teclasPorCodigo.get(codigo) != tecla) {
+            return;
+        }
+        if (desplazada != null && teclasPorId.get(desplazada.getTranslationKey()) == desplazada
+                && codigo.equals(((KeyBindingAccessor) desplazada).getBoundKey())) {
+            teclasPorCodigo.put(codigo, desplazada);
+        } else {
+            teclasPorCodigo.remove(codigo);
+        }
     }
 
     /**
@@ -7,6 +7,10 @@ package com.example.synchronizedkey.mod;
  * @param id         Identificador único de la acción (ej: "abrir_menu")
  * @param label      Nombre visible para el jugador (ej: "Abrir Menú")
  * @param defaultKey Código de tecla GLFW por defecto (ej: 77 para M)
+ * @param handle     Handle numérico asignado por el servidor (-1 en servidores JSON antiguos)
  */
-public record KeybindData(String id, String label, int defaultKey) {
+public record KeybindData(String id, String label, int defaultKey, int handle) {
+
+    /** Handle usado cuando el servidor no asigna handles (plugin antiguo) */
+    public static final int SIN_HANDLE = -1;
 }
@@ -1,29 +1,49 @@
 package com.example.synchronizedkey.mod;
 
 import net.minecraft.client.MinecraftClient;
-import net.minecraft.client.option.KeyBinding;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Map;
+import java.util.Arrays;
 
 /**
- * Detecta las pulsaciones de teclas dinámicas en cada tick del cliente.
- * Cuando se detecta una pulsación, envía el action_id correspondiente
- * al servidor a través del KeybindNetworkHandler.
+ * Envía al servidor las pulsaciones de teclas dinámicas en cada tick del
+ * cliente. Las pulsaciones las encola KeyBindingMixin en el momento en que
+ * el juego las registra, así que en cada tick solo se recorren las teclas
+ * que realmente se pulsaron. Por cada una envía el handle de la acción
+ * correspondiente a través del KeybindNetworkHandler, salvo que el
+ * servidor haya informado de que la acción está en enfriamiento.
  *
- * Se registra como callback de END_CLIENT_TICK en Fabric API.
+ * Si el plugin lo admite, las pulsaciones de un tick se agrupan por
+ * acción (handle + repeticiones) y se envían en un único paquete; una
+ * sola pulsación se sigue enviando con su payload ya construido.
+ *
+ * Se registra como callback de END_CLIENT_TICK en Fabric API. Mientras no
+ * se pulse más de una tecla en el mismo tick, este camino no crea ningún
+ * objeto.
  */
 public class KeybindInputHandler {
 
     private static final Logger LOGGER = LoggerFactory.getLogger("SynchronizedKey-Input");
 
-    /** Referencia al gestor de teclas para obtener las teclas activas */
+    /** Referencia al gestor de teclas para obtener las pulsaciones pendientes */
     private final DynamicKeybindManager gestorTeclas;
 
     /** Referencia al gestor de red para enviar acciones al servidor */
     private final KeybindNetworkHandler gestorRed;
 
+    /**
+     * Lote de pulsaciones del tick en curso: handles distintos con sus
+     * repeticiones. La cola admite como mucho un lote completo por tick.
+     */
+    private final int[] handlesLote = new int[ColaPulsaciones.CAPACIDAD];
+    private final int[] repeticionesLote = new int[ColaPulsaciones.CAPACIDAD];
+    private int cantidadLote = 0;
+    private int generacionLote = 0;
+
+    /** Primera tecla del lote, para enviarla sola si es la única pulsación */
+    private TeclaDinamica primeraTeclaLote = null;
+
     /**
      * Constructor del gestor de input.
      *
@@ -37,39 +57,89 @@ public class KeybindInputHandler {
 
     /**
      * Callback ejecutado al final de cada tick del cliente.
-     * Comprueba si alguna tecla dinámica fue presionada y, de ser así,
-     * envía la acción correspondiente al servidor.
+     * Envía al servidor las acciones de las teclas dinámicas pulsadas
+     * desde el tick anterior.
      *
      * Solo procesa teclas si:
-     * - Hay teclas dinámicas activas
+     * - Hay pulsaciones pendientes
      * - El jugador está en un mundo (conectado a un servidor)
-     * - No está en una pantalla/menú abierto
      *
      * @param cliente Instancia del cliente de Minecraft
      */
     public void onClientTick(MinecraftClient cliente) {
-        // No procesar si no hay teclas dinámicas activas
-        if (!gestorTeclas.tieneTeclasActivas()) {
+        // Sin pulsaciones pendientes no hay nada que hacer
+        ColaPulsaciones cola = gestorTeclas.obtenerColaPulsaciones();
+        if (cola.estaVacia()) {
             return;
         }
 
-        // No procesar si el jugador no está en un mundo
+        // No enviar si el jugador no está en un mundo
         if (cliente.player == null || cliente.world == null) {
+            cola.vaciar();
             return;
         }
 
-        // Iterar sobre las teclas dinámicas y comprobar pulsaciones
-        Map<String, KeyBinding> mapaTeclas = gestorTeclas.obtenerDynamicKeyMap();
+        boolean agrupar = gestorRed.aceptaLotePulsaciones();
+        long ahora = System.currentTimeMillis();
+        TeclaDinamica teclaDinamica;
+        while ((teclaDinamica = cola.sacar()) != null) {
+            // Consumir la pulsación que el juego también contó en el KeyBinding
+            teclaDinamica.tecla().wasPressed();
 
-        for (Map.Entry<String, KeyBinding> entrada : mapaTeclas.entrySet()) {
-            String actionId = entrada.getKey();
-            KeyBinding tecla = entrada.getValue();
+            // Acción en enfriamiento: el servidor la rechazaría, no se envía
+            if (gestorTeclas.estaEnfriando(teclaDinamica.handle(), ahora)) {
+                LOGGER.debug("Pulsación de '{}' ignorada: acción en enfriamiento", teclaDinamica.id());
+                continue;
+            }
+            LOGGER.debug("Tecla presionada: '{}' (action_id: {})",
+                    teclaDinamica.tecla().getTranslationKey(), teclaDinamica.id());
+            if (agrupar && teclaDinamica.pulsacion() instanceof KeybindPayload.Pulsacion pulsacion) {
+                agregarAlLote(teclaDinamica, pulsacion);
+            } else {
+                gestorRed.enviarPulsacion(teclaDinamica);
+            }
+        }
+        enviarLote();
+    }
 
-            // wasPressed() consume la pulsación (evita envíos duplicados)
-            while (tecla.wasPressed()) {
-                LOGGER.debug("Tecla presionada: '{}' (action_id: {})", tecla.getTranslationKey(), actionId);
-                gestorRed.enviarAccionAlServidor(actionId);
+    /**
+     * Añade una pulsación al lote del tick, sumándola a la de la misma
+     * acción si ya estaba.
+     *
+     * @param teclaDinamica Tecla pulsada
+     * @param pulsacion     Su payload de pulsación (con generación y handle)
+     */
+    private void agregarAlLote(TeclaDinamica teclaDinamica, KeybindPayload.Pulsacion pulsacion) {
+        for (int i = 0; i < cantidadLote; i++) {
+            if (handlesLote[i] == pulsacion.handle()) {
+                repeticionesLote[i]++;
+                return;
             }
         }
+        if (cantidadLote == 0) {
+            primeraTeclaLote = teclaDinamica;
+            generacionLote = pulsacion.generacion();
+        }
+        handlesLote[cantidadLote] = pulsacion.handle();
+        repeticionesLote[cantidadLote] = 1;
+        cantidadLote++;
+    }
+
+    /**
+     * Envía el lote del tick y lo vacía. Una sola pulsación se envía con
+     * el payload de la tecla, sin crear el lote.
+     */
+    private void enviarLote() {
+        if (cantidadLote == 0) {
+            return;
+        }
+        if (cantidadLote == 1 && repeticionesLote[0] == 1) {
+            gestorRed.enviarPulsacion(primeraTeclaLote);
+        } else {
+            gestorRed.enviarLote(new KeybindPayload.LotePulsaciones(generacionLote,
+                    Arrays.copyOf(handlesLote, cantidadLote), Arrays.copyOf(repeticionesLote, cantidadLote)));
+        }
+        cantidadLote = 0;
+        primeraTeclaLote = null;
     }
 }
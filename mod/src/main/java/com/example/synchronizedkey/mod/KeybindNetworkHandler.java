@@ -1,129 +1,761 @@
 package com.example.synchronizedkey.mod;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
-import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
 import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking;
 import net.minecraft.client.MinecraftClient;
+import net.minecraft.network.PacketByteBuf;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 /**
  * Gestiona la comunicación de red entre el mod y el plugin Spigot.
- * Recibe la configuración de teclas del servidor (JSON array) y
- * envía las pulsaciones de teclas de vuelta (JSON object).
+ * Recibe la configuración de teclas del servidor y envía las pulsaciones
+ * de teclas de vuelta usando el protocolo binario (ver ProtocoloTeclas).
+ *
+ * Si el servidor usa un plugin antiguo que envía JSON, el mod lo detecta
+ * al recibir la sincronización y responde también en JSON.
+ *
+ * La última lista recibida de cada servidor se guarda en una caché local;
+ * si el servidor confirma que no ha cambiado, se usa la caché en lugar de
+ * descargarla de nuevo. Tras un /sk reload el servidor envía solo un delta
+ * respecto a la generación anterior, que se aplica sobre la última lista.
  */
 public class KeybindNetworkHandler {
 
     private static final Logger LOGGER = LoggerFactory.getLogger("SynchronizedKey-Red");
 
+    /** Mensaje recibido directamente del servidor */
+    private static final int CAPA_RECIBIDO = 0;
+
+    /** Mensaje reensamblado a partir de fragmentos (puede venir comprimido) */
+    private static final int CAPA_REENSAMBLADO = 1;
+
+    /** Mensaje descomprimido (no puede ser otro fragmento ni otro comprimido) */
+    private static final int CAPA_DESCOMPRIMIDO = 2;
+
     /** Referencia al gestor de teclas dinámicas */
     private final DynamicKeybindManager gestorTeclas;
 
+    /** Caché local de listas de acciones por servidor */
+    private final CacheSincronizacion cacheSincronizacion;
+
+    /** Teclas personalizadas por el jugador en cada servidor */
+    private final TeclasPersonalizadas teclasPersonalizadas;
+
+    /**
+     * true si el servidor envió la sincronización en JSON (plugin antiguo).
+     * En ese caso las pulsaciones también se envían en JSON.
+     */
+    private volatile boolean servidorLegado = false;
+
+    /** true si el plugin acepta las pulsaciones agrupadas (TIPO_CAPACIDADES) */
+    private volatile boolean servidorAceptaLotes = false;
+
+    /**
+     * Última lista binaria recibida (o cargada de la caché) del servidor
+     * actual, con su generación y hash. Es la base sobre la que se aplican
+     * los deltas. La modifica el hilo de red, salvo la lista leída de la
+     * caché, que se aplica en el hilo del cliente solo si entretanto no se
+     * recordó otra (ver secuenciaLista).
+     */
+    private volatile List<KeybindData> accionesRecibidas = null;
+    private volatile int generacionRecibida = 0;
+    private volatile long hashRecibido = ProtocoloTeclas.SIN_HASH;
+
+    /** Se incrementa con cada lista recordada; protegido por el monitor del gestor */
+    private int secuenciaLista = 0;
+
+    /**
+     * Entregas pendientes de teclas al hilo del cliente, encadenadas para
+     * que se apliquen en el orden de los paquetes aunque el registro
+     * completo tenga que esperar a que se lean las teclas personalizadas.
+     * Solo se amplía desde el hilo de red.
+     */
+    private CompletableFuture<Void> entregasTeclas = CompletableFuture.completedFuture(null);
+
+    /**
+     * Conexión actual. Cambia al conectarse y al desconectarse, y las
+     * entregas de una conexión anterior se descartan en lugar de aplicarse.
+     */
+    private volatile int conexionActual = 0;
+
+    /**
+     * Transferencia fragmentada en curso (null si no hay ninguna). Cada
+     * fragmento se añade como una porción retenida del paquete recibido,
+     * sin copiar sus bytes. La usa el hilo de red, que recibe los paquetes
+     * en orden, y el hilo del cliente la descarta al conectarse y al
+     * desconectarse; ambos acceden con el monitor de bloqueoFragmentos.
+     */
+    private final Object bloqueoFragmentos = new Object();
+    private CompositeByteBuf mensajeFragmentado = null;
+    private int transferenciaFragmentos = 0;
+    private int totalFragmentos = 0;
+    private int siguienteFragmento = 0;
+
     /**
      * Constructor del gestor de red.
      *
-     * @param gestorTeclas Instancia del gestor de teclas dinámicas
+     * @param gestorTeclas         Instancia del gestor de teclas dinámicas
+     * @param cacheSincronizacion  Caché local de listas de acciones
+     * @param teclasPersonalizadas Teclas personalizadas por servidor
      */
-    public KeybindNetworkHandler(DynamicKeybindManager gestorTeclas) {
+    public KeybindNetworkHandler(DynamicKeybindManager gestorTeclas, CacheSincronizacion cacheSincronizacion,
+                                 TeclasPersonalizadas teclasPersonalizadas) {
         this.gestorTeclas = gestorTeclas;
+        this.cacheSincronizacion = cacheSincronizacion;
+        this.teclasPersonalizadas = teclasPersonalizadas;
     }
 
     /**
      * Procesa un paquete recibido del servidor por el canal teclas_pro:main.
-     * El servidor envía un JSON array con las teclas a registrar:
+     * El servidor envía en binario ([versión][tipo]...) la lista completa,
+     * una confirmación de que la caché local sigue siendo válida o un delta
+     * tras un /sk reload; con catálogos grandes, la lista y el delta llegan
+     * comprimidos y fragmentados. Los plugins antiguos envían un JSON array:
      * [{"id": "...", "label": "...", "default_key": N}, ...]
      *
      * Este método se ejecuta en el hilo de red de Netty, por lo que
      * delegamos el trabajo al hilo del cliente para seguridad.
      *
-     * @param payload Payload con los bytes del JSON
+     * El payload retiene una porción del buffer de red (ver
+     * KeybindPayload.CODEC), que se libera aquí al terminar de procesarlo.
+     *
+     * @param payload Payload con los bytes recibidos
      * @param context Contexto de Fabric Networking
      */
     public void recibirPaquete(KeybindPayload payload, ClientPlayNetworking.Context context) {
-        String jsonString = payload.comoTexto();
-        LOGGER.info("Paquete de sincronización recibido del servidor: {} bytes", jsonString.length());
+        if (!(payload instanceof KeybindPayload.Datos paquete)) {
+            return;
+        }
+
+        ByteBuf datos = paquete.datos();
+        try {
+            if (!datos.isReadable()) {
+                return;
+            }
+            LOGGER.debug("Paquete recibido del servidor: {} bytes", datos.readableBytes());
+
+            // Parsear en el hilo de red (operación segura, sin acceso a MC)
+            if (ProtocoloTeclas.esJsonLegado(datos.getUnsignedByte(datos.readerIndex()))) {
+                List<KeybindData> listaAcciones;
+                try {
+                    listaAcciones = parsearJsonAcciones(datos);
+                } catch (IOException | IllegalStateException | NumberFormatException e) {
+                    LOGGER.error("JSON inválido recibido del servidor: {}", e.getMessage());
+                    return;
+                }
+                servidorLegado = true;
+                aplicarAcciones(listaAcciones, 0, null);
+                return;
+            }
+
+            procesarBinario(datos, CAPA_RECIBIDO);
+        } finally {
+            datos.release();
+        }
+    }
+
+    /**
+     * Procesa un mensaje binario: los recibidos del servidor y los que
+     * resultan de reensamblar fragmentos o de descomprimir otro mensaje.
+     *
+     * @param datos Buffer con el mensaje, posicionado en su cabecera
+     * @param capa  De dónde sale el mensaje (CAPA_*), para no admitir
+     *              fragmentos ni compresión anidados
+     */
+    private void procesarBinario(ByteBuf datos, int capa) {
+        PacketByteBuf buf = new PacketByteBuf(datos);
+        try {
+            int version = buf.readUnsignedByte();
+            int tipo = buf.readUnsignedByte();
+            if (version != ProtocoloTeclas.VERSION) {
+                LOGGER.warn("Versión de protocolo no soportada recibida del servidor: {}", version);
+                return;
+            }
+
+            servidorLegado = false;
+            switch (tipo) {
+                case ProtocoloTeclas.TIPO_SINCRONIZACION -> procesarSincronizacion(buf);
+                case ProtocoloTeclas.TIPO_CONFIRMACION_CACHE -> procesarConfirmacionCache(buf);
+                case ProtocoloTeclas.TIPO_DELTA -> procesarDelta(buf);
+                case ProtocoloTeclas.TIPO_ENFRIAMIENTO -> procesarEnfriamiento(buf);
+                case ProtocoloTeclas.TIPO_COMPRIMIDO -> procesarComprimido(buf, capa);
+                case ProtocoloTeclas.TIPO_FRAGMENTO -> procesarFragmento(buf, capa);
+                case ProtocoloTeclas.TIPO_CAPACIDADES -> procesarCapacidades(buf);
+                default -> LOGGER.warn("Tipo de paquete desconocido recibido del servidor: {}", tipo);
+            }
+        } catch (RuntimeException e) {
+            LOGGER.error("Paquete binario inválido recibido del servidor: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Descomprime un mensaje (lista completa o delta de un catálogo grande)
+     * y lo procesa como si se hubiera recibido tal cual.
+     * Formato: [versión][TIPO_COMPRIMIDO][VarInt longitud original][datos deflate]
+     *
+     * @param buf  Buffer posicionado tras la cabecera
+     * @param capa De dónde sale el paquete (CAPA_*)
+     */
+    private void procesarComprimido(PacketByteBuf buf, int capa) {
+        if (capa == CAPA_DESCOMPRIMIDO) {
+            throw new IllegalArgumentException("Mensaje comprimido anidado");
+        }
+        int longitudOriginal = buf.readVarInt();
+        int longitud = buf.readableBytes();
+        byte[] mensaje = ProtocoloTeclas.descomprimir(buf.nioBuffer(buf.readerIndex(), longitud), longitudOriginal);
+        LOGGER.debug("Mensaje descomprimido: {} → {} bytes", longitud, mensaje.length);
+        procesarBinario(Unpooled.wrappedBuffer(mensaje), CAPA_DESCOMPRIMIDO);
+    }
+
+    /**
+     * Acumula un fragmento de un mensaje grande y, al llegar el último,
+     * procesa el mensaje completo. El servidor envía los fragmentos de cada
+     * mensaje seguidos y en orden, así que solo hay una transferencia en
+     * curso; un fragmento inesperado descarta la transferencia.
+     * Formato: [versión][TIPO_FRAGMENTO][VarInt transferencia][VarInt índice][VarInt total][trozo]
+     *
+     * @param buf  Buffer posicionado tras la cabecera
+     * @param capa De dónde sale el paquete (CAPA_*)
+     */
+    private void procesarFragmento(PacketByteBuf buf, int capa) {
+        if (capa != CAPA_RECIBIDO) {
+            throw new IllegalArgumentException("Fragmento anidado");
+        }
+        int transferencia = buf.readVarInt();
+        int indice = buf.readVarInt();
+        int total = buf.readVarInt();
+        if (total <= 0 || total > ProtocoloTeclas.MAXIMO_FRAGMENTOS || indice < 0 || indice >= total) {
+            throw new IllegalArgumentException("Fragmento inválido: " + indice + "/" + total);
+        }
+
+        CompositeByteBuf mensaje;
+        synchronized (bloqueoFragmentos) {
+            if (indice == 0) {
+                descartarFragmentos();
+                mensajeFragmentado = Unpooled.compositeBuffer(total);
+                transferenciaFragmentos = transferencia;
+                totalFragmentos = total;
+                siguienteFragmento = 0;
+            } else if (mensajeFragmentado == null || transferencia != transferenciaFragmentos
+                    || total != totalFragmentos || indice != siguienteFragmento) {
+                descartarFragmentos();
+                LOGGER.warn("Fragmento {}/{} de la transferencia {} fuera de orden, se descarta.",
+                        indice + 1, total, transferencia);
+                return;
+            }
+
+            int longitud = buf.readableBytes();
+            if (mensajeFragmentado.readableBytes() + longitud > ProtocoloTeclas.TAMANO_MAXIMO_MENSAJE) {
+                descartarFragmentos();
+                throw new IllegalArgumentException("Mensaje fragmentado demasiado grande");
+            }
+            mensajeFragmentado.addComponent(true, buf.readRetainedSlice(longitud));
+            siguienteFragmento++;
+            if (siguienteFragmento < totalFragmentos) {
+                return;
+            }
+
+            mensaje = mensajeFragmentado;
+            mensajeFragmentado = null;
+        }
 
-        // Parsear el JSON en el hilo de red (operación segura, sin acceso a MC)
-        List<KeybindData> listaAcciones;
         try {
-            listaAcciones = parsearJsonAcciones(jsonString);
-        } catch (JsonSyntaxException e) {
-            LOGGER.error("JSON inválido recibido del servidor: {}", jsonString, e);
+            LOGGER.debug("Mensaje reensamblado: {} fragmentos, {} bytes", total, mensaje.readableBytes());
+            procesarBinario(mensaje, CAPA_REENSAMBLADO);
+        } finally {
+            mensaje.release();
+        }
+    }
+
+    /**
+     * Descarta la transferencia fragmentada en curso, liberando los
+     * fragmentos que retenía.
+     */
+    private void descartarFragmentos() {
+        synchronized (bloqueoFragmentos) {
+            if (mensajeFragmentado != null) {
+                mensajeFragmentado.release();
+                mensajeFragmentado = null;
+            }
+        }
+    }
+
+    /**
+     * Procesa la lista completa y la guarda en la caché local.
+     * Formato: [versión][TIPO_SINCRONIZACION][VarInt generación][long hash][cuerpo]
+     *
+     * @param buf Buffer posicionado tras la cabecera
+     */
+    private void procesarSincronizacion(PacketByteBuf buf) {
+        int generacion = buf.readVarInt();
+        long hash = buf.readLong();
+        int inicioCuerpo = buf.readerIndex();
+
+        List<KeybindData> listaAcciones = parsearBinarioAcciones(buf);
+
+        List<KeybindData> anterior = accionesRecibidas;
+        recordarLista(listaAcciones, generacion, hash);
+        // La caché se escribe en otro hilo: necesita su propia copia del cuerpo
+        cacheSincronizacion.guardar(obtenerClaveServidor(), hash,
+                ByteBufUtil.getBytes(buf, inicioCuerpo, buf.writerIndex() - inicioCuerpo));
+        aplicarAcciones(listaAcciones, generacion, anterior);
+    }
+
+    /**
+     * El servidor confirma que la lista no ha cambiado: se lee de la caché
+     * local en el hilo de E/S. Si no se puede leer, se pide la lista completa.
+     * Formato: [versión][TIPO_CONFIRMACION_CACHE][VarInt generación][long hash]
+     *
+     * El resultado de la lectura se aplica en el hilo del cliente, en orden
+     * con las demás entregas, y se descarta si mientras tanto llegó otra
+     * lista del servidor.
+     *
+     * @param buf Buffer posicionado tras la cabecera
+     */
+    private void procesarConfirmacionCache(PacketByteBuf buf) {
+        int generacion = buf.readVarInt();
+        long hash = buf.readLong();
+
+        // La lista en memoria ya es la confirmada (ej: /sk reload sin cambios)
+        List<KeybindData> enMemoria = accionesRecibidas;
+        if (enMemoria != null && hash == hashRecibido) {
+            recordarLista(enMemoria, generacion, hash);
+            aplicarAcciones(enMemoria, generacion, enMemoria);
             return;
         }
 
-        if (listaAcciones.isEmpty()) {
-            LOGGER.warn("El servidor envió una lista de acciones vacía.");
+        // Hasta leer la caché no hay lista base: un delta que llegue antes pide la lista completa
+        int secuencia = recordarLista(null, generacion, hash);
+        String claveServidor = obtenerClaveServidor();
+        String nombreServidor = obtenerNombreServidor();
+        CompletableFuture<Map<String, String>> personalizadas = teclasPersonalizadas.cargar(claveServidor);
+        CompletableFuture<List<KeybindData>> lectura = cacheSincronizacion.leerCuerpo(claveServidor, hash)
+                .handle((cuerpo, error) -> parsearCuerpoCache(cuerpo))
+                .thenCombine(personalizadas, (listaAcciones, ignorado) -> listaAcciones);
+
+        entregarAlCliente(lectura, listaAcciones -> {
+            if (listaAcciones == null) {
+                if (esListaVigente(secuencia)) {
+                    LOGGER.info("Caché local no disponible, solicitando la lista completa al servidor.");
+                    enviarEnHiloCliente(new KeybindPayload.SolicitudSincronizacion());
+                }
+                return;
+            }
+            if (!recordarListaSiVigente(secuencia, listaAcciones, generacion, hash)) {
+                LOGGER.debug("Lista de la caché local descartada: ya se recibió otra del servidor.");
+                return;
+            }
+
+            LOGGER.info("Lista de acciones cargada desde la caché local (hash confirmado por el servidor).");
+            // Las teclas personalizadas ya están leídas: la lectura las esperó
+            gestorTeclas.registrarTeclasDinamicas(listaAcciones, nombreServidor, generacion,
+                    claveServidor, personalizadas.join());
+        });
+    }
+
+    /**
+     * Parsea el cuerpo leído de la caché local.
+     *
+     * @param cuerpo Cuerpo guardado (null si no existe o no coincide el hash)
+     * @return Lista de acciones, o null si no hay caché o está corrupta
+     */
+    private List<KeybindData> parsearCuerpoCache(byte[] cuerpo) {
+        if (cuerpo == null) {
+            return null;
+        }
+        try {
+            return parsearBinarioAcciones(new PacketByteBuf(Unpooled.wrappedBuffer(cuerpo)));
+        } catch (RuntimeException e) {
+            LOGGER.warn("Caché local corrupta: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Aplica los cambios de una recarga del servidor sobre la última lista
+     * recibida. Si la lista en memoria no es de la generación base del
+     * delta (paquete perdido, caché aún cargándose...), se pide la lista
+     * completa.
+     * Formato: [versión][TIPO_DELTA][VarInt generación base][VarInt generación nueva]
+     * [long hash][VarInt eliminadas][VarInt handle]...[cuerpo con las acciones nuevas o modificadas]
+     *
+     * @param buf Buffer posicionado tras la cabecera
+     */
+    private void procesarDelta(PacketByteBuf buf) {
+        int generacionBase = buf.readVarInt();
+        int generacionNueva = buf.readVarInt();
+        long hash = buf.readLong();
+
+        List<KeybindData> base = accionesRecibidas;
+        if (base == null || generacionBase != generacionRecibida) {
+            LOGGER.info("Delta sobre la generación {} pero la lista local es de la {}, solicitando la lista completa.",
+                    generacionBase, generacionRecibida);
+            enviar(new KeybindPayload.SolicitudSincronizacion());
             return;
         }
 
+        int cantidadEliminadas = buf.readVarInt();
+        Set<Integer> handlesEliminados = new HashSet<>();
+        for (int i = 0; i < cantidadEliminadas; i++) {
+            handlesEliminados.add(buf.readVarInt());
+        }
+        List<KeybindData> cambios = parsearBinarioAcciones(buf);
+
+        // Reconstruir la lista completa para la caché y para el próximo delta
+        Map<String, KeybindData> resultado = new LinkedHashMap<>();
+        for (KeybindData accion : base) {
+            if (!handlesEliminados.contains(accion.handle())) {
+                resultado.put(accion.id(), accion);
+            }
+        }
+        for (KeybindData accion : cambios) {
+            resultado.put(accion.id(), accion);
+        }
+        List<KeybindData> listaNueva = new ArrayList<>(resultado.values());
+
+        recordarLista(listaNueva, generacionNueva, hash);
+        cacheSincronizacion.guardar(obtenerClaveServidor(), hash, serializarCuerpo(listaNueva));
+
+        LOGGER.info("Delta recibido: -{} eliminadas, {} nuevas o modificadas (generación {} → {})",
+                cantidadEliminadas, cambios.size(), generacionBase, generacionNueva);
+
+        String nombreServidor = obtenerNombreServidor();
+        entregarAlCliente(() -> gestorTeclas.aplicarDelta(handlesEliminados, cambios, nombreServidor, generacionNueva));
+    }
+
+    /**
+     * El servidor informa del enfriamiento restante de una acción, para no
+     * enviar pulsaciones que va a rechazar.
+     * Formato: [versión][TIPO_ENFRIAMIENTO][VarInt generación][VarInt handle][VarInt ms restantes]
+     *
+     * @param buf Buffer posicionado tras la cabecera
+     */
+    private void procesarEnfriamiento(PacketByteBuf buf) {
+        int generacion = buf.readVarInt();
+        int handle = buf.readVarInt();
+        int restanteMillis = buf.readVarInt();
+        MinecraftClient.getInstance().execute(() ->
+                gestorTeclas.iniciarEnfriamiento(generacion, handle, restanteMillis));
+    }
+
+    /**
+     * Capacidades del plugin, que responde así al saludo si sabe recibir
+     * las pulsaciones agrupadas. Los plugins anteriores no lo envían.
+     * Formato: [versión][TIPO_CAPACIDADES][byte capacidades]
+     *
+     * @param buf Buffer posicionado tras la cabecera
+     */
+    private void procesarCapacidades(PacketByteBuf buf) {
+        int capacidades = buf.readUnsignedByte();
+        servidorAceptaLotes = (capacidades & ProtocoloTeclas.CAPACIDAD_LOTE_PULSACIONES) != 0;
+        LOGGER.debug("Capacidades del servidor: {}", capacidades);
+    }
+
+    /**
+     * Guarda la lista recibida como base para los siguientes deltas.
+     *
+     * @param listaAcciones Lista completa de acciones
+     * @param generacion    Generación de configuración de la lista
+     * @param hash          Hash de la lista calculado por el servidor
+     * @return Secuencia de la lista recordada
+     */
+    private synchronized int recordarLista(List<KeybindData> listaAcciones, int generacion, long hash) {
+        accionesRecibidas = listaAcciones;
+        generacionRecibida = generacion;
+        hashRecibido = hash;
+        return ++secuenciaLista;
+    }
+
+    /**
+     * Recuerda la lista leída de la caché solo si desde la confirmación no
+     * se ha recordado ninguna otra.
+     *
+     * @param secuencia     Secuencia devuelta al recibir la confirmación
+     * @param listaAcciones Lista leída de la caché
+     * @param generacion    Generación confirmada
+     * @param hash          Hash confirmado
+     * @return false si ya se recordó otra lista y se descarta esta
+     */
+    private synchronized boolean recordarListaSiVigente(int secuencia, List<KeybindData> listaAcciones,
+                                                        int generacion, long hash) {
+        if (secuencia != secuenciaLista) {
+            return false;
+        }
+        recordarLista(listaAcciones, generacion, hash);
+        return true;
+    }
+
+    /**
+     * @param secuencia Secuencia de una lista recordada
+     * @return true si no se ha recordado ninguna lista después
+     */
+    private synchronized boolean esListaVigente(int secuencia) {
+        return secuencia == secuenciaLista;
+    }
+
+    /**
+     * Serializa una lista de acciones con el mismo formato de cuerpo que
+     * envía el servidor, para guardarla en la caché local.
+     *
+     * @param listaAcciones Lista de acciones
+     * @return Bytes del cuerpo
+     */
+    private byte[] serializarCuerpo(List<KeybindData> listaAcciones) {
+        PacketByteBuf buf = new PacketByteBuf(Unpooled.buffer(listaAcciones.size() * 32));
+        buf.writeVarInt(listaAcciones.size());
+        for (KeybindData accion : listaAcciones) {
+            buf.writeVarInt(accion.handle());
+            buf.writeString(accion.id());
+            buf.writeString(accion.label());
+            buf.writeVarInt(accion.defaultKey());
+        }
+        byte[] cuerpo = new byte[buf.readableBytes()];
+        buf.readBytes(cuerpo);
+        return cuerpo;
+    }
+
+    /**
+     * Registra las acciones recibidas en el hilo del cliente.
+     *
+     * Si el cliente ya tiene registrada la lista anterior, las diferencias
+     * se calculan aquí (fuera del hilo del cliente) y al hilo del cliente
+     * solo se le pasan los cambios, como si fuera un delta del servidor.
+     *
+     * @param listaAcciones Acciones a registrar
+     * @param generacion    Generación de configuración de sus handles
+     * @param anterior      Lista registrada actualmente en el cliente, o null para registrar la lista entera
+     */
+    private void aplicarAcciones(List<KeybindData> listaAcciones, int generacion, List<KeybindData> anterior) {
+        // Una lista vacía también se aplica: el jugador puede haber perdido
+        // el permiso de todas las acciones y hay que quitar sus teclas
         LOGGER.info("Acciones parseadas correctamente: {}", listaAcciones.size());
 
         // Obtener el nombre del servidor para la categoría de teclas
         String nombreServidor = obtenerNombreServidor();
 
-        // Ejecutar el registro de teclas en el hilo del cliente (obligatorio)
-        MinecraftClient.getInstance().execute(() -> {
-            gestorTeclas.registrarTeclasDinamicas(listaAcciones, nombreServidor);
-        });
+        if (anterior != null) {
+            DiferenciaTeclas diferencia = DiferenciaTeclas.calcular(anterior, listaAcciones);
+            LOGGER.debug("Diferencias con la lista registrada: -{} eliminadas, {} nuevas o modificadas",
+                    diferencia.handlesEliminados().size(), diferencia.cambios().size());
+            entregarAlCliente(() -> gestorTeclas.aplicarDelta(
+                    diferencia.handlesEliminados(), diferencia.cambios(), nombreServidor, generacion));
+            return;
+        }
+
+        // Las teclas personalizadas del servidor se empiezan a leer en el
+        // saludo, así que normalmente ya están cargadas; si no, el registro
+        // (y lo que llegue después) espera a que el hilo de E/S las lea
+        String claveServidor = obtenerClaveServidor();
+        entregarAlCliente(teclasPersonalizadas.cargar(claveServidor), personalizadas ->
+                gestorTeclas.registrarTeclasDinamicas(listaAcciones, nombreServidor, generacion,
+                        claveServidor, personalizadas));
+    }
+
+    /**
+     * Aplica un cambio de teclas en el hilo del cliente, después de los
+     * cambios entregados antes.
+     *
+     * @param entrega Cambio a aplicar
+     */
+    private void entregarAlCliente(Runnable entrega) {
+        entregarAlCliente(CompletableFuture.completedFuture(null), ignorado -> entrega.run());
+    }
+
+    /**
+     * Aplica un cambio de teclas en el hilo del cliente cuando estén listos
+     * sus datos y después de los cambios entregados antes, sin bloquear el
+     * hilo de red. Si entretanto cambia la conexión, se descarta.
+     *
+     * @param datos   Datos que necesita el cambio (ej: teclas personalizadas)
+     * @param entrega Cambio a aplicar con los datos
+     * @param <T>     Tipo de los datos
+     */
+    private <T> void entregarAlCliente(CompletableFuture<T> datos, Consumer<T> entrega) {
+        int conexion = conexionActual;
+        entregasTeclas = entregasTeclas
+                .thenCombine(datos, (anterior, valor) -> valor)
+                .thenAcceptAsync(valor -> {
+                    if (conexion == conexionActual) {
+                        entrega.accept(valor);
+                    } else {
+                        LOGGER.debug("Teclas de una conexión anterior descartadas.");
+                    }
+                }, MinecraftClient.getInstance()::execute)
+                .exceptionally(error -> {
+                    // No cortar la cadena: las entregas siguientes deben aplicarse igualmente
+                    LOGGER.error("Error al aplicar las teclas recibidas del servidor: {}", error.getMessage());
+                    return null;
+                });
+    }
+
+    /**
+     * Parsea el cuerpo binario con la lista de acciones.
+     * Formato: [VarInt cantidad] y por cada acción:
+     * [VarInt handle][texto id][texto label][VarInt default_key]
+     *
+     * @param buf Buffer posicionado al inicio del cuerpo
+     * @return Lista de acciones
+     */
+    private List<KeybindData> parsearBinarioAcciones(PacketByteBuf buf) {
+        int cantidad = buf.readVarInt();
+        List<KeybindData> acciones = new ArrayList<>(cantidad);
+        for (int i = 0; i < cantidad; i++) {
+            int handle = buf.readVarInt();
+            String id = buf.readString(ProtocoloTeclas.LONGITUD_MAXIMA_TEXTO);
+            String label = buf.readString(ProtocoloTeclas.LONGITUD_MAXIMA_TEXTO);
+            int defaultKey = buf.readVarInt();
+            acciones.add(new KeybindData(id, label, defaultKey, handle));
+        }
+        return acciones;
     }
 
     /**
-     * Parsea el JSON array del servidor a una lista de KeybindData.
+     * Parsea el JSON array de plugins antiguos a una lista de KeybindData,
+     * leyéndolo en streaming directamente de los bytes recibidos (sin
+     * copiarlo a un String ni construir el árbol JSON completo).
      *
-     * @param jsonString JSON en formato: [{"id":"...", "label":"...",
-     *                   "default_key":N}, ...]
+     * @param datos Buffer con el JSON en formato: [{"id":"...", "label":"...",
+     *              "default_key":N}, ...]
      * @return Lista de acciones parseadas
-     * @throws JsonSyntaxException Si el JSON es inválido
+     * @throws IOException           Si el JSON es inválido
+     * @throws IllegalStateException Si la estructura no es la esperada
      */
-    private List<KeybindData> parsearJsonAcciones(String jsonString) {
+    private List<KeybindData> parsearJsonAcciones(ByteBuf datos) throws IOException {
         List<KeybindData> acciones = new ArrayList<>();
 
-        JsonArray arrayJson = JsonParser.parseString(jsonString).getAsJsonArray();
+        try (JsonReader lector = new JsonReader(
+                new InputStreamReader(new ByteBufInputStream(datos), StandardCharsets.UTF_8))) {
+            lector.beginArray();
+            while (lector.hasNext()) {
+                String id = null;
+                String label = null;
+                int defaultKey = 0;
 
-        for (JsonElement elemento : arrayJson) {
-            JsonObject objeto = elemento.getAsJsonObject();
+                lector.beginObject();
+                while (lector.hasNext()) {
+                    switch (lector.nextName()) {
+                        case "id" -> id = lector.nextString();
+                        case "label" -> label = lector.nextString();
+                        case "default_key" -> defaultKey = lector.nextInt();
+                        default -> lector.skipValue();
+                    }
+                }
+                lector.endObject();
 
-            String id = objeto.get("id").getAsString();
-            String label = objeto.get("label").getAsString();
-            int defaultKey = objeto.get("default_key").getAsInt();
-
-            acciones.add(new KeybindData(id, label, defaultKey));
+                if (id == null || label == null) {
+                    throw new IllegalStateException("Acción sin id o sin label");
+                }
+                acciones.add(new KeybindData(id, label, defaultKey, KeybindData.SIN_HANDLE));
+            }
+            lector.endArray();
         }
 
         return acciones;
     }
 
     /**
-     * Envía una acción de tecla presionada al servidor.
-     * Formato enviado: {"action_id": "..."}
-     *
-     * Se asegura de enviar en el hilo del cliente para evitar crasheos.
+     * Envía el saludo binario al servidor al conectarse, para que el plugin
+     * sepa que puede usar el protocolo binario con este cliente. Incluye el
+     * hash de la caché local de este servidor, que se lee en el hilo de E/S.
+     */
+    public void enviarSaludo() {
+        descartarFragmentos();
+        conexionActual++;
+        servidorLegado = false;
+        servidorAceptaLotes = false;
+        recordarLista(null, 0, ProtocoloTeclas.SIN_HASH);
+        // Leer ya las teclas personalizadas, para tenerlas al recibir la lista
+        teclasPersonalizadas.cargar(obtenerClaveServidor());
+        cacheSincronizacion.leerHash(obtenerClaveServidor()).whenComplete((hash, error) ->
+                enviar(new KeybindPayload.Saludo(hash != null ? hash : ProtocoloTeclas.SIN_HASH)));
+    }
+
+    /**
+     * Al desconectarse del servidor, descarta las teclas que aún estuvieran
+     * esperando a aplicarse y la transferencia fragmentada a medias, para
+     * liberar los buffers de red que retenía. Debe llamarse desde el hilo
+     * del cliente.
+     */
+    public void alDesconectar() {
+        conexionActual++;
+        descartarFragmentos();
+    }
+
+    /**
+     * Envía la pulsación de una tecla dinámica al servidor, con el payload
+     * ya construido al sincronizar, sin crear objetos nuevos.
+     * Debe llamarse desde el hilo del cliente.
      *
-     * @param actionId ID de la acción cuya tecla fue presionada
+     * @param teclaDinamica Tecla pulsada
      */
-    public void enviarAccionAlServidor(String actionId) {
-        // Construir el JSON con GSON
-        JsonObject jsonObjeto = new JsonObject();
-        jsonObjeto.addProperty("action_id", actionId);
-        String jsonString = jsonObjeto.toString();
+    public void enviarPulsacion(TeclaDinamica teclaDinamica) {
+        KeybindPayload payload = teclaDinamica.pulsacion();
+        if (servidorLegado && payload instanceof KeybindPayload.Pulsacion) {
+            // El servidor cambió a un plugin antiguo sin volver a sincronizar (caso raro)
+            payload = KeybindPayload.crearPulsacion(teclaDinamica.id(), 0, KeybindData.SIN_HANDLE);
+        }
 
-        LOGGER.info("Enviando acción al servidor: {}", jsonString);
+        LOGGER.debug("Enviando acción al servidor: {}", teclaDinamica.id());
+        enviarEnHiloCliente(payload);
+    }
 
+    /**
+     * @return true si el servidor acepta las pulsaciones agrupadas por tick
+     */
+    public boolean aceptaLotePulsaciones() {
+        return servidorAceptaLotes && !servidorLegado;
+    }
+
+    /**
+     * Envía un lote con las pulsaciones de un tick.
+     * Debe llamarse desde el hilo del cliente.
+     *
+     * @param lote Pulsaciones agrupadas por acción
+     */
+    public void enviarLote(KeybindPayload.LotePulsaciones lote) {
+        LOGGER.debug("Enviando lote de {} acciones al servidor", lote.handles().length);
+        enviarEnHiloCliente(lote);
+    }
+
+    /**
+     * Envía un payload al servidor desde el hilo del cliente.
+     *
+     * @param payload Payload a enviar
+     */
+    private void enviar(KeybindPayload payload) {
         // Ejecutar el envío en el hilo del cliente
-        MinecraftClient.getInstance().execute(() -> {
-            try {
-                ClientPlayNetworking.send(KeybindPayload.desdeTexto(jsonString));
-            } catch (Exception e) {
-                LOGGER.error("Error al enviar paquete al servidor: {}", e.getMessage());
-            }
-        });
+        MinecraftClient.getInstance().execute(() -> enviarEnHiloCliente(payload));
+    }
+
+    /**
+     * Envía un payload al servidor. Debe llamarse desde el hilo del cliente.
+     *
+     * @param payload Payload a enviar
+     */
+    private void enviarEnHiloCliente(KeybindPayload payload) {
+        try {
+            ClientPlayNetworking.send(payload);
+        } catch (Exception e) {
+            LOGGER.error("Error al enviar paquete al servidor: {}", e.getMessage());
+        }
     }
 
     /**
@@ -143,4 +775,19 @@ public class KeybindNetworkHandler {
         }
         return "Servidor";
     }
+
+    /**
+     * Obtiene la clave con la que se identifica al servidor actual en la
+     * caché local. Se usa la dirección, ya que el nombre lo puede cambiar
+     * el jugador en su lista de servidores.
+     *
+     * @return Dirección del servidor, o "local" si no hay entrada de servidor
+     */
+    private String obtenerClaveServidor() {
+        MinecraftClient cliente = MinecraftClient.getInstance();
+        if (cliente.getCurrentServerEntry() != null && cliente.getCurrentServerEntry().address != null) {
+            return cliente.getCurrentServerEntry().address;
+        }
+        return "local";
+    }
 }
@@ -1,5 +1,8 @@
 package com.example.synchronizedkey.mod;
 
+import com.google.gson.JsonObject;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import net.minecraft.network.RegistryByteBuf;
 import net.minecraft.network.codec.PacketCodec;
 import net.minecraft.network.packet.CustomPayload;
@@ -9,58 +12,174 @@ import java.nio.charset.StandardCharsets;
 
 /**
  * Payload personalizado para el canal teclas_pro:main.
- * Envuelve datos crudos (bytes UTF-8) para compatibilidad con el
- * plugin Spigot que envía/recibe JSON como bytes planos.
+ *
+ * Los mensajes salientes del mod se codifican directamente en el buffer
+ * con el protocolo binario (ver ProtocoloTeclas). Los mensajes entrantes
+ * se leen como bytes crudos, ya que el plugin Spigot envía bytes planos
+ * sin prefijo de longitud (binario o JSON en plugins antiguos); para no
+ * copiarlos, el payload retiene una porción del buffer de red que
+ * KeybindNetworkHandler libera al terminar de procesarlo.
  */
-public record KeybindPayload(byte[] datos) implements CustomPayload {
+public sealed interface KeybindPayload extends CustomPayload {
 
     /** Identificador del canal de comunicación bidireccional */
-    public static final Identifier CANAL_ID = Identifier.of("teclas_pro", "main");
+    Identifier CANAL_ID = Identifier.of("teclas_pro", "main");
 
     /** ID tipado del payload para registro en Fabric Networking */
-    public static final Id<KeybindPayload> ID = new Id<>(CANAL_ID);
+    Id<KeybindPayload> ID = new Id<>(CANAL_ID);
 
     /**
-     * Codec que lee/escribe bytes crudos sin prefijo de longitud.
+     * Codec sin prefijo de longitud global.
      * Necesario para compatibilidad con Spigot que envía bytes planos.
      */
-    public static final PacketCodec<RegistryByteBuf, KeybindPayload> CODEC = new PacketCodec<>() {
+    PacketCodec<RegistryByteBuf, KeybindPayload> CODEC = new PacketCodec<>() {
         @Override
         public void encode(RegistryByteBuf buf, KeybindPayload payload) {
-            // Escribir los bytes crudos al buffer sin prefijo
-            buf.writeBytes(payload.datos);
+            payload.escribir(buf);
         }
 
         @Override
         public KeybindPayload decode(RegistryByteBuf buf) {
-            // Leer todos los bytes restantes del buffer (datos crudos de Spigot)
-            byte[] data = new byte[buf.readableBytes()];
-            buf.readBytes(data);
-            return new KeybindPayload(data);
+            // Retener los bytes restantes del buffer (datos crudos de Spigot)
+            // como una porción de solo lectura, sin copiarlos
+            return new Datos(buf.readRetainedSlice(buf.readableBytes()).asReadOnly());
         }
     };
 
     @Override
-    public Id<? extends CustomPayload> getId() {
+    default Id<? extends CustomPayload> getId() {
         return ID;
     }
 
     /**
-     * Convierte los bytes del payload a String UTF-8.
+     * Crea el payload que se envía al pulsar la tecla de una acción. Se
+     * construye una vez por sincronización y se reutiliza en cada pulsación.
+     * Formato binario: [versión][TIPO_PULSACION][VarInt generación][VarInt handle]
+     * Formato JSON (plugins antiguos, sin handle): {"action_id": "..."}
      *
-     * @return El contenido como cadena de texto
+     * @param actionId   ID de la acción
+     * @param generacion Generación de configuración del handle
+     * @param handle     Handle asignado por el servidor (SIN_HANDLE en plugins antiguos)
+     * @return Payload de la pulsación
      */
-    public String comoTexto() {
-        return new String(datos, StandardCharsets.UTF_8);
+    static KeybindPayload crearPulsacion(String actionId, int generacion, int handle) {
+        if (handle == KeybindData.SIN_HANDLE) {
+            JsonObject jsonObjeto = new JsonObject();
+            jsonObjeto.addProperty("action_id", actionId);
+            return Datos.desdeTexto(jsonObjeto.toString());
+        }
+        return new Pulsacion(generacion, handle);
     }
 
     /**
-     * Crea un KeybindPayload a partir de un String UTF-8.
+     * Escribe el contenido del payload en el buffer de salida.
+     *
+     * @param buf Buffer de red
+     */
+    void escribir(RegistryByteBuf buf);
+
+    /**
+     * Bytes crudos: paquetes recibidos del servidor y JSON para plugins antiguos.
+     * Los recibidos retienen una porción del buffer de red y deben liberarse
+     * (release) después de procesarlos.
      *
-     * @param texto El texto a convertir
-     * @return Nuevo payload con los bytes del texto
+     * @param datos Buffer de solo lectura con los bytes del mensaje
      */
-    public static KeybindPayload desdeTexto(String texto) {
-        return new KeybindPayload(texto.getBytes(StandardCharsets.UTF_8));
+    record Datos(ByteBuf datos) implements KeybindPayload {
+
+        @Override
+        public void escribir(RegistryByteBuf buf) {
+            // Escribir los bytes crudos al buffer sin prefijo y sin mover el
+            // índice de lectura, para poder enviar el mismo payload varias veces
+            buf.writeBytes(datos, datos.readerIndex(), datos.readableBytes());
+        }
+
+        /**
+         * Crea un payload a partir de un String UTF-8.
+         *
+         * @param texto El texto a convertir
+         * @return Nuevo payload con los bytes del texto
+         */
+        public static Datos desdeTexto(String texto) {
+            return new Datos(Unpooled.wrappedBuffer(texto.getBytes(StandardCharsets.UTF_8)).asReadOnly());
+        }
+    }
+
+    /**
+     * Saludo enviado al conectarse para anunciar soporte del protocolo binario,
+     * el hash de la lista de acciones guardada en la caché local, que se
+     * admiten mensajes comprimidos y fragmentados y que se pueden enviar las
+     * pulsaciones agrupadas.
+     * Formato: [versión][TIPO_SALUDO][long hash][byte capacidades]
+     *
+     * @param hashCache Hash de la caché local (SIN_HASH si no hay)
+     */
+    record Saludo(long hashCache) implements KeybindPayload {
+
+        @Override
+        public void escribir(RegistryByteBuf buf) {
+            buf.writeByte(ProtocoloTeclas.VERSION);
+            buf.writeByte(ProtocoloTeclas.TIPO_SALUDO);
+            buf.writeLong(hashCache);
+            buf.writeByte(ProtocoloTeclas.CAPACIDAD_EMPAQUETADO | ProtocoloTeclas.CAPACIDAD_LOTE_PULSACIONES);
+        }
+    }
+
+    /**
+     * Petición de la lista completa cuando la caché confirmada por el
+     * servidor no se pudo leer.
+     * Formato: [versión][TIPO_SOLICITAR_SINCRONIZACION]
+     */
+    record SolicitudSincronizacion() implements KeybindPayload {
+
+        @Override
+        public void escribir(RegistryByteBuf buf) {
+            buf.writeByte(ProtocoloTeclas.VERSION);
+            buf.writeByte(ProtocoloTeclas.TIPO_SOLICITAR_SINCRONIZACION);
+        }
+    }
+
+    /**
+     * Pulsación de una tecla dinámica, identificada por su handle.
+     * Formato: [versión][TIPO_PULSACION][VarInt generación][VarInt handle]
+     *
+     * @param generacion Generación de configuración a la que pertenece el handle
+     * @param handle     Handle de la acción pulsada
+     */
+    record Pulsacion(int generacion, int handle) implements KeybindPayload {
+
+        @Override
+        public void escribir(RegistryByteBuf buf) {
+            buf.writeByte(ProtocoloTeclas.VERSION);
+            buf.writeByte(ProtocoloTeclas.TIPO_PULSACION);
+            buf.writeVarInt(generacion);
+            buf.writeVarInt(handle);
+        }
+    }
+
+    /**
+     * Pulsaciones de un tick agrupadas por acción, para los plugins que
+     * anuncian CAPACIDAD_LOTE_PULSACIONES. Los arrays no se modifican
+     * después de crear el payload.
+     * Formato: [versión][TIPO_LOTE_PULSACIONES][VarInt generación][VarInt cantidad]
+     * ([VarInt handle][VarInt repeticiones])*
+     *
+     * @param generacion   Generación de configuración de los handles
+     * @param handles      Handles de las acciones pulsadas
+     * @param repeticiones Veces que se pulsó cada acción
+     */
+    record LotePulsaciones(int generacion, int[] handles, int[] repeticiones) implements KeybindPayload {
+
+        @Override
+        public void escribir(RegistryByteBuf buf) {
+            buf.writeByte(ProtocoloTeclas.VERSION);
+            buf.writeByte(ProtocoloTeclas.TIPO_LOTE_PULSACIONES);
+            buf.writeVarInt(generacion);
+            buf.writeVarInt(handles.length);
+            for (int i = 0; i < handles.length; i++) {
+                buf.writeVarInt(handles[i]);
+                buf.writeVarInt(repeticiones[i]);
+            }
+        }
     }
 }
@@ -0,0 +1,143 @@
+package com.example.synchronizedkey.mod;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Constantes del protocolo binario del canal teclas_pro:main.
+ * Debe mantenerse sincronizado con la clase equivalente del plugin.
+ *
+ * Cada mensaje binario empieza con [versión][tipo]. Los enteros van como
+ * VarInt y los textos como VarInt de longitud + UTF-8 (formato de
+ * PacketByteBuf.writeString), así que se leen con los métodos nativos del buffer.
+ */
+public final class ProtocoloTeclas {
+
+    /** Versión actual del protocolo binario */
+    public static final int VERSION = 1;
+
+    /** Cliente → Servidor: saludo indicando soporte del protocolo binario */
+    public static final int TIPO_SALUDO = 0x01;
+
+    /** Cliente → Servidor: pulsación de una tecla dinámica */
+    public static final int TIPO_PULSACION = 0x02;
+
+    /** Cliente → Servidor: petición de la lista completa (caché local no disponible) */
+    public static final int TIPO_SOLICITAR_SINCRONIZACION = 0x03;
+
+    /** Cliente → Servidor: pulsaciones de un tick agrupadas (handle + repeticiones) */
+    public static final int TIPO_LOTE_PULSACIONES = 0x04;
+
+    /** Servidor → Cliente: lista completa de acciones */
+    public static final int TIPO_SINCRONIZACION = 0x10;
+
+    /** Servidor → Cliente: la caché local coincide, usar la lista guardada */
+    public static final int TIPO_CONFIRMACION_CACHE = 0x11;
+
+    /** Servidor → Cliente: cambios respecto a la generación anterior (tras /sk reload) */
+    public static final int TIPO_DELTA = 0x12;
+
+    /** Servidor → Cliente: enfriamiento restante de una acción tras usarla */
+    public static final int TIPO_ENFRIAMIENTO = 0x13;
+
+    /** Servidor → Cliente: otro mensaje comprimido con deflate y el diccionario compartido */
+    public static final int TIPO_COMPRIMIDO = 0x14;
+
+    /** Servidor → Cliente: trozo de un mensaje demasiado grande para un solo paquete */
+    public static final int TIPO_FRAGMENTO = 0x15;
+
+    /** Servidor → Cliente: capacidades del plugin, en respuesta al saludo */
+    public static final int TIPO_CAPACIDADES = 0x16;
+
+    /** Capacidad anunciada en el saludo: el mod entiende TIPO_COMPRIMIDO y TIPO_FRAGMENTO */
+    public static final int CAPACIDAD_EMPAQUETADO = 0x01;
+
+    /**
+     * Capacidad anunciada en el saludo y en TIPO_CAPACIDADES: el mod y el
+     * plugin entienden TIPO_LOTE_PULSACIONES
+     */
+    public static final int CAPACIDAD_LOTE_PULSACIONES = 0x02;
+
+    /** Máximo de pulsaciones en un lote (el plugin rechaza los lotes mayores) */
+    public static final int MAXIMO_PULSACIONES_LOTE = 64;
+
+    /** Tamaño máximo aceptado para un mensaje descomprimido o reensamblado */
+    public static final int TAMANO_MAXIMO_MENSAJE = 8 * 1024 * 1024;
+
+    /** Número máximo de fragmentos aceptado para un mensaje */
+    public static final int MAXIMO_FRAGMENTOS = 4096;
+
+    /**
+     * Diccionario de la compresión: palabras habituales en los IDs y labels
+     * de las acciones. Debe ser idéntico byte a byte al del plugin.
+     */
+    private static final byte[] DICCIONARIO = ("kit_warp_mapa_clan_amigos_ajustes_mochila_casa_home_spawn_"
+            + "mision_misiones_comando_sonido_teletransportar_inventario_"
+            + "Kit Warp Mapa Clan Amigos Ajustes Mochila Casa Spawn Misiones Comandos "
+            + "Open Menu Shop Profile Quests Settings Friends Home "
+            + "Ir al Ir a Abrir Ver Mostrar Usar Menú Tienda Perfil Inventario "
+            + "abrir_menu_abrir_tienda_abrir_perfil_ver_").getBytes(StandardCharsets.UTF_8);
+
+    /** Hash que indica que no hay caché para este servidor */
+    public static final long SIN_HASH = 0L;
+
+    /**
+     * Longitud máxima en caracteres aceptada para los textos recibidos. El
+     * plugin no envía acciones con un id o un label más largos; debe
+     * coincidir con la del plugin.
+     */
+    public static final int LONGITUD_MAXIMA_TEXTO = 256;
+
+    private ProtocoloTeclas() {
+    }
+
+    /**
+     * Indica si los datos recibidos usan el formato JSON de plugins antiguos.
+     *
+     * @param primerByte Primer byte del mensaje
+     * @return true si es '{' o '['
+     */
+    public static boolean esJsonLegado(int primerByte) {
+        return primerByte == '{' || primerByte == '[';
+    }
+
+    /**
+     * Descomprime un mensaje TIPO_COMPRIMIDO con el diccionario compartido.
+     *
+     * @param datos            Datos comprimidos (se leen directamente, sin copiarlos)
+     * @param longitudOriginal Longitud anunciada del mensaje descomprimido
+     * @return Mensaje original, con su cabecera
+     * @throws IllegalArgumentException Si los datos no son válidos o no tienen la longitud anunciada
+     */
+    public static byte[] descomprimir(ByteBuffer datos, int longitudOriginal) {
+        if (longitudOriginal <= 0 || longitudOriginal > TAMANO_MAXIMO_MENSAJE) {
+            throw new IllegalArgumentException("Longitud descomprimida inválida: " + longitudOriginal);
+        }
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(datos);
+            byte[] resultado = new byte[longitudOriginal];
+            int leidos = 0;
+            while (leidos < longitudOriginal && !inflater.finished()) {
+                int n = inflater.inflate(resultado, leidos, longitudOriginal - leidos);
+                if (n == 0) {
+                    if (!inflater.needsDictionary()) {
+                        break;
+                    }
+                    inflater.setDictionary(DICCIONARIO);
+                }
+                leidos += n;
+            }
+            if (leidos != longitudOriginal || !inflater.finished()) {
+                throw new IllegalArgumentException("Datos comprimidos truncados o con otra longitud");
+            }
+            return resultado;
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Datos comprimidos inválidos: " + e.getMessage());
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -14,21 +14,28 @@ import org.slf4j.LoggerFactory;
  *
  * Flujo principal:
  * 1. El servidor envía la lista de teclas por el canal teclas_pro:main
- * 2. El mod parsea el JSON y registra KeyBindings dinámicos
- * 3. En cada tick se detectan pulsaciones y se envían al servidor
+ * 2. El mod parsea el paquete y registra KeyBindings dinámicos
+ * 3. Las pulsaciones se encolan al producirse y se envían al servidor en cada tick
  * 4. Al desconectarse, se limpian las teclas dinámicas
  */
 public class SynchronizedKeyModClient implements ClientModInitializer {
 
     private static final Logger LOGGER = LoggerFactory.getLogger("SynchronizedKey-Client");
 
+    /** Gestor de teclas dinámicas, accesible para los mixins (null antes de inicializar) */
+    private static DynamicKeybindManager gestorTeclasActivo = null;
+
     @Override
     public void onInitializeClient() {
         LOGGER.info("Inicializando SynchronizedKey Mod (cliente)...");
 
         // Crear las instancias de los gestores
-        DynamicKeybindManager gestorTeclas = new DynamicKeybindManager();
-        KeybindNetworkHandler gestorRed = new KeybindNetworkHandler(gestorTeclas);
+        TeclasPersonalizadas teclasPersonalizadas = new TeclasPersonalizadas();
+        DynamicKeybindManager gestorTeclas = new DynamicKeybindManager(teclasPersonalizadas);
+        gestorTeclasActivo = gestorTeclas;
+        CacheSincronizacion cacheSincronizacion = new CacheSincronizacion();
+        KeybindNetworkHandler gestorRed = new KeybindNetworkHandler(gestorTeclas, cacheSincronizacion,
+                teclasPersonalizadas);
         KeybindInputHandler gestorInput = new KeybindInputHandler(gestorTeclas, gestorRed);
 
         // Paso 1: Registrar los tipos de payload para el canal teclas_pro:main
@@ -42,16 +49,29 @@ public class SynchronizedKeyModClient implements ClientModInitializer {
                 KeybindPayload.ID,
                 gestorRed::recibirPaquete);
 
-        // Paso 3: Registrar el callback de tick del cliente para detectar pulsaciones
+        // Paso 3: Registrar el callback de tick del cliente para enviar las pulsaciones
         ClientTickEvents.END_CLIENT_TICK.register(gestorInput::onClientTick);
 
-        // Paso 4: Registrar la limpieza al desconectarse del servidor
+        // Paso 4: Anunciar el protocolo binario (y el hash de la caché local) al conectarse
+        ClientPlayConnectionEvents.JOIN.register((handler, sender, client) -> gestorRed.enviarSaludo());
+
+        // Paso 5: Registrar la limpieza al desconectarse del servidor
         ClientPlayConnectionEvents.DISCONNECT.register((handler, client) -> {
             LOGGER.info("Desconectado del servidor. Limpiando teclas dinámicas...");
             // Ejecutar en el hilo del cliente para seguridad
-            client.execute(gestorTeclas::limpiarTeclasDinamicas);
+            client.execute(() -> {
+                gestorRed.alDesconectar();
+                gestorTeclas.limpiarTeclasDinamicas();
+            });
         });
 
         LOGGER.info("SynchronizedKey Mod (cliente) inicializado correctamente.");
     }
+
+    /**
+     * @return Gestor de teclas dinámicas del mod (null si aún no se ha inicializado)
+     */
+    public static DynamicKeybindManager obtenerGestorTeclas() {
+        return gestorTeclasActivo;
+    }
 }
@@ -0,0 +1,19 @@
+package com.example.synchronizedkey.mod;
+
+import net.minecraft.client.option.KeyBinding;
+
+/**
+ * Tecla dinámica registrada en el cliente: el KeyBinding que ve el jugador
+ * junto al handle numérico que el servidor asignó a la acción.
+ *
+ * Incluye el payload de pulsación ya construido para la generación
+ * actual, de modo que enviar una pulsación no crea ningún objeto. Se
+ * vuelve a crear en cada sincronización.
+ *
+ * @param id        Identificador de la acción (para los servidores JSON antiguos)
+ * @param handle    Handle de la acción en la generación actual
+ * @param tecla     KeyBinding registrado en el menú de controles
+ * @param pulsacion Payload que se envía al servidor al pulsarla (inmutable, compartido)
+ */
+public record TeclaDinamica(String id, int handle, KeyBinding tecla, KeybindPayload pulsacion) {
+}
@@ -0,0 +1,144 @@
+package com.example.synchronizedkey.mod;
+
+import net.fabricmc.loader.api.FabricLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Teclas que el jugador ha cambiado en las acciones de cada servidor.
+ *
+ * Los KeyBinding dinámicos se eliminan al desconectarse y Minecraft solo
+ * lee options.txt al arrancar, así que las teclas personalizadas se
+ * guardan aparte: un archivo por servidor en config/synchronizedkey/teclas
+ * con el formato [byte versión][int cantidad] y por cada acción
+ * [UTF id][UTF clave de traducción de la tecla] (ej: key.keyboard.m). Solo
+ * se guardan las acciones cuya tecla no es la que envía el servidor.
+ *
+ * Cada archivo se lee la primera vez que se necesita en la sesión y se
+ * mantiene en memoria; las lecturas y escrituras se hacen en un hilo de
+ * E/S propio para no bloquear el hilo del cliente ni el de red.
+ */
+public class TeclasPersonalizadas {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("SynchronizedKey-Teclas");
+
+    /** Versión del formato del archivo */
+    private static final int VERSION_FORMATO = 1;
+
+    /** Directorio donde se guardan los archivos */
+    private final Path directorio;
+
+    /** Teclas personalizadas por servidor, leídas o en lectura */
+    private final Map<String, CompletableFuture<Map<String, String>>> porServidor = new ConcurrentHashMap<>();
+
+    /** Hilo único de E/S: serializa escrituras y lecturas del mismo archivo */
+    private final ExecutorService ejecutorIO = Executors.newSingleThreadExecutor(tarea -> {
+        Thread hilo = new Thread(tarea, "SynchronizedKey-IO-Teclas");
+        hilo.setDaemon(true);
+        return hilo;
+    });
+
+    public TeclasPersonalizadas() {
+        this.directorio = FabricLoader.getInstance().getConfigDir().resolve("synchronizedkey").resolve("teclas");
+    }
+
+    /**
+     * Devuelve las teclas personalizadas de un servidor, leyéndolas del
+     * disco la primera vez. El mapa devuelto es el que se mantiene en
+     * memoria y solo debe modificarlo el hilo del cliente.
+     *
+     * @param claveServidor Clave del servidor (dirección)
+     * @return Mapa id de acción → clave de traducción de la tecla
+     */
+    public CompletableFuture<Map<String, String>> cargar(String claveServidor) {
+        return porServidor.computeIfAbsent(claveServidor, clave ->
+                CompletableFuture.supplyAsync(() -> leer(clave), ejecutorIO));
+    }
+
+    /**
+     * Guarda de forma asíncrona las teclas personalizadas de un servidor.
+     * Se escribe primero en un archivo temporal y luego se reemplaza, para
+     * no dejar nunca un archivo a medias.
+     *
+     * @param claveServidor  Clave del servidor
+     * @param personalizadas Copia de las teclas personalizadas (no se modifica después)
+     */
+    public void guardar(String claveServidor, Map<String, String> personalizadas) {
+        ejecutorIO.execute(() -> {
+            Path archivo = archivoDe(claveServidor);
+            Path temporal = archivo.resolveSibling(archivo.getFileName() + ".tmp");
+            try {
+                Files.createDirectories(directorio);
+                try (OutputStream flujo = Files.newOutputStream(temporal);
+                     DataOutputStream salida = new DataOutputStream(flujo)) {
+                    salida.writeByte(VERSION_FORMATO);
+                    salida.writeInt(personalizadas.size());
+                    for (Map.Entry<String, String> entrada : personalizadas.entrySet()) {
+                        salida.writeUTF(entrada.getKey());
+                        salida.writeUTF(entrada.getValue());
+                    }
+                }
+                Files.move(temporal, archivo, StandardCopyOption.REPLACE_EXISTING);
+                LOGGER.debug("Teclas personalizadas guardadas en '{}': {}", archivo, personalizadas.size());
+            } catch (IOException e) {
+                LOGGER.warn("No se pudieron guardar las teclas personalizadas '{}': {}", archivo, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Lee el archivo de un servidor en el hilo de E/S.
+     *
+     * @param claveServidor Clave del servidor
+     * @return Teclas personalizadas (vacío si no hay archivo o no se pudo leer)
+     */
+    private Map<String, String> leer(String claveServidor) {
+        Map<String, String> personalizadas = new HashMap<>();
+        Path archivo = archivoDe(claveServidor);
+        if (!Files.isRegularFile(archivo)) {
+            return personalizadas;
+        }
+        try (InputStream flujo = Files.newInputStream(archivo);
+             DataInputStream entrada = new DataInputStream(flujo)) {
+            if (entrada.readUnsignedByte() != VERSION_FORMATO) {
+                LOGGER.warn("Formato desconocido en '{}', se ignora.", archivo);
+                return personalizadas;
+            }
+            int cantidad = entrada.readInt();
+            for (int i = 0; i < cantidad; i++) {
+                personalizadas.put(entrada.readUTF(), entrada.readUTF());
+            }
+        } catch (IOException e) {
+            LOGGER.warn("No se pudieron leer las teclas personalizadas '{}': {}", archivo, e.getMessage());
+            personalizadas.clear();
+        }
+        return personalizadas;
+    }
+
+    /**
+     * Convierte la clave del servidor en un nombre de archivo seguro.
+     *
+     * @param claveServidor Clave del servidor (dirección)
+     * @return Ruta del archivo
+     */
+    private Path archivoDe(String claveServidor) {
+        String nombre = claveServidor.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9._-]", "_");
+        return directorio.resolve(nombre + ".bin");
+    }
+}
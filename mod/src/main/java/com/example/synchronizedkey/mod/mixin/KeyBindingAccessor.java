@@ -1,6 +1,7 @@
 package com.example.synchronizedkey.mod.mixin;
 
 import net.minecraft.client.option.KeyBinding;
+import net.minecraft.client.util.InputUtil;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Mutable;
 import org.spongepowered.asm.mixin.gen.Accessor;
@@ -10,7 +11,8 @@ import java.util.Map;
 /**
  * Accessor Mixin para acceder y modificar el mapa estático CATEGORY_ORDER_MAP
  * de
- * KeyBinding.
+ * KeyBinding, y para mantener los índices estáticos de teclas por ID y
+ * por código al añadir o quitar teclas dinámicas.
  * Esto permite registrar categorías dinámicas con una prioridad de orden,
  * evitando NullPointerException al ordenar categorías en el menú de controles.
  *
@@ -40,4 +42,27 @@ public interface KeyBindingAccessor {
     static void setCategoryOrderMap(Map<String, Integer> mapaOrden) {
         throw new AssertionError("Mixin no aplicado");
     }
+
+    /**
+     * Obtiene el mapa estático de todas las teclas por su clave de traducción.
+     */
+    @Accessor("KEYS_BY_ID")
+    static Map<String, KeyBinding> getKeysById() {
+        throw new AssertionError("Mixin no aplicado");
+    }
+
+    /**
+     * Obtiene el mapa estático que usa el juego para saber qué tecla
+     * corresponde a cada código pulsado.
+     */
+    @Accessor("KEY_TO_BINDINGS")
+    static Map<InputUtil.Key, KeyBinding> getKeyToBindings() {
+        throw new AssertionError("Mixin no aplicado");
+    }
+
+    /**
+     * Obtiene el código asignado actualmente a la tecla.
+     */
+    @Accessor("boundKey")
+    InputUtil.Key getBoundKey();
 }
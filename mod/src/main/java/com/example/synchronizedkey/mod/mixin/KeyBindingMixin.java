@@ -0,0 +1,42 @@
+package com.example.synchronizedkey.mod.mixin;
+
+import com.example.synchronizedkey.mod.DynamicKeybindManager;
+import com.example.synchronizedkey.mod.SynchronizedKeyModClient;
+import net.minecraft.client.option.KeyBinding;
+import net.minecraft.client.util.InputUtil;
+import org.spongepowered.asm.mixin.Final;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+import java.util.Map;
+
+/**
+ * Mixin sobre la pulsación de teclas de KeyBinding.
+ * Cuando el juego registra la pulsación de una tecla (la misma que después
+ * devuelve wasPressed()), avisa al gestor de teclas dinámicas para que la
+ * encole si es de una acción del servidor. Así no hay que recorrer todas
+ * las teclas dinámicas en cada tick.
+ */
+@Mixin(KeyBinding.class)
+public abstract class KeyBindingMixin {
+
+    /** Mapa de vanilla con el KeyBinding asignado a cada tecla */
+    @Shadow
+    @Final
+    private static Map<InputUtil.Key, KeyBinding> KEY_TO_BINDINGS;
+
+    @Inject(method = "onKeyPressed", at = @At("HEAD"))
+    private static void synchronizedkey$alPulsarTecla(InputUtil.Key tecla, CallbackInfo info) {
+        DynamicKeybindManager gestorTeclas = SynchronizedKeyModClient.obtenerGestorTeclas();
+        if (gestorTeclas == null) {
+            return;
+        }
+        KeyBinding binding = KEY_TO_BINDINGS.get(tecla);
+        if (binding != null) {
+            gestorTeclas.alPulsarTecla(binding);
+        }
+    }
+}
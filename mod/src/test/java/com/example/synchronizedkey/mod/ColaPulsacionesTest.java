@@ -0,0 +1,123 @@
+package com.example.synchronizedkey.mod;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Pruebas de la cola circular de pulsaciones: orden de llegada,
+ * capacidad máxima y vueltas del índice de inicio.
+ */
+class ColaPulsacionesTest {
+
+    private static TeclaDinamica tecla(int handle) {
+        return new TeclaDinamica("accion" + handle, handle, null, null);
+    }
+
+    @Test
+    void colaNuevaEstaVacia() {
+        ColaPulsaciones cola = new ColaPulsaciones();
+        assertTrue(cola.estaVacia());
+        assertNull(cola.sacar());
+    }
+
+    @Test
+    void sacaEnOrdenDeLlegada() {
+        ColaPulsaciones cola = new ColaPulsaciones();
+        TeclaDinamica primera = tecla(1);
+        TeclaDinamica segunda = tecla(2);
+        TeclaDinamica tercera = tecla(3);
+        cola.agregar(primera);
+        cola.agregar(segunda);
+        cola.agregar(tercera);
+
+        assertFalse(cola.estaVacia());
+        assertSame(primera, cola.sacar());
+        assertSame(segunda, cola.sacar());
+        assertSame(tercera, cola.sacar());
+        assertNull(cola.sacar());
+        assertTrue(cola.estaVacia());
+    }
+
+    @Test
+    void descartaLasPulsacionesQueNoCaben() {
+        ColaPulsaciones cola = new ColaPulsaciones();
+        TeclaDinamica[] teclas = new TeclaDinamica[ColaPulsaciones.CAPACIDAD];
+        for (int i = 0; i < teclas.length; i++) {
+            teclas[i] = tecla(i);
+            assertTrue(cola.agregar(teclas[i]), "pulsación " + i);
+        }
+        assertFalse(cola.agregar(tecla(-1)));
+
+        for (TeclaDinamica tecla : teclas) {
+            assertSame(tecla, cola.sacar());
+        }
+        assertNull(cola.sacar());
+    }
+
+    @Test
+    void conservaElOrdenAlDarLaVuelta() {
+        ColaPulsaciones cola = new ColaPulsaciones();
+        int siguienteAgregada = 0;
+        int siguienteSacada = 0;
+        TeclaDinamica[] teclas = new TeclaDinamica[ColaPulsaciones.CAPACIDAD * 10];
+        for (int i = 0; i < teclas.length; i++) {
+            teclas[i] = tecla(i);
+        }
+
+        // Llenar y vaciar por partes desiguales para que inicio recorra todas las posiciones
+        while (siguienteSacada < teclas.length) {
+            for (int i = 0; i < 37 && siguienteAgregada < teclas.length; i++) {
+                if (!cola.agregar(teclas[siguienteAgregada])) {
+                    break;
+                }
+                siguienteAgregada++;
+            }
+            for (int i = 0; i < 23 || siguienteAgregada == teclas.length; i++) {
+                TeclaDinamica sacada = cola.sacar();
+                if (sacada == null) {
+                    break;
+                }
+                assertSame(teclas[siguienteSacada++], sacada);
+            }
+        }
+        assertTrue(cola.estaVacia());
+    }
+
+    @Test
+    void llenaTrasDarLaVuelta() {
+        ColaPulsaciones cola = new ColaPulsaciones();
+        for (int i = 0; i < 10; i++) {
+            cola.agregar(tecla(i));
+            cola.sacar();
+        }
+
+        for (int i = 0; i < ColaPulsaciones.CAPACIDAD; i++) {
+            assertTrue(cola.agregar(tecla(i)));
+        }
+        assertFalse(cola.agregar(tecla(-1)));
+        for (int i = 0; i < ColaPulsaciones.CAPACIDAD; i++) {
+            assertEquals(i, cola.sacar().handle());
+        }
+    }
+
+    @Test
+    void vaciarDescartaLasPendientes() {
+        ColaPulsaciones cola = new ColaPulsaciones();
+        for (int i = 0; i < 5; i++) {
+            cola.agregar(tecla(i));
+        }
+
+        cola.vaciar();
+        assertTrue(cola.estaVacia());
+        assertNull(cola.sacar());
+
+        TeclaDinamica nueva = tecla(9);
+        assertTrue(cola.agregar(nueva));
+        assertSame(nueva, cola.sacar());
+    }
+}
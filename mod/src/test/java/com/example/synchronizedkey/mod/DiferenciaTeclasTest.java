@@ -0,0 +1,78 @@
+package com.example.synchronizedkey.mod;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Pruebas de la diferencia entre la lista registrada en el cliente y una
+ * lista recibida del servidor.
+ */
+class DiferenciaTeclasTest {
+
+    private static final KeybindData MENU = new KeybindData("abrir_menu", "Abrir Menú", 77, 0);
+    private static final KeybindData TIENDA = new KeybindData("abrir_tienda", "Abrir Tienda", 84, 1);
+    private static final KeybindData PERFIL = new KeybindData("abrir_perfil", "Abrir Perfil", 80, 2);
+
+    @Test
+    void listasIgualesNoTienenCambios() {
+        DiferenciaTeclas diferencia = DiferenciaTeclas.calcular(List.of(MENU, TIENDA), List.of(MENU, TIENDA));
+        assertTrue(diferencia.handlesEliminados().isEmpty());
+        assertTrue(diferencia.cambios().isEmpty());
+    }
+
+    @Test
+    void elOrdenNoCuentaComoCambio() {
+        DiferenciaTeclas diferencia = DiferenciaTeclas.calcular(List.of(MENU, TIENDA), List.of(TIENDA, MENU));
+        assertTrue(diferencia.handlesEliminados().isEmpty());
+        assertTrue(diferencia.cambios().isEmpty());
+    }
+
+    @Test
+    void detectaAccionesNuevasYEliminadas() {
+        DiferenciaTeclas diferencia = DiferenciaTeclas.calcular(List.of(MENU, TIENDA), List.of(MENU, PERFIL));
+        assertEquals(Set.of(TIENDA.handle()), diferencia.handlesEliminados());
+        assertEquals(List.of(PERFIL), diferencia.cambios());
+    }
+
+    @Test
+    void cualquierDatoDistintoEsUnCambio() {
+        KeybindData otraEtiqueta = new KeybindData(MENU.id(), "Menú", MENU.defaultKey(), MENU.handle());
+        KeybindData otraTecla = new KeybindData(TIENDA.id(), TIENDA.label(), 85, TIENDA.handle());
+        KeybindData otroHandle = new KeybindData(PERFIL.id(), PERFIL.label(), PERFIL.defaultKey(), 7);
+
+        DiferenciaTeclas diferencia = DiferenciaTeclas.calcular(
+                List.of(MENU, TIENDA, PERFIL), List.of(otraEtiqueta, otraTecla, otroHandle));
+        assertTrue(diferencia.handlesEliminados().isEmpty());
+        assertEquals(List.of(otraEtiqueta, otraTecla, otroHandle), diferencia.cambios());
+    }
+
+    @Test
+    void desdeListaVaciaTodoEsNuevo() {
+        DiferenciaTeclas diferencia = DiferenciaTeclas.calcular(List.of(), List.of(MENU, TIENDA));
+        assertTrue(diferencia.handlesEliminados().isEmpty());
+        assertEquals(List.of(MENU, TIENDA), diferencia.cambios());
+    }
+
+    @Test
+    void haciaListaVaciaTodoSeElimina() {
+        DiferenciaTeclas diferencia = DiferenciaTeclas.calcular(List.of(MENU, TIENDA, PERFIL), List.of());
+        assertEquals(Set.of(0, 1, 2), diferencia.handlesEliminados());
+        assertTrue(diferencia.cambios().isEmpty());
+    }
+
+    @Test
+    void unHandleReutilizadoPorOtraAccion() {
+        // abrir_tienda desaparece y abrir_perfil ocupa su handle
+        KeybindData perfilConHandleDeTienda = new KeybindData(PERFIL.id(), PERFIL.label(), PERFIL.defaultKey(),
+                TIENDA.handle());
+        DiferenciaTeclas diferencia = DiferenciaTeclas.calcular(
+                List.of(MENU, TIENDA), List.of(MENU, perfilConHandleDeTienda));
+        assertEquals(Set.of(TIENDA.handle()), diferencia.handlesEliminados());
+        assertEquals(List.of(perfilConHandleDeTienda), diferencia.cambios());
+    }
+}
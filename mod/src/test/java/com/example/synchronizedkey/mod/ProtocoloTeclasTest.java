@@ -0,0 +1,87 @@
+package com.example.synchronizedkey.mod;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HexFormat;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Pruebas de la descompresión de mensajes TIPO_COMPRIMIDO con datos
+ * generados por el plugin, de forma que también comprueban que los dos
+ * diccionarios siguen siendo iguales.
+ */
+class ProtocoloTeclasTest {
+
+    /** Sincronización con dos acciones (abrir_menu y abrir_tienda) tal como la escribe el plugin */
+    private static final byte[] MENSAJE = HexFormat.of().parseHex(
+            "0110020a61627269725f6d656e750b4162726972204d656ec3ba4d0c61627269725f7469656e"
+                    + "64610c4162726972205469656e646154");
+
+    /** MENSAJE comprimido por ProtocoloTeclas.comprimir del plugin */
+    private static final byte[] COMPRIMIDO = HexFormat.of().parseHex(
+            "78f97ef683ce631460e24228e686d80636dc970759270f440662610800ee8912fc");
+
+    @Test
+    void descomprimeLosDatosDelPlugin() {
+        assertArrayEquals(MENSAJE, ProtocoloTeclas.descomprimir(ByteBuffer.wrap(COMPRIMIDO), MENSAJE.length));
+    }
+
+    @Test
+    void leeDesdeLaPosicionDelBuffer() {
+        // Como al recibirlo: los datos comprimidos van detrás de la cabecera
+        byte[] paquete = new byte[COMPRIMIDO.length + 3];
+        paquete[0] = ProtocoloTeclas.VERSION;
+        paquete[1] = ProtocoloTeclas.TIPO_COMPRIMIDO;
+        paquete[2] = (byte) MENSAJE.length;
+        System.arraycopy(COMPRIMIDO, 0, paquete, 3, COMPRIMIDO.length);
+
+        ByteBuffer datos = ByteBuffer.wrap(paquete).position(3);
+        assertArrayEquals(MENSAJE, ProtocoloTeclas.descomprimir(datos, MENSAJE.length));
+
+        ByteBuffer directo = ByteBuffer.allocateDirect(paquete.length).put(paquete).position(3);
+        assertArrayEquals(MENSAJE, ProtocoloTeclas.descomprimir(directo, MENSAJE.length));
+    }
+
+    @Test
+    void rechazaUnaLongitudDistintaDeLaAnunciada() {
+        assertThrows(IllegalArgumentException.class,
+                () -> ProtocoloTeclas.descomprimir(ByteBuffer.wrap(COMPRIMIDO), MENSAJE.length - 1));
+        assertThrows(IllegalArgumentException.class,
+                () -> ProtocoloTeclas.descomprimir(ByteBuffer.wrap(COMPRIMIDO), MENSAJE.length + 1));
+    }
+
+    @Test
+    void rechazaLongitudesFueraDeRango() {
+        assertThrows(IllegalArgumentException.class,
+                () -> ProtocoloTeclas.descomprimir(ByteBuffer.wrap(COMPRIMIDO), 0));
+        assertThrows(IllegalArgumentException.class,
+                () -> ProtocoloTeclas.descomprimir(ByteBuffer.wrap(COMPRIMIDO), -1));
+        assertThrows(IllegalArgumentException.class,
+                () -> ProtocoloTeclas.descomprimir(ByteBuffer.wrap(COMPRIMIDO), ProtocoloTeclas.TAMANO_MAXIMO_MENSAJE + 1));
+    }
+
+    @Test
+    void rechazaDatosTruncadosOCorruptos() {
+        byte[] truncado = Arrays.copyOf(COMPRIMIDO, COMPRIMIDO.length - 6);
+        assertThrows(IllegalArgumentException.class,
+                () -> ProtocoloTeclas.descomprimir(ByteBuffer.wrap(truncado), MENSAJE.length));
+
+        byte[] corrupto = COMPRIMIDO.clone();
+        corrupto[0] = 0x00;
+        assertThrows(IllegalArgumentException.class,
+                () -> ProtocoloTeclas.descomprimir(ByteBuffer.wrap(corrupto), MENSAJE.length));
+    }
+
+    @Test
+    void distingueElJsonAntiguo() {
+        assertTrue(ProtocoloTeclas.esJsonLegado('{'));
+        assertTrue(ProtocoloTeclas.esJsonLegado('['));
+        assertFalse(ProtocoloTeclas.esJsonLegado(ProtocoloTeclas.VERSION));
+    }
+}
@@ -0,0 +1,236 @@
+package com.example.synchronizedkey.plugin;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Cola única de sincronización para los jugadores que acaban de conectarse.
+ *
+ * En lugar de programar una tarea con retraso fijo por cada jugador, los
+ * jugadores esperan en la cola hasta que su mod envía el saludo (señal de
+ * que ya puede recibir la lista) y se atienden en orden de llegada, con un
+ * máximo de envíos por tick. Los clientes que no saludan (mods antiguos)
+ * se atienden al agotar el tiempo de espera configurado.
+ *
+ * Cada jugador recibe la lista una sola vez por formato: si el saludo llega
+ * antes que PlayerJoinEvent no se le vuelve a encolar, y no se le envía si
+ * ya la tiene en el formato de su cliente (ej: se la envió el difusor). Un
+ * saludo que llega después del envío en JSON por tiempo agotado sí provoca
+ * un único envío binario, que sustituye a la lista JSON.
+ *
+ * Lleva métricas de la profundidad de la cola y del tiempo desde la
+ * conexión hasta el envío de las teclas, consultables con /sk estado.
+ *
+ * Todos los métodos se ejecutan en el hilo principal.
+ */
+public class ColaSincronizacionInicial {
+
+    /** Envíos por tick si no se configura otro valor */
+    private static final int ENVIOS_POR_TICK_POR_DEFECTO = 20;
+
+    /** Espera máxima del saludo si no se configura otro valor (40 ticks = 2 segundos) */
+    private static final int ESPERA_SALUDO_TICKS_POR_DEFECTO = 40;
+
+    private static final long NANOS_POR_TICK = 50_000_000L;
+
+    private final SynchronizedKeyPlugin plugin;
+
+    /**
+     * Jugadores conectados cuyo mod aún no ha saludado, con el instante de
+     * conexión (System.nanoTime). Como la espera es igual para todos, el
+     * orden de inserción es también el orden en que vencen.
+     */
+    private final Map<UUID, Long> esperandoSaludo = new LinkedHashMap<>();
+
+    /** Jugadores listos para recibir la lista, con su instante de conexión */
+    private final Map<UUID, Long> listos = new LinkedHashMap<>();
+
+    /** Tarea repetitiva que atiende la cola (null mientras está vacía) */
+    private BukkitTask tarea = null;
+
+    // Métricas acumuladas desde que se habilitó el plugin
+    private int profundidadMaxima = 0;
+    private long sincronizados = 0;
+    private long sincronizadosPorTiempoAgotado = 0;
+    private long sumaMillisHastaTeclas = 0;
+    private long maximoMillisHastaTeclas = 0;
+
+    /**
+     * Constructor de la cola.
+     *
+     * @param plugin Instancia del plugin principal
+     */
+    public ColaSincronizacionInicial(SynchronizedKeyPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Añade a la cola un jugador que acaba de conectarse, a la espera del
+     * saludo de su mod.
+     *
+     * @param jugador Jugador conectado
+     */
+    public void alConectarse(Player jugador) {
+        // El saludo llegó antes que PlayerJoinEvent: ya está en la cola de listos
+        SesionCliente sesion = plugin.obtenerGestorSesiones().buscarSesion(jugador);
+        if (sesion != null && sesion.usaProtocoloBinario()) {
+            return;
+        }
+        esperandoSaludo.put(jugador.getUniqueId(), System.nanoTime());
+        asegurarTarea();
+    }
+
+    /**
+     * Marca al jugador como listo tras recibir el saludo de su mod. Si el
+     * saludo llega sin haber pasado por alConectarse (ej: el mod se
+     * reinicializa), también se le envía la lista.
+     *
+     * @param jugador Jugador cuyo mod envió el saludo
+     * @param sesion  Sesión del jugador
+     */
+    public void alRecibirSaludo(Player jugador, SesionCliente sesion) {
+        // El saludo pide la lista: la enviada antes de reinicializarse el mod ya no cuenta
+        sesion.olvidarSincronizacion();
+        UUID idJugador = jugador.getUniqueId();
+        Long instanteConexion = esperandoSaludo.remove(idJugador);
+        listos.putIfAbsent(idJugador, instanteConexion != null ? instanteConexion : System.nanoTime());
+        asegurarTarea();
+    }
+
+    /**
+     * Arranca la tarea repetitiva si no está en marcha.
+     */
+    private void asegurarTarea() {
+        if (tarea == null) {
+            tarea = plugin.getServer().getScheduler().runTaskTimer(plugin, this::procesarTick, 1L, 1L);
+        }
+    }
+
+    /**
+     * Mueve a la cola de listos a los jugadores cuyo saludo no llegó a
+     * tiempo y envía la sincronización a los primeros listos, hasta agotar
+     * el presupuesto de este tick.
+     */
+    private void procesarTick() {
+        long ahora = System.nanoTime();
+        long esperaMaxima = Math.max(0, plugin.getConfig().getInt(
+                "sincronizacion.espera_saludo_ticks", ESPERA_SALUDO_TICKS_POR_DEFECTO)) * NANOS_POR_TICK;
+
+        Iterator<Map.Entry<UUID, Long>> esperando = esperandoSaludo.entrySet().iterator();
+        while (esperando.hasNext()) {
+            Map.Entry<UUID, Long> entrada = esperando.next();
+            if (ahora - entrada.getValue() < esperaMaxima) {
+                break;
+            }
+            esperando.remove();
+            if (listos.putIfAbsent(entrada.getKey(), entrada.getValue()) == null) {
+                sincronizadosPorTiempoAgotado++;
+            }
+        }
+
+        profundidadMaxima = Math.max(profundidadMaxima, esperandoSaludo.size() + listos.size());
+
+        int presupuesto = Math.max(1, plugin.getConfig().getInt(
+                "sincronizacion.envios_iniciales_por_tick", ENVIOS_POR_TICK_POR_DEFECTO));
+        Iterator<Map.Entry<UUID, Long>> iterador = listos.entrySet().iterator();
+        while (presupuesto > 0 && iterador.hasNext()) {
+            Map.Entry<UUID, Long> entrada = iterador.next();
+            iterador.remove();
+
+            // El jugador pudo desconectarse mientras esperaba en la cola
+            Player jugador = Bukkit.getPlayer(entrada.getKey());
+            if (jugador == null || !jugador.isOnline()) {
+                continue;
+            }
+
+            // Ya tiene la lista en el formato de su cliente (ej: se la envió el difusor)
+            SesionCliente sesion = plugin.obtenerGestorSesiones().buscarSesion(jugador);
+            if (sesion == null || sesion.estaSincronizada()) {
+                continue;
+            }
+
+            presupuesto--;
+            if (enviarConfiguracionTeclas(jugador)) {
+                registrarTiempo((ahora - entrada.getValue()) / 1_000_000L);
+            }
+        }
+
+        if (esperandoSaludo.isEmpty() && listos.isEmpty()) {
+            tarea.cancel();
+            tarea = null;
+        }
+    }
+
+    /**
+     * Envía al cliente el paquete de acciones de la instantánea actual del
+     * plugin. Si la caché del cliente coincide, solo se envía una
+     * confirmación corta.
+     *
+     * @param jugador Jugador al que se le envía la configuración
+     * @return true si se envió
+     */
+    private boolean enviarConfiguracionTeclas(Player jugador) {
+        // No enviar si no hay acciones configuradas
+        if (!plugin.enviarSincronizacion(jugador)) {
+            plugin.getLogger().warning("No hay acciones de keybind configuradas para enviar.");
+            return false;
+        }
+
+        plugin.getLogger().info(
+                "Configuración de teclas enviada a " + jugador.getName()
+                        + " (" + plugin.obtenerInstantanea().getCantidadAcciones() + " acciones)");
+        return true;
+    }
+
+    private void registrarTiempo(long millis) {
+        sincronizados++;
+        sumaMillisHastaTeclas += millis;
+        maximoMillisHastaTeclas = Math.max(maximoMillisHastaTeclas, millis);
+    }
+
+    /**
+     * @param idJugador UUID del jugador
+     * @return true si el jugador espera en la cola su primera sincronización
+     */
+    public boolean contiene(UUID idJugador) {
+        return esperandoSaludo.containsKey(idJugador) || listos.containsKey(idJugador);
+    }
+
+    /**
+     * @return Jugadores en la cola (esperando saludo + listos)
+     */
+    public int obtenerProfundidad() {
+        return esperandoSaludo.size() + listos.size();
+    }
+
+    /**
+     * Resume las métricas de la cola en una línea legible.
+     *
+     * @return Texto con profundidad actual y máxima, y tiempos hasta tener las teclas
+     */
+    public String obtenerResumenMetricas() {
+        long media = sincronizados == 0 ? 0 : sumaMillisHastaTeclas / sincronizados;
+        return "cola: " + obtenerProfundidad() + " (máx. " + profundidadMaxima + ")"
+                + ", sincronizados: " + sincronizados
+                + " (" + sincronizadosPorTiempoAgotado + " sin saludo)"
+                + ", tiempo hasta teclas: media " + media + " ms, máx. " + maximoMillisHastaTeclas + " ms";
+    }
+
+    /**
+     * Vacía la cola y detiene su tarea (al deshabilitar el plugin).
+     */
+    public void cancelar() {
+        if (tarea != null) {
+            tarea.cancel();
+            tarea = null;
+        }
+        esperandoSaludo.clear();
+        listos.clear();
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.synchronizedkey.plugin;
+
+import org.bukkit.command.Command;
+import org.bukkit.entity.Player;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.logging.Level;
+
+/**
+ * Manejador de las acciones de tipo "comando": un comando preparado para
+ * ejecutarse sin volver a analizar el texto en cada pulsación.
+ *
+ * La línea de comando se divide en etiqueta y argumentos al cargar la
+ * configuración (igual que hace el CommandMap de Bukkit), y el objeto
+ * Command se busca en el CommandMap la primera vez que se usa y se guarda.
+ * Si el comando no existe, deja de estar registrado o no hay CommandMap
+ * disponible, se usa performCommand como antes.
+ *
+ * Solo se usa desde el hilo principal.
+ */
+public class ComandoPreparado implements ManejadorAccion {
+
+    private final SynchronizedKeyPlugin plugin;
+
+    /** Línea de comando original (sin /), usada en el modo alternativo */
+    private final String lineaComando;
+
+    /** Etiqueta del comando en minúsculas (primera palabra) */
+    private final String etiqueta;
+
+    /** Argumentos ya separados */
+    private final String[] argumentos;
+
+    /** Comando resuelto (null si no se encontró) */
+    private Command comando = null;
+
+    /** true si ya se buscó el comando en el CommandMap */
+    private boolean resuelto = false;
+
+    /**
+     * Prepara una línea de comando.
+     *
+     * @param lineaComando Comando a ejecutar (sin la barra /)
+     * @param plugin       Instancia del plugin principal (CommandMap y logger)
+     */
+    public ComandoPreparado(String lineaComando, SynchronizedKeyPlugin plugin) {
+        this.plugin = plugin;
+        this.lineaComando = lineaComando;
+        String[] partes = lineaComando.split(" ");
+        this.etiqueta = partes[0].toLowerCase(Locale.ROOT);
+        this.argumentos = Arrays.copyOfRange(partes, 1, partes.length);
+    }
+
+    /**
+     * Olvida el comando resuelto para volver a buscarlo en el próximo uso.
+     * Se llama cuando se habilita o deshabilita algún plugin.
+     */
+    public void invalidar() {
+        comando = null;
+        resuelto = false;
+    }
+
+    /**
+     * Ejecuta el comando como el jugador.
+     *
+     * @param jugador Jugador que ejecuta el comando
+     * @param accion  Acción pulsada
+     */
+    @Override
+    public void ejecutar(Player jugador, KeybindAction accion) {
+        if (!resuelto) {
+            comando = plugin.obtenerMapaComandos() != null
+                    ? plugin.obtenerMapaComandos().getCommand(etiqueta)
+                    : null;
+            resuelto = true;
+        }
+
+        Command objetivo = comando;
+        if (objetivo == null || !objetivo.isRegistered()) {
+            // Comando desconocido o desregistrado: dejar que Bukkit lo resuelva
+            if (objetivo != null) {
+                invalidar();
+            }
+            jugador.performCommand(lineaComando);
+            return;
+        }
+
+        try {
+            // Copia de los argumentos por si el comando los modifica
+            objetivo.execute(jugador, etiqueta, argumentos.clone());
+        } catch (RuntimeException e) {
+            // Incluye CommandException; los Error (OutOfMemoryError, etc.) no se tragan
+            plugin.getLogger().log(Level.WARNING,
+                    "Error al ejecutar '/" + lineaComando + "' para " + jugador.getName(), e);
+        }
+    }
+
+    public String getLineaComando() {
+        return lineaComando;
+    }
+}
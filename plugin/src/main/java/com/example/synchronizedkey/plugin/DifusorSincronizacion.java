@@ -0,0 +1,174 @@
+package com.example.synchronizedkey.plugin;
+
+import org.bukkit.Bukkit;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Reparte entre varios ticks el envío de la sincronización a todos los
+ * jugadores conectados tras un /sk reload, en lugar de enviarla a todos en
+ * el mismo tick.
+ *
+ * Cada tick se envía como mucho a "sincronizacion.envios_por_tick"
+ * jugadores (config.yml). Si se ejecuta otro reload mientras la difusión
+ * sigue en curso, se combina con ella: los jugadores pendientes reciben
+ * directamente la instantánea más reciente y los que ya la habían recibido
+ * vuelven a la cola.
+ *
+ * Los jugadores que aún esperan en la cola de sincronización inicial se
+ * saltan: la cola les envía la instantánea vigente en el formato de su
+ * cliente cuando saludan, y un envío JSON anticipado solo se duplicaría.
+ *
+ * Todos los métodos se ejecutan en el hilo principal.
+ */
+public class DifusorSincronizacion {
+
+    /** Envíos por tick si no se configura otro valor */
+    private static final int ENVIOS_POR_TICK_POR_DEFECTO = 50;
+
+    /** Cada cuántos ticks se informa del progreso (20 ticks = 1 segundo) */
+    private static final int TICKS_ENTRE_PROGRESO = 20;
+
+    private final SynchronizedKeyPlugin plugin;
+
+    /** Jugadores pendientes de recibir la sincronización, en orden de llegada */
+    private final Set<UUID> pendientes = new LinkedHashSet<>();
+
+    /** Quienes ejecutaron los reloads de la difusión en curso */
+    private final List<CommandSender> solicitantes = new ArrayList<>();
+
+    /** Tarea repetitiva de la difusión en curso (null si no hay ninguna) */
+    private BukkitTask tarea = null;
+
+    private int enviosPorTick = ENVIOS_POR_TICK_POR_DEFECTO;
+    private int enviados = 0;
+    private int ticksTranscurridos = 0;
+    private int recargasCombinadas = 0;
+
+    /**
+     * Constructor del difusor.
+     *
+     * @param plugin Instancia del plugin principal
+     */
+    public DifusorSincronizacion(SynchronizedKeyPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Encola a todos los jugadores conectados para recibir la instantánea
+     * actual. Si ya hay una difusión en curso, se combina con ella.
+     *
+     * @param solicitante Quien ejecutó el reload (recibe los mensajes de progreso)
+     */
+    public void difundir(CommandSender solicitante) {
+        for (Player jugador : Bukkit.getOnlinePlayers()) {
+            pendientes.add(jugador.getUniqueId());
+        }
+        if (!solicitantes.contains(solicitante)) {
+            solicitantes.add(solicitante);
+        }
+
+        if (tarea != null) {
+            recargasCombinadas++;
+            solicitante.sendMessage("§e[SynchronizedKey] §fDifusión en curso, se combina con esta recarga ("
+                    + pendientes.size() + " jugador(es) pendientes).");
+            return;
+        }
+
+        if (pendientes.isEmpty()) {
+            solicitantes.clear();
+            solicitante.sendMessage("§e[SynchronizedKey] §fNo hay jugadores conectados que sincronizar.");
+            return;
+        }
+
+        enviosPorTick = Math.max(1, plugin.getConfig().getInt(
+                "sincronizacion.envios_por_tick", ENVIOS_POR_TICK_POR_DEFECTO));
+        enviados = 0;
+        ticksTranscurridos = 0;
+        recargasCombinadas = 0;
+        tarea = plugin.getServer().getScheduler().runTaskTimer(plugin, this::procesarTick, 1L, 1L);
+    }
+
+    /**
+     * Envía la sincronización a los siguientes jugadores de la cola, hasta
+     * agotar el presupuesto de este tick.
+     */
+    private void procesarTick() {
+        ticksTranscurridos++;
+        ColaSincronizacionInicial colaInicial = plugin.obtenerColaSincronizacionInicial();
+
+        int presupuesto = enviosPorTick;
+        Iterator<UUID> iterador = pendientes.iterator();
+        while (presupuesto > 0 && iterador.hasNext()) {
+            UUID idJugador = iterador.next();
+            iterador.remove();
+
+            // El jugador pudo desconectarse mientras esperaba en la cola, o
+            // aún no ha recibido su primera sincronización
+            Player jugador = Bukkit.getPlayer(idJugador);
+            if (jugador == null || !jugador.isOnline() || colaInicial.contiene(idJugador)) {
+                continue;
+            }
+            if (plugin.enviarSincronizacion(jugador)) {
+                enviados++;
+                presupuesto--;
+            }
+        }
+
+        if (pendientes.isEmpty()) {
+            finalizar();
+        } else if (ticksTranscurridos % TICKS_ENTRE_PROGRESO == 0) {
+            notificar("§e[SynchronizedKey] §fSincronizando... §a" + enviados + " §fenviados, §e"
+                    + pendientes.size() + " §fpendientes.");
+        }
+    }
+
+    /**
+     * Termina la difusión en curso e informa a quienes la solicitaron.
+     */
+    private void finalizar() {
+        tarea.cancel();
+        tarea = null;
+
+        notificar("§e[SynchronizedKey] §aSincronización enviada a §f" + enviados
+                + " §ajugador(es) en " + ticksTranscurridos + " tick(s).");
+        plugin.getLogger().info("Difusión de sincronización completada: " + enviados
+                + " jugadores, " + ticksTranscurridos + " ticks, "
+                + recargasCombinadas + " recarga(s) combinadas.");
+        solicitantes.clear();
+    }
+
+    /**
+     * Envía un mensaje a todos los solicitantes de la difusión en curso.
+     *
+     * @param mensaje Mensaje a enviar
+     */
+    private void notificar(String mensaje) {
+        for (CommandSender solicitante : solicitantes) {
+            // Un jugador que ejecutó el reload puede haberse desconectado
+            if (!(solicitante instanceof Player jugador) || jugador.isOnline()) {
+                solicitante.sendMessage(mensaje);
+            }
+        }
+    }
+
+    /**
+     * Cancela la difusión en curso (al deshabilitar el plugin).
+     */
+    public void cancelar() {
+        if (tarea != null) {
+            tarea.cancel();
+            tarea = null;
+        }
+        pendientes.clear();
+        solicitantes.clear();
+    }
+}
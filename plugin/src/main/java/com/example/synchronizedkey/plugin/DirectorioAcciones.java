@@ -0,0 +1,171 @@
+package com.example.synchronizedkey.plugin;
+
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Carga las acciones de los archivos de la carpeta acciones.d, para
+ * repartir catálogos grandes en varios archivos además de la lista
+ * acciones de config.yml.
+ *
+ * Cada archivo .yml tiene su propia lista acciones con el mismo formato
+ * que config.yml. Los archivos se leen en paralelo y en cada carga solo
+ * se vuelven a leer los que cambiaron (fecha de modificación o tamaño);
+ * los demás reutilizan las acciones de la carga anterior, que además son
+ * los mismos objetos, así que el delta no necesita compararlas.
+ *
+ * No guarda estado: los archivos leídos forman parte del RegistroAcciones
+ * de cada generación, por lo que se puede usar desde cualquier hilo.
+ */
+public class DirectorioAcciones {
+
+    /** Nombre de la carpeta, dentro de la carpeta de datos del plugin */
+    public static final String CARPETA = "acciones.d";
+
+    /**
+     * Acciones leídas de un archivo.
+     *
+     * @param modificado Fecha de modificación del archivo al leerlo
+     * @param tamano     Tamaño del archivo al leerlo
+     * @param acciones   Acciones válidas del archivo, en su orden
+     */
+    record ArchivoAcciones(long modificado, long tamano, List<KeybindAction> acciones) {
+    }
+
+    private final SynchronizedKeyPlugin plugin;
+
+    /**
+     * Constructor del cargador.
+     *
+     * @param plugin Instancia del plugin principal
+     */
+    public DirectorioAcciones(SynchronizedKeyPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * @return Carpeta acciones.d del plugin (puede no existir)
+     */
+    public File obtenerCarpeta() {
+        return new File(plugin.getDataFolder(), CARPETA);
+    }
+
+    /**
+     * Lee los archivos de acciones.d, reutilizando los que no cambiaron
+     * desde la carga anterior.
+     *
+     * @param anteriores Archivos de la carga anterior, por nombre
+     * @return Archivos actuales por nombre, en orden alfabético
+     */
+    Map<String, ArchivoAcciones> cargar(Map<String, ArchivoAcciones> anteriores) {
+        File[] archivos = obtenerCarpeta().listFiles((carpeta, nombre) -> esArchivoAcciones(nombre));
+        if (archivos == null || archivos.length == 0) {
+            return Map.of();
+        }
+        Arrays.sort(archivos, Comparator.comparing(File::getName));
+
+        List<ArchivoAcciones> leidos = Arrays.stream(archivos)
+                .parallel()
+                .map(archivo -> leer(archivo, anteriores.get(archivo.getName())))
+                .toList();
+
+        Map<String, ArchivoAcciones> resultado = new LinkedHashMap<>();
+        for (int i = 0; i < archivos.length; i++) {
+            resultado.put(archivos[i].getName(), leidos.get(i));
+        }
+        return resultado;
+    }
+
+    /**
+     * Lee un archivo si cambió desde la carga anterior.
+     *
+     * @param archivo  Archivo de acciones.d
+     * @param anterior Lectura anterior del archivo (null si es nuevo)
+     * @return Acciones del archivo
+     */
+    private ArchivoAcciones leer(File archivo, ArchivoAcciones anterior) {
+        long modificado = archivo.lastModified();
+        long tamano = archivo.length();
+        if (anterior != null && anterior.modificado() == modificado && anterior.tamano() == tamano) {
+            return anterior;
+        }
+
+        String origen = CARPETA + "/" + archivo.getName();
+        YamlConfiguration yaml = new YamlConfiguration();
+        try {
+            yaml.load(archivo);
+        } catch (IOException | InvalidConfigurationException e) {
+            // Se conservan las acciones anteriores del archivo (y su fecha, para reintentarlo)
+            plugin.getLogger().warning("No se pudo leer " + origen + "; se mantienen sus acciones anteriores: "
+                    + e.getMessage());
+            return anterior != null ? anterior : new ArchivoAcciones(0, -1, List.of());
+        }
+
+        List<KeybindAction> acciones = new ArrayList<>();
+        List<?> lista = yaml.getList("acciones");
+        if (lista != null) {
+            for (Object elemento : lista) {
+                if (elemento instanceof Map) {
+                    @SuppressWarnings("unchecked")
+                    Map<String, Object> datosAccion = (Map<String, Object>) elemento;
+                    KeybindAction accion = plugin.crearAccion(datosAccion, origen);
+                    if (accion != null) {
+                        acciones.add(accion);
+                    }
+                }
+            }
+        }
+
+        plugin.getLogger().info("Leído " + origen + ": " + acciones.size() + " acciones.");
+        return new ArchivoAcciones(modificado, tamano, List.copyOf(acciones));
+    }
+
+    /**
+     * Sustituye las acciones de cada archivo por las publicadas en el
+     * registro (ya con su handle), para que la próxima carga reutilice los
+     * mismos objetos. Los archivos sin cambios se conservan tal cual.
+     *
+     * @param archivos  Archivos leídos en esta carga
+     * @param acciones  Acciones publicadas por ID
+     * @param origenes  Archivo del que salió cada acción publicada, por ID
+     * @return Archivos con las acciones publicadas
+     */
+    static Map<String, ArchivoAcciones> conHandles(Map<String, ArchivoAcciones> archivos,
+                                                   Map<String, KeybindAction> acciones,
+                                                   Map<String, String> origenes) {
+        Map<String, ArchivoAcciones> resultado = new LinkedHashMap<>();
+        for (Map.Entry<String, ArchivoAcciones> entrada : archivos.entrySet()) {
+            ArchivoAcciones archivo = entrada.getValue();
+            List<KeybindAction> publicadas = new ArrayList<>(archivo.acciones().size());
+            boolean iguales = true;
+            for (KeybindAction accion : archivo.acciones()) {
+                KeybindAction publicada = entrada.getKey().equals(origenes.get(accion.getId()))
+                        ? acciones.get(accion.getId())
+                        : accion;
+                iguales &= publicada == accion;
+                publicadas.add(publicada);
+            }
+            resultado.put(entrada.getKey(), iguales
+                    ? archivo
+                    : new ArchivoAcciones(archivo.modificado(), archivo.tamano(), List.copyOf(publicadas)));
+        }
+        return resultado;
+    }
+
+    /**
+     * @param nombre Nombre de un archivo
+     * @return true si es un archivo de acciones (.yml o .yaml)
+     */
+    static boolean esArchivoAcciones(String nombre) {
+        return nombre.endsWith(".yml") || nombre.endsWith(".yaml");
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.synchronizedkey.plugin;
+
+import org.bukkit.configuration.file.FileConfiguration;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Prepara los paquetes grandes de sincronización (lista completa y delta)
+ * para los mods que anuncian CAPACIDAD_EMPAQUETADO en el saludo:
+ *
+ * - Si el mensaje alcanza sincronizacion.compresion_minima_bytes, se
+ *   comprime con deflate y el diccionario compartido, y se envía como
+ *   TIPO_COMPRIMIDO si así ocupa menos.
+ * - Si el resultado supera sincronizacion.tamano_fragmento_bytes, se parte
+ *   en fragmentos numerados (TIPO_FRAGMENTO) que el mod vuelve a unir.
+ *
+ * Los paquetes se preparan una sola vez al construir cada instantánea y
+ * se comparten entre todos los envíos, igual que los demás paquetes de
+ * sincronización. Es inmutable, así que se puede usar desde cualquier hilo.
+ */
+public final class EmpaquetadorMensajes {
+
+    /** Tamaño mínimo para comprimir si no se configura otro valor */
+    private static final int COMPRESION_MINIMA_POR_DEFECTO = 1024;
+
+    /** Tamaño máximo de cada fragmento si no se configura otro valor */
+    private static final int TAMANO_FRAGMENTO_POR_DEFECTO = 32 * 1024;
+
+    /** Margen bajo el límite de 1 MiB de Spigot para la cabecera del fragmento */
+    private static final int TAMANO_FRAGMENTO_MAXIMO = 1024 * 1024 - 64;
+
+    /** Empaquetador que deja los mensajes tal cual (registro vacío) */
+    public static final EmpaquetadorMensajes SIN_EMPAQUETAR =
+            new EmpaquetadorMensajes(0, TAMANO_FRAGMENTO_MAXIMO);
+
+    /** Identificador de la próxima transferencia fragmentada */
+    private static final AtomicInteger SIGUIENTE_TRANSFERENCIA = new AtomicInteger();
+
+    /** Tamaño mínimo en bytes para comprimir un mensaje (0 = no comprimir) */
+    private final int compresionMinima;
+
+    /** Tamaño máximo en bytes de los datos de cada fragmento */
+    private final int tamanoFragmento;
+
+    /**
+     * @param compresionMinima Tamaño mínimo en bytes para comprimir (0 = no comprimir)
+     * @param tamanoFragmento  Tamaño máximo en bytes de los datos de cada fragmento
+     */
+    public EmpaquetadorMensajes(int compresionMinima, int tamanoFragmento) {
+        this.compresionMinima = Math.max(0, compresionMinima);
+        this.tamanoFragmento = Math.min(TAMANO_FRAGMENTO_MAXIMO, Math.max(1024, tamanoFragmento));
+    }
+
+    /**
+     * Crea el empaquetador con los umbrales de la sección sincronizacion.
+     *
+     * @param config Configuración leída de config.yml
+     * @return Empaquetador con los umbrales configurados
+     */
+    public static EmpaquetadorMensajes desdeConfiguracion(FileConfiguration config) {
+        return new EmpaquetadorMensajes(
+                config.getInt("sincronizacion.compresion_minima_bytes", COMPRESION_MINIMA_POR_DEFECTO),
+                config.getInt("sincronizacion.tamano_fragmento_bytes", TAMANO_FRAGMENTO_POR_DEFECTO));
+    }
+
+    /**
+     * Comprime y fragmenta un mensaje según los umbrales.
+     *
+     * Formato comprimido: [versión][TIPO_COMPRIMIDO][VarInt longitud original][datos deflate]
+     * Formato de fragmento: [versión][TIPO_FRAGMENTO][VarInt transferencia]
+     * [VarInt índice][VarInt total][trozo del mensaje]
+     *
+     * @param mensaje Mensaje completo con su cabecera (puede ser null)
+     * @return Paquetes a enviar en orden, o null si el mensaje es null
+     */
+    public byte[][] empaquetar(byte[] mensaje) {
+        if (mensaje == null) {
+            return null;
+        }
+
+        byte[] datos = mensaje;
+        if (compresionMinima > 0 && mensaje.length >= compresionMinima) {
+            byte[] comprimido = ProtocoloTeclas.comprimir(mensaje);
+            if (comprimido.length + 8 < mensaje.length) {
+                datos = new ProtocoloTeclas.Escritor(ProtocoloTeclas.TIPO_COMPRIMIDO, comprimido.length + 8)
+                        .escribirVarInt(mensaje.length)
+                        .escribirBytes(comprimido)
+                        .aBytes();
+            }
+        }
+
+        if (datos.length <= tamanoFragmento) {
+            return new byte[][]{datos};
+        }
+
+        int total = (datos.length + tamanoFragmento - 1) / tamanoFragmento;
+        int transferencia = SIGUIENTE_TRANSFERENCIA.getAndIncrement() & Integer.MAX_VALUE;
+        byte[][] fragmentos = new byte[total][];
+        for (int indice = 0; indice < total; indice++) {
+            int desde = indice * tamanoFragmento;
+            int longitud = Math.min(tamanoFragmento, datos.length - desde);
+            fragmentos[indice] = new ProtocoloTeclas.Escritor(ProtocoloTeclas.TIPO_FRAGMENTO, longitud + 20)
+                    .escribirVarInt(transferencia)
+                    .escribirVarInt(indice)
+                    .escribirVarInt(total)
+                    .escribirBytes(datos, desde, longitud)
+                    .aBytes();
+        }
+        return fragmentos;
+    }
+}
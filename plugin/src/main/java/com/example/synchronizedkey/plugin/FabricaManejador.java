@@ -0,0 +1,30 @@
+package com.example.synchronizedkey.plugin;
+
+import java.util.Map;
+
+/**
+ * Crea el ManejadorAccion de un tipo de acción a partir de sus campos en
+ * config.yml. Otros plugins pueden registrar sus propios tipos con
+ * RegistroManejadores#registrar.
+ *
+ * Se llama al cargar la configuración, así que debe dejar preparado todo
+ * lo posible (validar y convertir los campos) para que el manejador no
+ * tenga que hacerlo en cada pulsación.
+ *
+ * Se puede llamar fuera del hilo principal (recarga automática) y desde
+ * varios hilos a la vez (archivos de acciones.d), así que no debe usar la
+ * API de Bukkit que lo requiera (mundos, entidades...) ni estado
+ * compartido sin sincronizar; eso debe hacerlo el manejador al ejecutarse.
+ */
+@FunctionalInterface
+public interface FabricaManejador {
+
+    /**
+     * Crea el manejador de una acción.
+     *
+     * @param parametros Campos de la acción en config.yml o acciones.d
+     * @return Manejador listo para ejecutarse
+     * @throws IllegalArgumentException si falta algún campo o no es válido
+     */
+    ManejadorAccion crear(Map<String, Object> parametros);
+}
@@ -0,0 +1,74 @@
+package com.example.synchronizedkey.plugin;
+
+import java.util.Arrays;
+
+/**
+ * Conjunto de acciones que un jugador puede usar en una generación de
+ * configuración: un bit por handle.
+ *
+ * Las firmas se internan por generación (ver
+ * SynchronizedKeyPlugin#obtenerPermisos), así que todos los jugadores con
+ * los mismos permisos comparten la misma instancia y se pueden comparar
+ * por referencia. Cada firma guarda además la instantánea con solo sus
+ * acciones, que se serializa la primera vez que se necesita y se reutiliza
+ * para todos los jugadores del grupo.
+ *
+ * Solo se usa desde el hilo principal.
+ */
+public final class FirmaPermisos {
+
+    /** Un bit por handle de acción permitida */
+    private final long[] bits;
+
+    /** Hash de los bits, calculado una vez para el mapa de firmas internadas */
+    private final int hash;
+
+    /** Instantánea con las acciones permitidas (null hasta el primer envío) */
+    private InstantaneaSincronizacion instantanea = null;
+
+    /**
+     * @param bits Un bit por handle de acción permitida (no se copia)
+     */
+    FirmaPermisos(long[] bits) {
+        this.bits = bits;
+        this.hash = Arrays.hashCode(bits);
+    }
+
+    /**
+     * @param handle Handle de una acción de la generación de la firma
+     * @return true si la acción está permitida
+     */
+    public boolean permite(int handle) {
+        int indice = handle >>> 6;
+        return indice < bits.length && (bits[indice] & (1L << handle)) != 0;
+    }
+
+    /**
+     * @return Número de acciones permitidas
+     */
+    public int cantidadPermitidas() {
+        int cantidad = 0;
+        for (long palabra : bits) {
+            cantidad += Long.bitCount(palabra);
+        }
+        return cantidad;
+    }
+
+    InstantaneaSincronizacion getInstantanea() {
+        return instantanea;
+    }
+
+    void setInstantanea(InstantaneaSincronizacion instantanea) {
+        this.instantanea = instantanea;
+    }
+
+    @Override
+    public boolean equals(Object otro) {
+        return otro instanceof FirmaPermisos firma && hash == firma.hash && Arrays.equals(bits, firma.bits);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
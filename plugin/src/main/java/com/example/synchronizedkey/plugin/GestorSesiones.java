@@ -0,0 +1,78 @@
+package com.example.synchronizedkey.plugin;
+
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Mantiene una SesionCliente por cada jugador conectado.
+ * Se accede tanto desde el hilo principal como desde el hilo de
+ * decodificación, por eso usa un mapa concurrente.
+ *
+ * Las sesiones solo se crean en el hilo principal (al unirse el jugador o
+ * al recibir un mensaje suyo) y se eliminan al salir, también en el hilo
+ * principal, así que un mensaje procesado después de PlayerQuitEvent no
+ * puede volver a crear la sesión de un jugador que ya salió. Fuera del
+ * hilo principal solo se buscan.
+ */
+public class GestorSesiones implements Listener {
+
+    /** Sesiones activas indexadas por UUID del jugador */
+    private final Map<UUID, SesionCliente> sesiones = new ConcurrentHashMap<>();
+
+    /**
+     * Obtiene la sesión del jugador, creándola si aún no existe. Debe
+     * llamarse desde el hilo principal y con el jugador conectado.
+     *
+     * @param jugador Jugador conectado
+     * @return Sesión del jugador
+     */
+    public SesionCliente obtenerSesion(Player jugador) {
+        return sesiones.computeIfAbsent(jugador.getUniqueId(), uuid -> new SesionCliente());
+    }
+
+    /**
+     * Busca la sesión del jugador sin crearla. Se puede llamar desde
+     * cualquier hilo.
+     *
+     * @param jugador Jugador
+     * @return Sesión del jugador, o null si no está conectado
+     */
+    public SesionCliente buscarSesion(Player jugador) {
+        return sesiones.get(jugador.getUniqueId());
+    }
+
+    /**
+     * Crea la sesión del jugador al unirse, antes que los demás listeners.
+     *
+     * @param evento Evento de unión del jugador
+     */
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void alUnirseJugador(PlayerJoinEvent evento) {
+        obtenerSesion(evento.getPlayer());
+    }
+
+    /**
+     * Elimina la sesión del jugador al desconectarse.
+     *
+     * @param evento Evento de salida del jugador
+     */
+    @EventHandler
+    public void alSalirJugador(PlayerQuitEvent evento) {
+        sesiones.remove(evento.getPlayer().getUniqueId());
+    }
+
+    /**
+     * Elimina todas las sesiones (al deshabilitar el plugin).
+     */
+    public void limpiar() {
+        sesiones.clear();
+    }
+}
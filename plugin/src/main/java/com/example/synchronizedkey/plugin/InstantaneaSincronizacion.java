@@ -0,0 +1,137 @@
+package com.example.synchronizedkey.plugin;
+
+/**
+ * Instantánea inmutable de los paquetes de sincronización de una generación
+ * de configuración.
+ *
+ * Se construye una sola vez en cada carga de config.yml y todos los envíos
+ * (conexión de jugadores y /sk reload) reutilizan los mismos arrays de bytes
+ * hasta la siguiente recarga. Los arrays devueltos son compartidos y NO
+ * deben modificarse.
+ *
+ * Incluye el hash del contenido de la lista para que los clientes que ya
+ * la tienen en su caché local reciban solo una confirmación corta, y un
+ * delta respecto a la generación anterior para los clientes que ya tenían
+ * la lista completa de esa generación (resincronización tras /sk reload).
+ *
+ * Los jugadores sin permiso para alguna acción reciben una instantánea
+ * propia con solo las acciones permitidas, sin delta.
+ *
+ * La lista completa y el delta se guardan también comprimidos y
+ * fragmentados (ver EmpaquetadorMensajes) para los mods que lo admiten,
+ * así que un envío puede constar de varios paquetes.
+ */
+public final class InstantaneaSincronizacion {
+
+    /** Instantánea sin acciones (antes de la primera carga o sin acciones configuradas) */
+    public static final InstantaneaSincronizacion VACIA =
+            new InstantaneaSincronizacion(0, 0, ProtocoloTeclas.SIN_HASH, null, null, null,
+                    0, ProtocoloTeclas.SIN_HASH, null, EmpaquetadorMensajes.SIN_EMPAQUETAR);
+
+    /** Generación de configuración a la que pertenecen los paquetes */
+    private final int generacion;
+
+    /** Número de acciones incluidas */
+    private final int cantidadAcciones;
+
+    /** Hash del contenido de la lista de acciones (independiente de la generación) */
+    private final long hash;
+
+    /** Paquete binario completo para clientes que enviaron el saludo */
+    private final byte[][] paquetesBinario;
+
+    /** Lista completa comprimida y fragmentada para los mods que lo admiten */
+    private final byte[][] paquetesBinarioEmpaquetados;
+
+    /** Paquete corto para clientes cuya caché coincide con el hash */
+    private final byte[][] paquetesConfirmacion;
+
+    /** Paquete JSON para mods antiguos */
+    private final byte[][] paquetesJson;
+
+    /** Generación desde la que se calculó el delta */
+    private final int generacionBaseDelta;
+
+    /** Hash de la lista desde la que se calculó el delta */
+    private final long hashBaseDelta;
+
+    /** Paquete delta respecto a generacionBaseDelta (null si no hay generación anterior) */
+    private final byte[][] paquetesDelta;
+
+    /** Delta comprimido y fragmentado para los mods que lo admiten (null si no hay delta) */
+    private final byte[][] paquetesDeltaEmpaquetados;
+
+    /**
+     * Crea la instantánea y prepara las versiones comprimidas y
+     * fragmentadas de la lista completa y del delta.
+     *
+     * @param empaquetador Empaquetador con los umbrales de la configuración
+     */
+    public InstantaneaSincronizacion(int generacion, int cantidadAcciones, long hash,
+                                     byte[] datosBinario, byte[] datosConfirmacion, byte[] datosJson,
+                                     int generacionBaseDelta, long hashBaseDelta, byte[] datosDelta,
+                                     EmpaquetadorMensajes empaquetador) {
+        this.generacion = generacion;
+        this.cantidadAcciones = cantidadAcciones;
+        this.hash = hash;
+        this.paquetesBinario = comoPaquetes(datosBinario);
+        this.paquetesBinarioEmpaquetados = empaquetador.empaquetar(datosBinario);
+        this.paquetesConfirmacion = comoPaquetes(datosConfirmacion);
+        this.paquetesJson = comoPaquetes(datosJson);
+        this.generacionBaseDelta = generacionBaseDelta;
+        this.hashBaseDelta = hashBaseDelta;
+        this.paquetesDelta = comoPaquetes(datosDelta);
+        this.paquetesDeltaEmpaquetados = empaquetador.empaquetar(datosDelta);
+    }
+
+    private static byte[][] comoPaquetes(byte[] datos) {
+        return datos != null ? new byte[][]{datos} : null;
+    }
+
+    public int getGeneracion() {
+        return generacion;
+    }
+
+    public int getCantidadAcciones() {
+        return cantidadAcciones;
+    }
+
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * @return true si no hay acciones que enviar
+     */
+    public boolean estaVacia() {
+        return cantidadAcciones == 0;
+    }
+
+    /**
+     * Devuelve el paquete adecuado para el cliente de la sesión:
+     * - JSON si es un mod antiguo.
+     * - Confirmación de caché si ya tiene una lista con el mismo hash.
+     * - Delta si tiene la lista completa de la generación anterior (no
+     *   una lista filtrada por permisos).
+     * - Lista completa en binario en cualquier otro caso.
+     * El delta y la lista completa van comprimidos y fragmentados si el
+     * mod lo anunció en el saludo.
+     *
+     * @param sesion Sesión del jugador destinatario
+     * @return paquetes compartidos a enviar en orden, o null si no hay acciones
+     */
+    public byte[][] paquetesPara(SesionCliente sesion) {
+        if (!sesion.usaProtocoloBinario()) {
+            return paquetesJson;
+        }
+        if (sesion.getHashCliente() == hash) {
+            return paquetesConfirmacion;
+        }
+        boolean empaquetar = sesion.aceptaEmpaquetado();
+        if (paquetesDelta != null && sesion.getGeneracionCliente() == generacionBaseDelta
+                && sesion.getHashCliente() == hashBaseDelta) {
+            return empaquetar ? paquetesDeltaEmpaquetados : paquetesDelta;
+        }
+        return empaquetar ? paquetesBinarioEmpaquetados : paquetesBinario;
+    }
+}
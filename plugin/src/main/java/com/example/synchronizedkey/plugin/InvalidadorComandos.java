@@ -0,0 +1,36 @@
+package com.example.synchronizedkey.plugin;
+
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.event.server.PluginDisableEvent;
+import org.bukkit.event.server.PluginEnableEvent;
+
+/**
+ * Listener que invalida los Command en caché de las acciones cuando se
+ * habilita o deshabilita un plugin, ya que puede registrar, quitar o
+ * sustituir los comandos que usan las acciones.
+ */
+public class InvalidadorComandos implements Listener {
+
+    /** Referencia al plugin principal para acceder a las acciones */
+    private final SynchronizedKeyPlugin plugin;
+
+    /**
+     * Constructor del listener.
+     *
+     * @param plugin Instancia del plugin principal
+     */
+    public InvalidadorComandos(SynchronizedKeyPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    @EventHandler
+    public void alHabilitarPlugin(PluginEnableEvent evento) {
+        plugin.invalidarComandos();
+    }
+
+    @EventHandler
+    public void alDeshabilitarPlugin(PluginDisableEvent evento) {
+        plugin.invalidarComandos();
+    }
+}
@@ -5,11 +5,20 @@ package com.example.synchronizedkey.plugin;
  * servidor.
  * Cada acción tiene un identificador único, una etiqueta visible para el
  * jugador,
- * una tecla por defecto (código GLFW), el comando a ejecutar y un permiso
- * opcional.
+ * una tecla por defecto (código GLFW), lo que hace al pulsarse (su tipo y
+ * el ManejadorAccion creado para él, por defecto un comando), un permiso
+ * opcional, un límite opcional de pulsaciones por segundo y un tiempo de
+ * enfriamiento opcional entre usos.
+ *
+ * Además recibe un handle numérico al cargarse la configuración, que el
+ * cliente usa para identificar la acción en cada pulsación. El handle de
+ * una acción se conserva entre recargas mientras su id siga existiendo.
  */
 public class KeybindAction {
 
+    /** Handle provisional de una acción recién leída, antes de asignarle uno */
+    public static final int SIN_HANDLE = -1;
+
     /** Identificador único de la acción (ej: "abrir_menu") */
     private final String id;
 
@@ -19,27 +28,54 @@ public class KeybindAction {
     /** Código de tecla GLFW por defecto (ej: 77 para la tecla M) */
     private final int defaultKey;
 
-    /** Comando que se ejecutará como el jugador al presionar la tecla (sin /) */
-    private final String comando;
+    /** Tipo de acción (ej: "comando", "abrir_inventario") */
+    private final String tipo;
+
+    /** Código que se ejecuta al presionar la tecla, ya preparado para su tipo */
+    private final ManejadorAccion manejador;
 
     /** Permiso requerido para ejecutar la acción (puede ser null o vacío) */
     private final String permiso;
 
+    /** Pulsaciones por segundo permitidas a cada jugador (0 = sin límite) */
+    private final int limitePorSegundo;
+
+    /** Pulsaciones seguidas permitidas antes de aplicar el límite */
+    private final int limiteRafaga;
+
+    /** Tiempo mínimo entre dos usos de la acción por el mismo jugador, en ms (0 = sin enfriamiento) */
+    private final int enfriamientoMs;
+
+    /** Handle numérico de la acción dentro de su generación de configuración */
+    private final int handle;
+
     /**
      * Constructor completo de KeybindAction.
      *
-     * @param id         Identificador único de la acción
-     * @param label      Nombre visible para el jugador
-     * @param defaultKey Código GLFW de la tecla por defecto
-     * @param comando    Comando a ejecutar (sin la barra /)
-     * @param permiso    Permiso requerido (null o vacío = sin restricción)
+     * @param id               Identificador único de la acción
+     * @param label            Nombre visible para el jugador
+     * @param defaultKey       Código GLFW de la tecla por defecto
+     * @param tipo             Tipo de acción
+     * @param manejador        Manejador creado para el tipo de la acción
+     * @param permiso          Permiso requerido (null o vacío = sin restricción)
+     * @param limitePorSegundo Pulsaciones por segundo por jugador (0 = sin límite)
+     * @param limiteRafaga     Pulsaciones seguidas permitidas
+     * @param enfriamientoMs   Enfriamiento entre usos en ms (0 = sin enfriamiento)
+     * @param handle           Handle numérico asignado al cargar la configuración
      */
-    public KeybindAction(String id, String label, int defaultKey, String comando, String permiso) {
+    public KeybindAction(String id, String label, int defaultKey, String tipo, ManejadorAccion manejador,
+                         String permiso,
+                         int limitePorSegundo, int limiteRafaga, int enfriamientoMs, int handle) {
         this.id = id;
         this.label = label;
         this.defaultKey = defaultKey;
-        this.comando = comando;
+        this.tipo = tipo;
+        this.manejador = manejador;
         this.permiso = permiso;
+        this.limitePorSegundo = limitePorSegundo;
+        this.limiteRafaga = limiteRafaga;
+        this.enfriamientoMs = enfriamientoMs;
+        this.handle = handle;
     }
 
     public String getId() {
@@ -54,14 +90,68 @@ public class KeybindAction {
         return defaultKey;
     }
 
-    public String getComando() {
-        return comando;
+    public String getTipo() {
+        return tipo;
+    }
+
+    public ManejadorAccion getManejador() {
+        return manejador;
     }
 
     public String getPermiso() {
         return permiso;
     }
 
+    public int getLimitePorSegundo() {
+        return limitePorSegundo;
+    }
+
+    public int getLimiteRafaga() {
+        return limiteRafaga;
+    }
+
+    public int getEnfriamientoMs() {
+        return enfriamientoMs;
+    }
+
+    public int getHandle() {
+        return handle;
+    }
+
+    /**
+     * Crea una copia de la acción con otro handle.
+     *
+     * @param nuevoHandle Handle a asignar
+     * @return Nueva acción con los mismos datos y el handle indicado, o esta
+     *         misma si ya tiene ese handle
+     */
+    public KeybindAction conHandle(int nuevoHandle) {
+        if (nuevoHandle == handle) {
+            return this;
+        }
+        return new KeybindAction(id, label, defaultKey, tipo, manejador, permiso,
+                limitePorSegundo, limiteRafaga, enfriamientoMs, nuevoHandle);
+    }
+
+    /**
+     * Indica si la acción se muestra igual en el cliente que otra
+     * (mismo id, handle, etiqueta y tecla por defecto).
+     *
+     * @param otra Acción a comparar
+     * @return true si el cliente no necesita recibir cambios
+     */
+    public boolean mismosDatosCliente(KeybindAction otra) {
+        return id.equals(otra.id) && handle == otra.handle
+                && label.equals(otra.label) && defaultKey == otra.defaultKey;
+    }
+
+    /**
+     * @return true si la acción tiene enfriamiento entre usos
+     */
+    public boolean tieneEnfriamiento() {
+        return enfriamientoMs > 0;
+    }
+
     /**
      * Verifica si esta acción requiere un permiso específico.
      *
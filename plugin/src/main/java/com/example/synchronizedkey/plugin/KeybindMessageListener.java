@@ -10,12 +10,24 @@ import java.nio.charset.StandardCharsets;
 
 /**
  * Receptor de mensajes del canal teclas_pro:main.
- * Recibe el action_id enviado desde el mod del cliente cuando el jugador
- * presiona una tecla dinámica. Valida la existencia de la acción,
- * verifica permisos y ejecuta el comando correspondiente.
+ * Recibe el handle (o el action_id en clientes antiguos) enviado desde el
+ * mod del cliente cuando el jugador presiona una tecla dinámica, o un lote
+ * con todas las pulsaciones de un tick del cliente.
+ *
+ * Los mensajes se decodifican y validan en el hilo dedicado de
+ * ProcesadorPulsaciones; las pulsaciones válidas pasan a su cola, que se
+ * procesa una vez por tick en el hilo principal.
+ *
+ * Acepta tanto el protocolo binario (ver ProtocoloTeclas) como el JSON
+ * de los mods antiguos.
  */
 public class KeybindMessageListener implements PluginMessageListener {
 
+    /** Espera mínima entre dos resincronizaciones pedidas por un mismo cliente (2 segundos) */
+    private static final long ESPERA_ENTRE_SINCRONIZACIONES_NANOS = 2_000_000_000L;
+
+    private static final long NANOS_POR_TICK = 50_000_000L;
+
     /** Referencia al plugin principal para acceder al mapa de acciones */
     private final SynchronizedKeyPlugin plugin;
 
@@ -30,20 +42,152 @@ public class KeybindMessageListener implements PluginMessageListener {
 
     /**
      * Método invocado al recibir un mensaje por el canal registrado.
-     * Procesa el JSON recibido del cliente con formato: {"action_id": "..."}
+     * Se ejecuta en el hilo principal: asegura la sesión del jugador (el
+     * saludo puede llegar antes que PlayerJoinEvent) y pasa el mensaje al
+     * hilo de decodificación.
      *
      * Flujo de validación:
-     * 1. Parsear el JSON y extraer action_id
-     * 2. Verificar que la acción existe en la configuración
-     * 3. Verificar que el jugador tiene el permiso requerido (si lo hay)
-     * 4. Ejecutar el comando como el jugador
+     * 1. Decodificar el mensaje y extraer el handle (o action_id en JSON) (hilo dedicado)
+     * 2. Verificar que la acción existe en la generación de configuración actual (hilo principal)
+     * 3. Verificar que el jugador tiene el permiso requerido, si lo hay (hilo principal)
+     * 4. Ejecutar el comando como el jugador (hilo principal)
      *
      * @param canal   Canal por el que se recibió el mensaje
      * @param jugador Jugador que envió el mensaje
-     * @param datos   Bytes del mensaje (JSON codificado en UTF-8)
+     * @param datos   Bytes del mensaje
      */
     @Override
     public void onPluginMessageReceived(String canal, Player jugador, byte[] datos) {
+        if (!jugador.isOnline()) {
+            return;
+        }
+        plugin.obtenerGestorSesiones().obtenerSesion(jugador);
+        plugin.obtenerProcesadorPulsaciones().decodificar(() -> decodificarMensaje(jugador, datos));
+    }
+
+    /**
+     * Decodifica un mensaje en el hilo dedicado. Distingue entre el
+     * protocolo binario y el JSON antiguo ({"action_id": "..."}) según el
+     * primer byte del mensaje.
+     *
+     * @param jugador Jugador que envió el mensaje
+     * @param datos   Bytes del mensaje
+     */
+    private void decodificarMensaje(Player jugador, byte[] datos) {
+        // Solo buscar la sesión: si el jugador salió mientras el mensaje
+        // esperaba, ya se eliminó y el mensaje se descarta
+        SesionCliente sesion = plugin.obtenerGestorSesiones().buscarSesion(jugador);
+        if (sesion == null) {
+            return;
+        }
+
+        // Límite por jugador antes de cualquier otro trabajo de decodificación
+        ProcesadorPulsaciones procesador = plugin.obtenerProcesadorPulsaciones();
+        if (!procesador.permitirMensaje(jugador, sesion)) {
+            return;
+        }
+
+        if (ProtocoloTeclas.esJsonLegado(datos)) {
+            procesarJsonLegado(jugador, sesion, datos);
+            return;
+        }
+
+        try {
+            ProtocoloTeclas.Lector lector = new ProtocoloTeclas.Lector(datos);
+            int version = lector.leerByte();
+            int tipo = lector.leerByte();
+
+            if (version != ProtocoloTeclas.VERSION) {
+                plugin.getLogger().warning(
+                        "Versión de protocolo no soportada (" + version + ") recibida de " + jugador.getName());
+                return;
+            }
+
+            switch (tipo) {
+                case ProtocoloTeclas.TIPO_SALUDO -> {
+                    long hashCache = lector.quedanDatos() ? lector.leerLong() : ProtocoloTeclas.SIN_HASH;
+                    int capacidades = lector.quedanDatos() ? lector.leerByte() : 0;
+                    procesarSaludo(jugador, sesion, version, hashCache, capacidades);
+                }
+                case ProtocoloTeclas.TIPO_SOLICITAR_SINCRONIZACION -> procesarSolicitudSincronizacion(jugador, sesion);
+                case ProtocoloTeclas.TIPO_PULSACION ->
+                        procesador.encolarPulsacion(jugador, sesion, lector.leerVarInt(), lector.leerVarInt());
+                case ProtocoloTeclas.TIPO_LOTE_PULSACIONES -> procesador.encolarLote(jugador, sesion, lector);
+                default -> plugin.getLogger().warning(
+                        "Tipo de mensaje desconocido (" + tipo + ") recibido de " + jugador.getName());
+            }
+        } catch (IllegalArgumentException e) {
+            plugin.getLogger().warning(
+                    "Mensaje binario inválido recibido de " + jugador.getName() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Registra que el cliente del jugador entiende el protocolo binario.
+     * A partir de aquí los paquetes de sincronización se le envían en binario.
+     * El saludo es también la señal de que el mod está listo para recibir
+     * la lista de acciones. A los mods que pueden agrupar las pulsaciones
+     * se les responde primero con las capacidades del plugin.
+     * Formato: [versión][TIPO_SALUDO][long hash de la caché local][byte capacidades]
+     * (las capacidades no las envían los mods anteriores a la compresión)
+     *
+     * @param jugador     Jugador que envió el saludo
+     * @param sesion      Sesión del jugador
+     * @param version     Versión del protocolo anunciada
+     * @param hashCache   Hash de la lista guardada en la caché del cliente (SIN_HASH si no tiene)
+     * @param capacidades Capacidades del mod (ProtocoloTeclas.CAPACIDAD_*)
+     */
+    private void procesarSaludo(Player jugador, SesionCliente sesion, int version, long hashCache, int capacidades) {
+        sesion.setHashCliente(hashCache);
+        sesion.setCapacidades(capacidades);
+        sesion.setVersionProtocolo(version);
+
+        // El mod ya puede recibir la lista: pasar al jugador a la cola de envío
+        plugin.getServer().getScheduler().runTask(plugin, () -> {
+            if (jugador.isOnline()) {
+                if (sesion.aceptaLotePulsaciones()) {
+                    plugin.enviarCapacidades(jugador);
+                }
+                plugin.obtenerColaSincronizacionInicial().alRecibirSaludo(jugador, sesion);
+            }
+        });
+    }
+
+    /**
+     * El cliente no pudo usar su caché local tras una confirmación
+     * (archivo borrado o corrupto) o aplicar un delta: se olvida su hash y
+     * su generación y se le reenvía la lista completa en el hilo principal.
+     *
+     * Cada solicitud cuesta una lista completa, así que no basta con el
+     * límite de mensajes del jugador: entre dos resincronizaciones del
+     * mismo cliente pasan al menos ESPERA_ENTRE_SINCRONIZACIONES_NANOS (ver
+     * SesionCliente#programarSolicitudSincronizacion).
+     *
+     * @param jugador Jugador que solicita la sincronización
+     * @param sesion  Sesión del jugador
+     */
+    private void procesarSolicitudSincronizacion(Player jugador, SesionCliente sesion) {
+        long espera = sesion.programarSolicitudSincronizacion(System.nanoTime(), ESPERA_ENTRE_SINCRONIZACIONES_NANOS);
+        if (espera < 0) {
+            return;
+        }
+        sesion.setHashCliente(ProtocoloTeclas.SIN_HASH);
+        sesion.setGeneracionCliente(0);
+        plugin.getServer().getScheduler().runTaskLater(plugin, () -> {
+            if (jugador.isOnline()) {
+                plugin.enviarSincronizacion(jugador);
+            }
+        }, Math.ceilDiv(espera, NANOS_POR_TICK));
+    }
+
+    /**
+     * Procesa el JSON enviado por mods antiguos con formato: {"action_id": "..."}
+     *
+     * @param jugador Jugador que envió el mensaje
+     * @param sesion  Sesión del jugador
+     * @param datos   Bytes del JSON codificado en UTF-8
+     */
+    private void procesarJsonLegado(Player jugador, SesionCliente sesion, byte[] datos) {
         // Decodificar los bytes a String UTF-8
         String jsonString = new String(datos, StandardCharsets.UTF_8);
 
@@ -65,42 +209,6 @@ public class KeybindMessageListener implements PluginMessageListener {
             return;
         }
 
-        // Buscar la acción en el mapa de acciones configuradas
-        KeybindAction accion = plugin.obtenerAccionPorId(actionId);
-
-        if (accion == null) {
-            // SEGURIDAD: El action_id no existe en la configuración del servidor.
-            // Esto podría indicar un cliente manipulado intentando ejecutar acciones no
-            // autorizadas.
-            plugin.getLogger().warning(
-                    "Acción desconocida '" + actionId + "' recibida de " + jugador.getName()
-                            + ". Solicitud rechazada.");
-            return;
-        }
-
-        // Verificar permisos si la acción los requiere
-        if (accion.requierePermiso()) {
-            if (!jugador.hasPermission(accion.getPermiso())) {
-                plugin.getLogger().info(
-                        "Jugador " + jugador.getName() + " no tiene permiso '"
-                                + accion.getPermiso() + "' para la acción '" + actionId + "'.");
-                return;
-            }
-        }
-
-        // Ejecutar el comando como el jugador
-        // Se usa performCommand que ejecuta el comando como si el jugador lo hubiera
-        // escrito
-        String comando = accion.getComando();
-
-        plugin.getLogger().info(
-                "Ejecutando acción '" + actionId + "' para " + jugador.getName()
-                        + " -> /" + comando);
-
-        // Ejecutar en el hilo principal del servidor para seguridad con la API de
-        // Bukkit
-        plugin.getServer().getScheduler().runTask(plugin, () -> {
-            jugador.performCommand(comando);
-        });
+        plugin.obtenerProcesadorPulsaciones().encolarPulsacionLegada(jugador, sesion, actionId);
     }
 }
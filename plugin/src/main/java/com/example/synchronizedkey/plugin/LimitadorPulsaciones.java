@@ -0,0 +1,116 @@
+package com.example.synchronizedkey.plugin;
+
+import java.util.Arrays;
+
+/**
+ * Límite de frecuencia de los mensajes de un jugador, con un cubo de
+ * tokens para el jugador y otro por cada acción.
+ *
+ * Cada cubo se guarda como un único long: el instante teórico en que el
+ * cubo volvería a estar lleno (algoritmo GCRA, equivalente a un cubo de
+ * tokens). Un mensaje se acepta si ese instante no está más adelante que
+ * la ráfaga permitida, y cada mensaje aceptado lo adelanta un intervalo.
+ * Así comprobar y actualizar un límite no reserva memoria.
+ *
+ * Solo se usa desde el hilo de decodificación, por lo que no necesita
+ * sincronización.
+ */
+public class LimitadorPulsaciones {
+
+    private static final long NANOS_POR_SEGUNDO = 1_000_000_000L;
+
+    /** Valor devuelto por consumir cuando el cubo está vacío */
+    private static final long RECHAZADO = Long.MIN_VALUE;
+
+    /** Cubo del jugador (todos sus mensajes) */
+    private long cuboJugador = Long.MIN_VALUE;
+
+    /** Cubos por acción, indexados por handle */
+    private long[] cubosAcciones = new long[0];
+
+    /** Generación de configuración de los cubos por acción */
+    private int generacionAcciones = -1;
+
+    /** Mensajes descartados de este jugador (para no llenar el log) */
+    private int descartados = 0;
+
+    /**
+     * Consume un token del cubo del jugador.
+     *
+     * @param ahora      Instante actual (System.nanoTime)
+     * @param porSegundo Mensajes por segundo permitidos (0 = sin límite)
+     * @param rafaga     Mensajes seguidos permitidos
+     * @return true si el mensaje se acepta
+     */
+    public boolean permitirJugador(long ahora, int porSegundo, int rafaga) {
+        if (porSegundo <= 0) {
+            return true;
+        }
+        long siguiente = consumir(cuboJugador, ahora, porSegundo, rafaga);
+        if (siguiente == RECHAZADO) {
+            return false;
+        }
+        cuboJugador = siguiente;
+        return true;
+    }
+
+    /**
+     * Consume un token del cubo de la acción. Los cubos por acción se
+     * reinician al cambiar de generación, ya que los límites pueden haber
+     * cambiado con el reload.
+     *
+     * @param ahora      Instante actual (System.nanoTime)
+     * @param accion     Acción pulsada
+     * @param generacion Generación de configuración de la acción
+     * @return true si la pulsación se acepta
+     */
+    public boolean permitirAccion(long ahora, KeybindAction accion, int generacion) {
+        if (accion.getLimitePorSegundo() <= 0) {
+            return true;
+        }
+
+        int handle = accion.getHandle();
+        if (generacion != generacionAcciones || handle >= cubosAcciones.length) {
+            long[] nuevos = new long[Math.max(handle + 1, cubosAcciones.length)];
+            Arrays.fill(nuevos, Long.MIN_VALUE);
+            if (generacion == generacionAcciones) {
+                System.arraycopy(cubosAcciones, 0, nuevos, 0, cubosAcciones.length);
+            }
+            cubosAcciones = nuevos;
+            generacionAcciones = generacion;
+        }
+
+        long siguiente = consumir(cubosAcciones[handle], ahora,
+                accion.getLimitePorSegundo(), accion.getLimiteRafaga());
+        if (siguiente == RECHAZADO) {
+            return false;
+        }
+        cubosAcciones[handle] = siguiente;
+        return true;
+    }
+
+    /**
+     * Cuenta un mensaje descartado.
+     *
+     * @return Total de mensajes descartados de este jugador
+     */
+    public int registrarDescarte() {
+        return ++descartados;
+    }
+
+    /**
+     * @param cubo       Instante teórico de cubo lleno
+     * @param ahora      Instante actual
+     * @param porSegundo Tokens que se recuperan por segundo
+     * @param rafaga     Capacidad del cubo
+     * @return Nuevo valor del cubo, o RECHAZADO si no quedan tokens
+     */
+    private static long consumir(long cubo, long ahora, int porSegundo, int rafaga) {
+        long intervalo = NANOS_POR_SEGUNDO / porSegundo;
+        long base = Math.max(cubo, ahora);
+        if (base - ahora > (long) (Math.max(1, rafaga) - 1) * intervalo) {
+            return RECHAZADO;
+        }
+        return base + intervalo;
+    }
+}
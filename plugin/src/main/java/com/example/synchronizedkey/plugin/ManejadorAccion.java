@@ -0,0 +1,27 @@
+package com.example.synchronizedkey.plugin;
+
+import org.bukkit.entity.Player;
+
+/**
+ * Código que se ejecuta cuando un jugador pulsa la tecla de una acción.
+ *
+ * Cada acción de config.yml tiene un "tipo" (por defecto "comando") que
+ * se traduce en un ManejadorAccion al cargar la configuración, mediante
+ * la FabricaManejador registrada para ese tipo en RegistroManejadores.
+ * Así, en cada pulsación no hay que analizar nada: solo se llama a
+ * ejecutar.
+ *
+ * Se llama siempre desde el hilo principal, después de comprobar el
+ * permiso, los límites y el enfriamiento de la acción.
+ */
+@FunctionalInterface
+public interface ManejadorAccion {
+
+    /**
+     * Ejecuta la acción para el jugador.
+     *
+     * @param jugador Jugador que pulsó la tecla
+     * @param accion  Acción pulsada
+     */
+    void ejecutar(Player jugador, KeybindAction accion);
+}
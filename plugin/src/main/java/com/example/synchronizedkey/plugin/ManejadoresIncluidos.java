@@ -0,0 +1,108 @@
+package com.example.synchronizedkey.plugin;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+
+import java.util.Map;
+
+/**
+ * Tipos de acción incluidos en el plugin:
+ *
+ * - comando: ejecuta "comando" como el jugador (tipo por defecto).
+ * - abrir_inventario: abre el inventario indicado en "inventario"
+ *   ("ender_chest" o "mesa_crafteo").
+ * - teletransportar: lleva al jugador a "mundo", "x", "y", "z" (y
+ *   opcionalmente "yaw" y "pitch").
+ * - reproducir_sonido: reproduce al jugador el sonido "sonido" (clave
+ *   como "minecraft:entity.experience_orb.pickup"), con "volumen" y "tono"
+ *   opcionales.
+ */
+public final class ManejadoresIncluidos {
+
+    private ManejadoresIncluidos() {
+    }
+
+    /**
+     * Registra los tipos incluidos en el registro.
+     *
+     * @param registro Registro de tipos de acción
+     * @param plugin   Instancia del plugin principal
+     */
+    public static void registrar(RegistroManejadores registro, SynchronizedKeyPlugin plugin) {
+        registro.registrar(RegistroManejadores.TIPO_POR_DEFECTO,
+                parametros -> new ComandoPreparado(texto(parametros, "comando"), plugin));
+        registro.registrar("abrir_inventario", ManejadoresIncluidos::crearAbrirInventario);
+        registro.registrar("teletransportar", parametros -> crearTeletransportar(parametros, plugin));
+        registro.registrar("reproducir_sonido", ManejadoresIncluidos::crearReproducirSonido);
+    }
+
+    private static ManejadorAccion crearAbrirInventario(Map<String, Object> parametros) {
+        String inventario = texto(parametros, "inventario");
+        return switch (inventario) {
+            case "ender_chest" -> (jugador, accion) -> jugador.openInventory(jugador.getEnderChest());
+            case "mesa_crafteo" -> (jugador, accion) -> jugador.openWorkbench(null, true);
+            default -> throw new IllegalArgumentException("inventario desconocido '" + inventario + "'");
+        };
+    }
+
+    private static ManejadorAccion crearTeletransportar(Map<String, Object> parametros,
+                                                        SynchronizedKeyPlugin plugin) {
+        String nombreMundo = texto(parametros, "mundo");
+        double x = numero(parametros, "x");
+        double y = numero(parametros, "y");
+        double z = numero(parametros, "z");
+        float yaw = (float) numero(parametros, "yaw", 0);
+        float pitch = (float) numero(parametros, "pitch", 0);
+
+        return (jugador, accion) -> {
+            // El mundo se busca en cada uso: puede cargarse o descargarse después del reload
+            World mundo = Bukkit.getWorld(nombreMundo);
+            if (mundo == null) {
+                plugin.getLogger().warning("Mundo '" + nombreMundo + "' de la acción '"
+                        + accion.getId() + "' no cargado.");
+                return;
+            }
+            jugador.teleport(new Location(mundo, x, y, z, yaw, pitch));
+        };
+    }
+
+    private static ManejadorAccion crearReproducirSonido(Map<String, Object> parametros) {
+        String sonido = texto(parametros, "sonido");
+        float volumen = (float) numero(parametros, "volumen", 1);
+        float tono = (float) numero(parametros, "tono", 1);
+        return (jugador, accion) -> jugador.playSound(jugador.getLocation(), sonido, volumen, tono);
+    }
+
+    /**
+     * Lee un campo de texto obligatorio.
+     *
+     * @throws IllegalArgumentException si falta o está vacío
+     */
+    static String texto(Map<String, Object> parametros, String clave) {
+        Object valor = parametros.get(clave);
+        if (valor == null || String.valueOf(valor).isEmpty()) {
+            throw new IllegalArgumentException("falta el campo '" + clave + "'");
+        }
+        return String.valueOf(valor);
+    }
+
+    /**
+     * Lee un campo numérico obligatorio.
+     *
+     * @throws IllegalArgumentException si falta o no es un número
+     */
+    static double numero(Map<String, Object> parametros, String clave) {
+        if (!(parametros.get(clave) instanceof Number valor)) {
+            throw new IllegalArgumentException("falta el campo numérico '" + clave + "'");
+        }
+        return valor.doubleValue();
+    }
+
+    /**
+     * Lee un campo numérico opcional.
+     */
+    static double numero(Map<String, Object> parametros, String clave, double defecto) {
+        return parametros.get(clave) instanceof Number valor ? valor.doubleValue() : defecto;
+    }
+}
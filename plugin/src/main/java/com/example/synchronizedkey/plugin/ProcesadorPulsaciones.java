@@ -0,0 +1,394 @@
+package com.example.synchronizedkey.plugin;
+
+import org.bukkit.entity.Player;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Canal de procesamiento en dos etapas de los mensajes recibidos del mod.
+ *
+ * 1. Decodificación y validación estructural en un hilo dedicado, fuera
+ *    del hilo principal (ver KeybindMessageListener). Aquí se aplican
+ *    también los límites de frecuencia por jugador y por acción.
+ * 2. Las pulsaciones ya validadas se acumulan en una cola y se procesan
+ *    todas juntas en una única tarea del hilo principal por tick, que
+ *    resuelve la acción, comprueba el permiso y ejecuta el comando.
+ *
+ * Así el hilo principal no paga el coste de decodificar cada mensaje ni
+ * se programa una tarea por cada pulsación.
+ */
+public class ProcesadorPulsaciones {
+
+    /**
+     * Pulsación decodificada pendiente de ejecutarse en el hilo principal.
+     *
+     * @param jugador      Jugador que pulsó la tecla
+     * @param generacion   Generación con la que el cliente recibió el handle
+     * @param handle       Handle de la acción (SIN_HANDLE en clientes JSON)
+     * @param actionId     ID de la acción en clientes JSON (null en binario)
+     * @param repeticiones Veces que se pulsó (más de una solo en los lotes)
+     */
+    private record PulsacionPendiente(Player jugador, int generacion, int handle, String actionId,
+                                      int repeticiones) {
+    }
+
+    private final SynchronizedKeyPlugin plugin;
+
+    /** Hilo dedicado a decodificar y validar los mensajes recibidos */
+    private final ExecutorService ejecutorDecodificacion = Executors.newSingleThreadExecutor(tarea -> {
+        Thread hilo = new Thread(tarea, "SynchronizedKey-Decodificador");
+        hilo.setDaemon(true);
+        return hilo;
+    });
+
+    /** Pulsaciones validadas a la espera del siguiente drenaje en el hilo principal */
+    private final Queue<PulsacionPendiente> pendientes = new ConcurrentLinkedQueue<>();
+
+    /** true si ya hay un drenaje programado para el próximo tick */
+    private final AtomicBoolean drenajeProgramado = new AtomicBoolean(false);
+
+    /** Mensajes descartados por el límite de cada jugador (solo escribe el hilo de decodificación) */
+    private volatile long descartadosPorJugador = 0;
+
+    /** Pulsaciones descartadas por el límite de cada acción (solo escribe el hilo de decodificación) */
+    private volatile long descartadosPorAccion = 0;
+
+    /** Pulsaciones rechazadas por estar la acción en enfriamiento (solo escribe el hilo principal) */
+    private volatile long rechazadosPorEnfriamiento = 0;
+
+    /**
+     * Constructor del procesador.
+     *
+     * @param plugin Instancia del plugin principal
+     */
+    public ProcesadorPulsaciones(SynchronizedKeyPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Ejecuta la decodificación de un mensaje en el hilo dedicado.
+     *
+     * @param decodificacion Trabajo de decodificación del mensaje
+     */
+    public void decodificar(Runnable decodificacion) {
+        try {
+            ejecutorDecodificacion.execute(decodificacion);
+        } catch (RejectedExecutionException e) {
+            // El plugin se está deshabilitando: se descarta el mensaje
+        }
+    }
+
+    /**
+     * Aplica el límite de mensajes del jugador. Se llama desde el hilo de
+     * decodificación antes de decodificar nada más que la cabecera.
+     *
+     * @param jugador Jugador que envió el mensaje
+     * @param sesion  Sesión del jugador
+     * @return true si el mensaje se puede procesar
+     */
+    public boolean permitirMensaje(Player jugador, SesionCliente sesion) {
+        if (sesion.getLimitador().permitirJugador(System.nanoTime(),
+                plugin.obtenerLimiteJugadorPorSegundo(), plugin.obtenerLimiteJugadorRafaga())) {
+            return true;
+        }
+        descartadosPorJugador++;
+        avisarDescarte(jugador, sesion, "mensajes por jugador");
+        return false;
+    }
+
+    /**
+     * Aplica el límite de la acción y encola una pulsación binaria ya
+     * decodificada. Se llama desde el hilo de decodificación.
+     *
+     * @param jugador    Jugador que pulsó la tecla
+     * @param sesion     Sesión del jugador
+     * @param generacion Generación conocida por el cliente
+     * @param handle     Handle de la acción pulsada
+     */
+    public void encolarPulsacion(Player jugador, SesionCliente sesion, int generacion, int handle) {
+        // Los handles inválidos se encolan igualmente y se rechazan en el hilo principal
+        KeybindAction accion = plugin.obtenerAccionPorHandle(generacion, handle);
+        if (accion != null && !sesion.getLimitador().permitirAccion(System.nanoTime(), accion, generacion)) {
+            descartadosPorAccion++;
+            avisarDescarte(jugador, sesion, "acción '" + accion.getId() + "'");
+            return;
+        }
+        encolar(new PulsacionPendiente(jugador, generacion, handle, null, 1));
+    }
+
+    /**
+     * Decodifica en una sola pasada un lote con las pulsaciones de un tick
+     * del cliente y encola una pulsación por acción con las repeticiones
+     * que pasan los límites. Se llama desde el hilo de decodificación.
+     * Formato: [VarInt generación][VarInt cantidad]([VarInt handle][VarInt repeticiones])*
+     *
+     * El lote entero se lee y se valida antes de aplicar los límites y
+     * encolar nada, así que un lote mal formado se descarta completo.
+     *
+     * Cada repetición cuenta como un mensaje para el límite del jugador (la
+     * primera ya se contó en permitirMensaje), así que agrupar pulsaciones
+     * no permite enviar más. Si limites.unir_pulsaciones_repetidas está
+     * activado, las repeticiones de una acción cuentan y se ejecutan una vez.
+     *
+     * @param jugador Jugador que envió el lote
+     * @param sesion  Sesión del jugador
+     * @param lector  Lector posicionado tras la cabecera
+     * @throws IllegalArgumentException Si el lote está mal formado
+     */
+    public void encolarLote(Player jugador, SesionCliente sesion, ProtocoloTeclas.Lector lector) {
+        int generacion = lector.leerVarInt();
+        int cantidad = lector.leerVarInt();
+        if (cantidad <= 0 || cantidad > ProtocoloTeclas.MAXIMO_PULSACIONES_LOTE) {
+            throw new IllegalArgumentException("Cantidad de pulsaciones del lote inválida: " + cantidad);
+        }
+
+        int[] handles = new int[cantidad];
+        int[] repeticiones = new int[cantidad];
+        int totalPulsaciones = 0;
+        for (int i = 0; i < cantidad; i++) {
+            handles[i] = lector.leerVarInt();
+            repeticiones[i] = lector.leerVarInt();
+            // Se comprueba antes de sumar: un VarInt enorme desbordaría el total
+            if (repeticiones[i] <= 0
+                    || repeticiones[i] > ProtocoloTeclas.MAXIMO_PULSACIONES_LOTE - totalPulsaciones) {
+                throw new IllegalArgumentException("Repeticiones del lote inválidas: " + repeticiones[i]);
+            }
+            totalPulsaciones += repeticiones[i];
+            // El mod agrupa las pulsaciones por acción: cada handle aparece una sola vez
+            for (int j = 0; j < i; j++) {
+                if (handles[j] == handles[i]) {
+                    throw new IllegalArgumentException("Handle repetido en el lote: " + handles[i]);
+                }
+            }
+        }
+        if (lector.quedanDatos()) {
+            throw new IllegalArgumentException("Datos sobrantes al final del lote");
+        }
+
+        LimitadorPulsaciones limitador = sesion.getLimitador();
+        boolean unirRepetidas = plugin.unePulsacionesRepetidas();
+        long ahora = System.nanoTime();
+        for (int i = 0; i < cantidad; i++) {
+            // Los handles inválidos se encolan igualmente y se rechazan en el hilo principal
+            KeybindAction accion = plugin.obtenerAccionPorHandle(generacion, handles[i]);
+            int pulsaciones = unirRepetidas ? 1 : repeticiones[i];
+            int aceptadas = 0;
+            for (int r = 0; r < pulsaciones; r++) {
+                boolean primera = i == 0 && r == 0;
+                if (!primera && !limitador.permitirJugador(ahora,
+                        plugin.obtenerLimiteJugadorPorSegundo(), plugin.obtenerLimiteJugadorRafaga())) {
+                    descartadosPorJugador++;
+                    avisarDescarte(jugador, sesion, "mensajes por jugador");
+                    continue;
+                }
+                if (accion != null && !limitador.permitirAccion(ahora, accion, generacion)) {
+                    descartadosPorAccion++;
+                    avisarDescarte(jugador, sesion, "acción '" + accion.getId() + "'");
+                    continue;
+                }
+                aceptadas++;
+            }
+            if (aceptadas > 0) {
+                encolar(new PulsacionPendiente(jugador, generacion, handles[i], null, aceptadas));
+            }
+        }
+    }
+
+    /**
+     * Registra un descarte en el log la primera vez y luego cada 100, para
+     * que un cliente que inunda el canal no llene también el log.
+     *
+     * @param jugador Jugador cuyo mensaje se descartó
+     * @param sesion  Sesión del jugador
+     * @param limite  Descripción del límite superado
+     */
+    private void avisarDescarte(Player jugador, SesionCliente sesion, String limite) {
+        int descartados = sesion.getLimitador().registrarDescarte();
+        if (descartados % 100 == 1) {
+            plugin.getLogger().warning("Límite de " + limite + " superado por " + jugador.getName()
+                    + " (" + descartados + " mensajes descartados en total).");
+        }
+    }
+
+    /**
+     * Aplica el límite de la acción y encola una pulsación JSON (clientes
+     * antiguos) ya decodificada. La acción se busca por ID en el registro
+     * actual, igual que después en el hilo principal, para que el formato
+     * antiguo no sirva para saltarse el límite por acción. Se llama desde
+     * el hilo de decodificación.
+     *
+     * @param jugador  Jugador que pulsó la tecla
+     * @param sesion   Sesión del jugador
+     * @param actionId ID de la acción pulsada
+     */
+    public void encolarPulsacionLegada(Player jugador, SesionCliente sesion, String actionId) {
+        // Los IDs desconocidos se encolan igualmente y se rechazan en el hilo principal
+        RegistroAcciones registro = plugin.obtenerRegistro();
+        KeybindAction accion = registro.obtenerPorId(actionId);
+        if (accion != null
+                && !sesion.getLimitador().permitirAccion(System.nanoTime(), accion, registro.getGeneracion())) {
+            descartadosPorAccion++;
+            avisarDescarte(jugador, sesion, "acción '" + accion.getId() + "'");
+            return;
+        }
+        encolar(new PulsacionPendiente(jugador, 0, KeybindAction.SIN_HANDLE, actionId, 1));
+    }
+
+    private void encolar(PulsacionPendiente pulsacion) {
+        pendientes.add(pulsacion);
+        // Solo se programa una tarea por tick, aunque lleguen muchas pulsaciones
+        if (drenajeProgramado.compareAndSet(false, true)) {
+            try {
+                plugin.getServer().getScheduler().runTask(plugin, this::drenar);
+            } catch (IllegalStateException e) {
+                // El plugin ya no está habilitado
+                drenajeProgramado.set(false);
+            }
+        }
+    }
+
+    /**
+     * Procesa en el hilo principal todas las pulsaciones acumuladas.
+     */
+    private void drenar() {
+        // Liberar la marca antes de vaciar la cola, para que una pulsación que
+        // llegue durante el drenaje programe el siguiente
+        drenajeProgramado.set(false);
+
+        PulsacionPendiente pulsacion;
+        while ((pulsacion = pendientes.poll()) != null) {
+            if (pulsacion.jugador().isOnline()) {
+                procesar(pulsacion);
+            }
+        }
+    }
+
+    /**
+     * Resuelve la acción de la pulsación contra la configuración actual y
+     * la ejecuta (una vez por repetición) si el jugador tiene permiso.
+     *
+     * @param pulsacion Pulsación a procesar
+     */
+    private void procesar(PulsacionPendiente pulsacion) {
+        Player jugador = pulsacion.jugador();
+        KeybindAction accion;
+
+        if (pulsacion.actionId() != null) {
+            accion = plugin.obtenerAccionPorId(pulsacion.actionId());
+            if (accion == null) {
+                // SEGURIDAD: El action_id no existe en la configuración del servidor.
+                // Esto podría indicar un cliente manipulado intentando ejecutar acciones no
+                // autorizadas.
+                plugin.getLogger().warning(
+                        "Acción desconocida '" + pulsacion.actionId() + "' recibida de " + jugador.getName()
+                                + ". Solicitud rechazada.");
+                return;
+            }
+        } else {
+            accion = plugin.obtenerAccionPorHandle(pulsacion.generacion(), pulsacion.handle());
+            if (accion == null) {
+                // Handle de una configuración anterior (pulsación en vuelo durante un reload)
+                // o handle inexistente enviado por un cliente manipulado.
+                plugin.getLogger().warning(
+                        "Handle " + pulsacion.handle() + " (generación " + pulsacion.generacion()
+                                + ") inválido o obsoleto recibido de " + jugador.getName()
+                                + ". Solicitud rechazada.");
+                return;
+            }
+        }
+
+        // Las repeticiones de un lote se detienen en el primer rechazo: las
+        // siguientes se rechazarían igual. Solo la primera avisa al cliente
+        // de un enfriamiento; en las demás ya se le avisó al iniciarlo.
+        for (int i = 0; i < pulsacion.repeticiones(); i++) {
+            if (!ejecutarAccion(jugador, accion, i == 0)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Verifica los permisos y el enfriamiento de la acción y ejecuta su
+     * manejador. Se llama desde el drenaje, ya en el hilo principal.
+     *
+     * @param jugador            Jugador que pulsó la tecla
+     * @param accion             Acción validada
+     * @param avisarEnfriamiento true para enviar el tiempo restante al cliente si se rechaza por enfriamiento
+     * @return false si se rechazó por permiso o por enfriamiento, o si el jugador ya salió
+     */
+    private boolean ejecutarAccion(Player jugador, KeybindAction accion, boolean avisarEnfriamiento) {
+        Logger logger = plugin.getLogger();
+        SesionCliente sesion = plugin.obtenerGestorSesiones().buscarSesion(jugador);
+        if (sesion == null) {
+            return false;
+        }
+
+        // Verificar permisos con los calculados para la sesión (un bit por acción)
+        if (!plugin.tienePermiso(jugador, sesion, accion)) {
+            if (logger.isLoggable(Level.FINE)) {
+                logger.fine("Jugador " + jugador.getName() + " no tiene permiso '"
+                        + accion.getPermiso() + "' para la acción '" + accion.getId() + "'.");
+            }
+            return false;
+        }
+
+        // Enfriamiento: rechazar si sigue activo, e iniciarlo si no. En ambos
+        // casos se informa al cliente del tiempo restante.
+        if (accion.tieneEnfriamiento()) {
+            RuedaEnfriamientos rueda = plugin.obtenerRuedaEnfriamientos();
+            long restante = rueda.restanteMillis(sesion, accion);
+            if (restante > 0) {
+                rechazadosPorEnfriamiento++;
+                if (avisarEnfriamiento) {
+                    plugin.enviarEnfriamiento(jugador, sesion, accion, restante);
+                }
+                return false;
+            }
+            plugin.enviarEnfriamiento(jugador, sesion, accion,
+                    rueda.iniciar(sesion, accion));
+        }
+
+        // Registro por pulsación solo a nivel FINE: con muchos jugadores el
+        // coste de construir el mensaje en cada pulsación no es despreciable
+        if (logger.isLoggable(Level.FINE)) {
+            logger.fine("Ejecutando acción '" + accion.getId() + "' para " + jugador.getName()
+                    + " (" + accion.getTipo() + ")");
+        }
+
+        // Ejecutar el manejador preparado para el tipo de la acción
+        try {
+            accion.getManejador().ejecutar(jugador, accion);
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Error al ejecutar la acción '" + accion.getId()
+                    + "' para " + jugador.getName(), e);
+        }
+        return true;
+    }
+
+    /**
+     * Resume los contadores de mensajes descartados en una línea legible.
+     *
+     * @return Texto con los descartes por límite de jugador y de acción, y por enfriamiento
+     */
+    public String obtenerResumenDescartes() {
+        return "descartados por límite de jugador: " + descartadosPorJugador
+                + ", por límite de acción: " + descartadosPorAccion
+                + ", rechazados por enfriamiento: " + rechazadosPorEnfriamiento;
+    }
+
+    /**
+     * Detiene el hilo de decodificación y descarta las pulsaciones
+     * pendientes (al deshabilitar el plugin).
+     */
+    public void detener() {
+        ejecutorDecodificacion.shutdownNow();
+        pendientes.clear();
+    }
+}
@@ -0,0 +1,298 @@
+package com.example.synchronizedkey.plugin;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+/**
+ * Definición del protocolo binario del canal teclas_pro:main.
+ *
+ * Cada mensaje binario empieza con dos bytes de cabecera:
+ * [versión del protocolo][tipo de mensaje], seguidos de los campos
+ * propios del tipo. Los enteros se codifican como VarInt (igual que en el
+ * protocolo de Minecraft) y los textos como VarInt de longitud + bytes UTF-8,
+ * de forma que el mod puede leerlos directamente con PacketByteBuf.
+ *
+ * Los mensajes JSON de clientes antiguos empiezan por '{' o '[', que nunca
+ * coincide con una versión de protocolo válida, por lo que ambos formatos
+ * pueden convivir en el mismo canal.
+ */
+public final class ProtocoloTeclas {
+
+    /** Versión actual del protocolo binario */
+    public static final int VERSION = 1;
+
+    /** Cliente → Servidor: saludo del mod indicando que entiende el protocolo binario */
+    public static final int TIPO_SALUDO = 0x01;
+
+    /** Cliente → Servidor: pulsación de una tecla dinámica */
+    public static final int TIPO_PULSACION = 0x02;
+
+    /** Cliente → Servidor: petición de la lista completa (caché local no disponible) */
+    public static final int TIPO_SOLICITAR_SINCRONIZACION = 0x03;
+
+    /** Cliente → Servidor: pulsaciones de un tick agrupadas (handle + repeticiones) */
+    public static final int TIPO_LOTE_PULSACIONES = 0x04;
+
+    /** Servidor → Cliente: lista completa de acciones */
+    public static final int TIPO_SINCRONIZACION = 0x10;
+
+    /** Servidor → Cliente: la caché local del cliente coincide, no se reenvía la lista */
+    public static final int TIPO_CONFIRMACION_CACHE = 0x11;
+
+    /** Servidor → Cliente: cambios respecto a la generación anterior (tras /sk reload) */
+    public static final int TIPO_DELTA = 0x12;
+
+    /** Servidor → Cliente: enfriamiento restante de una acción tras usarla */
+    public static final int TIPO_ENFRIAMIENTO = 0x13;
+
+    /** Servidor → Cliente: otro mensaje comprimido con deflate y el diccionario compartido */
+    public static final int TIPO_COMPRIMIDO = 0x14;
+
+    /** Servidor → Cliente: trozo de un mensaje demasiado grande para enviarlo en uno solo */
+    public static final int TIPO_FRAGMENTO = 0x15;
+
+    /** Servidor → Cliente: capacidades del plugin, en respuesta al saludo */
+    public static final int TIPO_CAPACIDADES = 0x16;
+
+    /** Capacidad anunciada en el saludo: el mod entiende TIPO_COMPRIMIDO y TIPO_FRAGMENTO */
+    public static final int CAPACIDAD_EMPAQUETADO = 0x01;
+
+    /**
+     * Capacidad anunciada en el saludo y en TIPO_CAPACIDADES: el mod y el
+     * plugin entienden TIPO_LOTE_PULSACIONES
+     */
+    public static final int CAPACIDAD_LOTE_PULSACIONES = 0x02;
+
+    /** Máximo de pulsaciones en un lote (la cola de pulsaciones del mod) */
+    public static final int MAXIMO_PULSACIONES_LOTE = 64;
+
+    /**
+     * Longitud máxima en caracteres del id y el label de una acción: el mod
+     * no acepta textos más largos en la lista binaria. Debe coincidir con
+     * la del mod.
+     */
+    public static final int LONGITUD_MAXIMA_TEXTO = 256;
+
+    /**
+     * Diccionario compartido con el mod para la compresión: palabras que
+     * suelen aparecer en los IDs y labels de las acciones, de forma que
+     * incluso las listas pequeñas se comprimen bien. Las más frecuentes van
+     * al final, que es donde deflate las encuentra con referencias más cortas.
+     * Debe ser idéntico byte a byte al del mod.
+     */
+    static final byte[] DICCIONARIO = ("kit_warp_mapa_clan_amigos_ajustes_mochila_casa_home_spawn_"
+            + "mision_misiones_comando_sonido_teletransportar_inventario_"
+            + "Kit Warp Mapa Clan Amigos Ajustes Mochila Casa Spawn Misiones Comandos "
+            + "Open Menu Shop Profile Quests Settings Friends Home "
+            + "Ir al Ir a Abrir Ver Mostrar Usar Menú Tienda Perfil Inventario "
+            + "abrir_menu_abrir_tienda_abrir_perfil_ver_").getBytes(StandardCharsets.UTF_8);
+
+    /** Hash que indica que el cliente no tiene caché para este servidor */
+    public static final long SIN_HASH = 0L;
+
+    private ProtocoloTeclas() {
+    }
+
+    /**
+     * Indica si el mensaje recibido usa el formato JSON antiguo.
+     *
+     * @param datos Bytes del mensaje
+     * @return true si el primer byte es '{' o '['
+     */
+    public static boolean esJsonLegado(byte[] datos) {
+        return datos.length > 0 && (datos[0] == '{' || datos[0] == '[');
+    }
+
+    /**
+     * Calcula el hash de contenido de una lista de acciones serializada.
+     * Son los primeros 8 bytes de su SHA-256; nunca devuelve SIN_HASH.
+     *
+     * @param cuerpo Bytes de la lista de acciones
+     * @return Hash de 64 bits del contenido
+     */
+    public static long calcularHash(byte[] cuerpo) {
+        byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256").digest(cuerpo);
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 es obligatorio en toda JVM
+            throw new IllegalStateException(e);
+        }
+        long hash = 0;
+        for (int i = 0; i < 8; i++) {
+            hash = (hash << 8) | (digest[i] & 0xFF);
+        }
+        return hash == SIN_HASH ? 1L : hash;
+    }
+
+    /**
+     * Comprime un mensaje con deflate usando el diccionario compartido.
+     *
+     * @param datos Bytes del mensaje
+     * @return Datos comprimidos (sin cabecera)
+     */
+    public static byte[] comprimir(byte[] datos) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setDictionary(DICCIONARIO);
+            deflater.setInput(datos);
+            deflater.finish();
+            Escritor escritor = new Escritor(datos.length / 2 + 64);
+            byte[] bloque = new byte[8192];
+            while (!deflater.finished()) {
+                int escritos = deflater.deflate(bloque);
+                escritor.escribirBytes(bloque, 0, escritos);
+            }
+            return escritor.aBytes();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Escritor de mensajes binarios sobre un array de bytes que crece
+     * según se necesite.
+     */
+    public static final class Escritor {
+
+        private byte[] buffer;
+        private int posicion;
+
+        /**
+         * Crea un escritor y escribe la cabecera del mensaje.
+         *
+         * @param tipo              Tipo de mensaje
+         * @param capacidadInicial  Tamaño inicial estimado en bytes
+         */
+        public Escritor(int tipo, int capacidadInicial) {
+            this(capacidadInicial);
+            escribirByte(VERSION);
+            escribirByte(tipo);
+        }
+
+        /**
+         * Crea un escritor sin cabecera, para fragmentos que se incrustan
+         * después en otro mensaje.
+         *
+         * @param capacidadInicial Tamaño inicial estimado en bytes
+         */
+        public Escritor(int capacidadInicial) {
+            this.buffer = new byte[Math.max(capacidadInicial, 16)];
+        }
+
+        public Escritor escribirByte(int valor) {
+            asegurarCapacidad(1);
+            buffer[posicion++] = (byte) valor;
+            return this;
+        }
+
+        public Escritor escribirVarInt(int valor) {
+            asegurarCapacidad(5);
+            while ((valor & ~0x7F) != 0) {
+                buffer[posicion++] = (byte) ((valor & 0x7F) | 0x80);
+                valor >>>= 7;
+            }
+            buffer[posicion++] = (byte) valor;
+            return this;
+        }
+
+        public Escritor escribirLong(long valor) {
+            asegurarCapacidad(8);
+            for (int desplazamiento = 56; desplazamiento >= 0; desplazamiento -= 8) {
+                buffer[posicion++] = (byte) (valor >>> desplazamiento);
+            }
+            return this;
+        }
+
+        public Escritor escribirBytes(byte[] bytes) {
+            return escribirBytes(bytes, 0, bytes.length);
+        }
+
+        public Escritor escribirBytes(byte[] bytes, int desde, int longitud) {
+            asegurarCapacidad(longitud);
+            System.arraycopy(bytes, desde, buffer, posicion, longitud);
+            posicion += longitud;
+            return this;
+        }
+
+        public Escritor escribirTexto(String texto) {
+            byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+            escribirVarInt(bytes.length);
+            return escribirBytes(bytes);
+        }
+
+        /**
+         * @return Copia exacta de los bytes escritos
+         */
+        public byte[] aBytes() {
+            return Arrays.copyOf(buffer, posicion);
+        }
+
+        private void asegurarCapacidad(int extra) {
+            if (posicion + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, posicion + extra));
+            }
+        }
+    }
+
+    /**
+     * Lector de mensajes binarios directamente sobre el array recibido,
+     * sin copias intermedias.
+     */
+    public static final class Lector {
+
+        private final byte[] datos;
+        private int posicion;
+
+        public Lector(byte[] datos) {
+            this.datos = datos;
+        }
+
+        public int leerByte() {
+            if (posicion >= datos.length) {
+                throw new IllegalArgumentException("Mensaje truncado");
+            }
+            return datos[posicion++] & 0xFF;
+        }
+
+        public int leerVarInt() {
+            int valor = 0;
+            int desplazamiento = 0;
+            int actual;
+            do {
+                if (desplazamiento >= 35) {
+                    throw new IllegalArgumentException("VarInt demasiado largo");
+                }
+                actual = leerByte();
+                valor |= (actual & 0x7F) << desplazamiento;
+                desplazamiento += 7;
+            } while ((actual & 0x80) != 0);
+            return valor;
+        }
+
+        public long leerLong() {
+            long valor = 0;
+            for (int i = 0; i < 8; i++) {
+                valor = (valor << 8) | leerByte();
+            }
+            return valor;
+        }
+
+        public String leerTexto(int longitudMaxima) {
+            int longitud = leerVarInt();
+            if (longitud < 0 || longitud > longitudMaxima || posicion + longitud > datos.length) {
+                throw new IllegalArgumentException("Longitud de texto inválida: " + longitud);
+            }
+            String texto = new String(datos, posicion, longitud, StandardCharsets.UTF_8);
+            posicion += longitud;
+            return texto;
+        }
+
+        public boolean quedanDatos() {
+            return posicion < datos.length;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.synchronizedkey.plugin;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Registro inmutable de las acciones de una generación de configuración:
+ * acciones por ID y por handle, y los paquetes de sincronización ya
+ * serializados.
+ *
+ * Cada carga de config.yml construye un registro nuevo completo y lo
+ * publica de una sola vez a través de una referencia volatile (copia en
+ * escritura). Quien lee la referencia una vez ve siempre un registro
+ * coherente, aunque se esté recargando la configuración en ese momento,
+ * y nunca necesita bloquear.
+ */
+public final class RegistroAcciones {
+
+    /** Registro sin acciones (antes de la primera carga) */
+    public static final RegistroAcciones VACIO = new RegistroAcciones(0, new LinkedHashMap<>(),
+            new KeybindAction[0], InstantaneaSincronizacion.VACIA, Map.of(), EmpaquetadorMensajes.SIN_EMPAQUETAR);
+
+    /** Generación de configuración del registro */
+    private final int generacion;
+
+    /** Acciones por ID, en el orden de config.yml y después de acciones.d */
+    private final Map<String, KeybindAction> porId;
+
+    /** Acciones por handle (puede tener huecos null donde había acciones eliminadas) */
+    private final KeybindAction[] porHandle;
+
+    /** Paquetes de sincronización de la lista completa */
+    private final InstantaneaSincronizacion instantanea;
+
+    /** Archivos de acciones.d leídos para esta generación, por nombre */
+    private final Map<String, DirectorioAcciones.ArchivoAcciones> archivos;
+
+    /** Compresión y fragmentación configuradas, también para las listas filtradas por permisos */
+    private final EmpaquetadorMensajes empaquetador;
+
+    /** Firma de permisos con todas las acciones; su instantánea es la lista completa */
+    private final FirmaPermisos firmaCompleta;
+
+    /**
+     * @param generacion   Generación de configuración
+     * @param porId        Acciones por ID, ya con su handle (se copia)
+     * @param porHandle    Acciones por handle (no se copia; no debe modificarse después)
+     * @param instantanea  Paquetes de sincronización de la lista completa
+     * @param archivos     Archivos de acciones.d leídos, por nombre
+     * @param empaquetador Compresión y fragmentación de los paquetes de esta generación
+     */
+    RegistroAcciones(int generacion, Map<String, KeybindAction> porId, KeybindAction[] porHandle,
+                     InstantaneaSincronizacion instantanea, Map<String, DirectorioAcciones.ArchivoAcciones> archivos,
+                     EmpaquetadorMensajes empaquetador) {
+        this.generacion = generacion;
+        this.porId = Collections.unmodifiableMap(new LinkedHashMap<>(porId));
+        this.porHandle = porHandle;
+        this.instantanea = instantanea;
+        this.archivos = archivos;
+        this.empaquetador = empaquetador;
+
+        long[] bits = new long[(porHandle.length + 63) >>> 6];
+        for (KeybindAction accion : porHandle) {
+            if (accion != null) {
+                bits[accion.getHandle() >>> 6] |= 1L << accion.getHandle();
+            }
+        }
+        this.firmaCompleta = new FirmaPermisos(bits);
+        this.firmaCompleta.setInstantanea(instantanea);
+    }
+
+    public int getGeneracion() {
+        return generacion;
+    }
+
+    /**
+     * @return Colección inmutable de las acciones, en el orden de config.yml y acciones.d
+     */
+    public Collection<KeybindAction> obtenerAcciones() {
+        return porId.values();
+    }
+
+    /**
+     * @param id Identificador de la acción
+     * @return La acción, o null si no existe
+     */
+    public KeybindAction obtenerPorId(String id) {
+        return porId.get(id);
+    }
+
+    /**
+     * Busca una acción por su handle. Rechaza los handles de otra
+     * generación, ya que tras un reload pueden apuntar a otra acción.
+     *
+     * @param generacionCliente Generación con la que el cliente recibió el handle
+     * @param handle            Handle de la acción
+     * @return La acción, o null si el handle no es válido o está obsoleto
+     */
+    public KeybindAction obtenerPorHandle(int generacionCliente, int handle) {
+        if (generacionCliente != generacion || handle < 0 || handle >= porHandle.length) {
+            return null;
+        }
+        return porHandle[handle];
+    }
+
+    /**
+     * @return Número de handles (incluidos los huecos)
+     */
+    public int cantidadHandles() {
+        return porHandle.length;
+    }
+
+    /**
+     * @param handle Handle entre 0 y cantidadHandles() - 1
+     * @return La acción de ese handle, o null si es un hueco
+     */
+    public KeybindAction accionEnHandle(int handle) {
+        return porHandle[handle];
+    }
+
+    public InstantaneaSincronizacion getInstantanea() {
+        return instantanea;
+    }
+
+    Map<String, DirectorioAcciones.ArchivoAcciones> getArchivos() {
+        return archivos;
+    }
+
+    EmpaquetadorMensajes getEmpaquetador() {
+        return empaquetador;
+    }
+
+    FirmaPermisos getFirmaCompleta() {
+        return firmaCompleta;
+    }
+
+    /**
+     * @return Número de acciones
+     */
+    public int cantidad() {
+        return porId.size();
+    }
+}
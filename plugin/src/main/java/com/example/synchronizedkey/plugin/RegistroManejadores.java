@@ -0,0 +1,129 @@
+package com.example.synchronizedkey.plugin;
+
+import org.bukkit.entity.Player;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registro de los tipos de acción disponibles y sus fábricas.
+ *
+ * El plugin registra los tipos incluidos (ver ManejadoresIncluidos) y
+ * otros plugins pueden añadir los suyos:
+ *
+ * <pre>
+ * SynchronizedKeyPlugin sk = (SynchronizedKeyPlugin) Bukkit.getPluginManager().getPlugin("SynchronizedKey");
+ * sk.obtenerRegistroManejadores().registrar("mi_tipo", parametros -> (jugador, accion) -> { ... });
+ * </pre>
+ *
+ * Si una acción usa un tipo que aún no está registrado (porque el plugin
+ * que lo aporta se habilita después), su manejador se crea en la primera
+ * pulsación en que el tipo ya exista.
+ */
+public class RegistroManejadores {
+
+    /** Tipo usado cuando la acción no indica ninguno */
+    public static final String TIPO_POR_DEFECTO = "comando";
+
+    private final SynchronizedKeyPlugin plugin;
+
+    /** Fábricas registradas por nombre de tipo (en minúsculas) */
+    private final Map<String, FabricaManejador> fabricas = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor del registro.
+     *
+     * @param plugin Instancia del plugin principal
+     */
+    public RegistroManejadores(SynchronizedKeyPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Registra (o sustituye) la fábrica de un tipo de acción.
+     *
+     * @param tipo    Nombre del tipo, tal como se escribe en config.yml
+     * @param fabrica Fábrica de manejadores del tipo
+     */
+    public void registrar(String tipo, FabricaManejador fabrica) {
+        fabricas.put(normalizar(tipo), fabrica);
+    }
+
+    /**
+     * Quita un tipo de acción (ej: al deshabilitarse el plugin que lo aportaba).
+     * Las acciones ya cargadas conservan su manejador hasta el próximo reload.
+     *
+     * @param tipo Nombre del tipo
+     */
+    public void desregistrar(String tipo) {
+        fabricas.remove(normalizar(tipo));
+    }
+
+    /**
+     * @param tipo Nombre del tipo
+     * @return true si hay una fábrica registrada para el tipo
+     */
+    public boolean estaRegistrado(String tipo) {
+        return fabricas.containsKey(normalizar(tipo));
+    }
+
+    /**
+     * Crea el manejador de una acción. Si el tipo aún no está registrado,
+     * devuelve un manejador diferido que lo crea en la primera pulsación
+     * en que el tipo exista.
+     *
+     * @param tipo       Nombre del tipo
+     * @param parametros Campos de la acción en config.yml
+     * @return Manejador de la acción
+     * @throws IllegalArgumentException si la fábrica rechaza los campos
+     */
+    public ManejadorAccion crear(String tipo, Map<String, Object> parametros) {
+        FabricaManejador fabrica = fabricas.get(normalizar(tipo));
+        if (fabrica != null) {
+            return fabrica.crear(parametros);
+        }
+        plugin.getLogger().warning("Tipo de acción '" + tipo + "' no registrado todavía; "
+                + "se resolverá en la primera pulsación.");
+        return new ManejadorDiferido(normalizar(tipo), parametros);
+    }
+
+    private static String normalizar(String tipo) {
+        return tipo.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Manejador de una acción cuyo tipo no estaba registrado al cargar la
+     * configuración. Solo se usa desde el hilo principal.
+     */
+    private final class ManejadorDiferido implements ManejadorAccion {
+
+        private final String tipo;
+        private final Map<String, Object> parametros;
+        private ManejadorAccion resuelto = null;
+
+        private ManejadorDiferido(String tipo, Map<String, Object> parametros) {
+            this.tipo = tipo;
+            this.parametros = parametros;
+        }
+
+        @Override
+        public void ejecutar(Player jugador, KeybindAction accion) {
+            if (resuelto == null) {
+                FabricaManejador fabrica = fabricas.get(tipo);
+                if (fabrica == null) {
+                    plugin.getLogger().warning("Tipo de acción '" + tipo + "' no registrado; "
+                            + "la acción '" + accion.getId() + "' no se puede ejecutar.");
+                    return;
+                }
+                try {
+                    resuelto = fabrica.crear(parametros);
+                } catch (IllegalArgumentException e) {
+                    plugin.getLogger().warning("Acción '" + accion.getId() + "' inválida: " + e.getMessage());
+                    return;
+                }
+            }
+            resuelto.ejecutar(jugador, accion);
+        }
+    }
+}
@@ -1,14 +1,12 @@
 package com.example.synchronizedkey.plugin;
 
-import org.bukkit.Bukkit;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
-import org.bukkit.entity.Player;
 
 /**
  * Ejecutor del comando /sk reload.
- * Recarga el config.yml, reconstruye el JSON de acciones y envía
+ * Recarga el config.yml, reconstruye la instantánea de acciones y envía
  * la nueva configuración a todos los jugadores conectados.
  *
  * Permiso requerido: teclaspro.admin
@@ -31,6 +29,7 @@ public class ReloadCommand implements CommandExecutor {
      * Maneja la ejecución del comando /sk.
      * Subcomandos soportados:
      * - reload: recarga config y sincroniza con todos los jugadores
+     * - estado: muestra las métricas de sincronización y de pulsaciones descartadas
      *
      * @param sender  Quien ejecuta el comando
      * @param command Objeto del comando
@@ -42,7 +41,7 @@ public class ReloadCommand implements CommandExecutor {
     public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
         // Verificar que se proporcionó un subcomando
         if (args.length == 0) {
-            sender.sendMessage("§e[SynchronizedKey] §fUso: /sk reload");
+            sender.sendMessage("§e[SynchronizedKey] §fUso: /sk <reload|estado>");
             return true;
         }
 
@@ -52,17 +51,24 @@ public class ReloadCommand implements CommandExecutor {
             return true;
         }
 
+        // Procesar el subcomando "estado"
+        if (args[0].equalsIgnoreCase("estado")) {
+            mostrarEstado(sender);
+            return true;
+        }
+
         // Subcomando desconocido
-        sender.sendMessage("§e[SynchronizedKey] §cSubcomando desconocido. Uso: /sk reload");
+        sender.sendMessage("§e[SynchronizedKey] §cSubcomando desconocido. Uso: /sk <reload|estado>");
         return true;
     }
 
     /**
      * Ejecuta la lógica de recarga:
      * 1. Recarga el archivo config.yml desde disco
-     * 2. Reconstruye el mapa de acciones interno
-     * 3. Construye el JSON de sincronización
-     * 4. Envía el paquete a todos los jugadores conectados
+     * 2. Reconstruye el mapa de acciones interno y serializa la instantánea
+     * 3. Obtiene los paquetes de sincronización (binario y JSON) ya serializados
+     * 4. Encola el envío a todos los jugadores conectados en el difusor,
+     *    que lo reparte entre ticks e informa del progreso al sender
      *
      * El envío se realiza en el hilo principal ya que sendPluginMessage
      * debe ejecutarse en el hilo del servidor de Bukkit.
@@ -80,28 +86,35 @@ public class ReloadCommand implements CommandExecutor {
         sender.sendMessage("§e[SynchronizedKey] §aConfiguración recargada. §f"
                 + cantidadAcciones + " acciones cargadas.");
 
-        // Paso 3: Construir los bytes JSON para enviar
-        byte[] datosJson = plugin.construirJsonAcciones();
+        // Paso 3: Obtener los paquetes ya serializados durante la carga
+        InstantaneaSincronizacion instantanea = plugin.obtenerInstantanea();
 
-        if (datosJson == null) {
+        if (instantanea.estaVacia()) {
             sender.sendMessage("§e[SynchronizedKey] §cNo hay acciones configuradas para enviar.");
             return;
         }
 
-        // Paso 4: Enviar a todos los jugadores conectados
-        // sendPluginMessage debe ejecutarse en el hilo principal,
-        // y este comando ya se ejecuta en el hilo principal.
-        int jugadoresEnviados = 0;
-        for (Player jugador : Bukkit.getOnlinePlayers()) {
-            jugador.sendPluginMessage(plugin, SynchronizedKeyPlugin.CANAL, datosJson);
-            jugadoresEnviados++;
-        }
-
-        sender.sendMessage("§e[SynchronizedKey] §aSincronización enviada a §f"
-                + jugadoresEnviados + " §ajugador(es) conectado(s).");
+        // Paso 4: Encolar el envío a todos los jugadores conectados. El difusor lo
+        // reparte entre varios ticks y lo combina con otros reloads en curso.
+        plugin.obtenerDifusorSincronizacion().difundir(sender);
 
         plugin.getLogger().info("Reload ejecutado por " + sender.getName()
-                + ". Acciones: " + cantidadAcciones
-                + ", Jugadores sincronizados: " + jugadoresEnviados);
+                + ". Acciones: " + cantidadAcciones);
+    }
+
+    /**
+     * Muestra las métricas de la cola de sincronización de los jugadores
+     * que se conectan y los contadores de pulsaciones descartadas.
+     *
+     * @param sender Quien ejecutó el comando
+     */
+    private void mostrarEstado(CommandSender sender) {
+        sender.sendMessage("§e[SynchronizedKey] §fGeneración " + plugin.obtenerGeneracion()
+                + ", " + plugin.obtenerAcciones().size() + " acciones, "
+                + plugin.obtenerCantidadFirmasPermisos() + " grupos de permisos distintos.");
+        sender.sendMessage("§e[SynchronizedKey] §fSincronización inicial: "
+                + plugin.obtenerColaSincronizacionInicial().obtenerResumenMetricas());
+        sender.sendMessage("§e[SynchronizedKey] §fPulsaciones: "
+                + plugin.obtenerProcesadorPulsaciones().obtenerResumenDescartes());
     }
 }
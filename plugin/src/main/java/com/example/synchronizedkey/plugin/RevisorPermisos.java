@@ -0,0 +1,79 @@
+package com.example.synchronizedkey.plugin;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerCommandSendEvent;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Listener que invalida los permisos calculados de un jugador cuando
+ * pueden haber cambiado, y le reenvía la lista de acciones si ahora puede
+ * usar otras distintas.
+ *
+ * Bukkit no tiene un evento general de recálculo de permisos, pero
+ * player.updateCommands() (que los plugins de permisos llaman tras
+ * recalcular los de un jugador) lanza PlayerCommandSendEvent. El cambio de
+ * mundo también se escucha porque los permisos pueden depender del mundo.
+ *
+ * La revisión se hace en el tick siguiente, para dar tiempo a que el
+ * plugin de permisos termine de aplicarlos, y una sola vez por jugador
+ * aunque lleguen varios eventos seguidos.
+ */
+public class RevisorPermisos implements Listener {
+
+    /** Referencia al plugin principal */
+    private final SynchronizedKeyPlugin plugin;
+
+    /** Jugadores pendientes de revisar en el próximo tick */
+    private final Set<UUID> pendientes = new LinkedHashSet<>();
+
+    /**
+     * Constructor del listener.
+     *
+     * @param plugin Instancia del plugin principal
+     */
+    public RevisorPermisos(SynchronizedKeyPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void alActualizarComandos(PlayerCommandSendEvent evento) {
+        programarRevision(evento.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void alCambiarMundo(PlayerChangedWorldEvent evento) {
+        programarRevision(evento.getPlayer());
+    }
+
+    /**
+     * Añade al jugador a la revisión del próximo tick.
+     *
+     * @param jugador Jugador cuyos permisos pueden haber cambiado
+     */
+    private void programarRevision(Player jugador) {
+        if (pendientes.add(jugador.getUniqueId()) && pendientes.size() == 1) {
+            plugin.getServer().getScheduler().runTask(plugin, this::revisar);
+        }
+    }
+
+    /**
+     * Revisa los permisos de los jugadores pendientes que siguen conectados.
+     */
+    private void revisar() {
+        for (UUID idJugador : pendientes) {
+            Player jugador = Bukkit.getPlayer(idJugador);
+            if (jugador != null && jugador.isOnline()) {
+                plugin.revisarPermisos(jugador);
+            }
+        }
+        pendientes.clear();
+    }
+}
@@ -0,0 +1,259 @@
+package com.example.synchronizedkey.plugin;
+
+import org.bukkit.scheduler.BukkitTask;
+
+/**
+ * Enfriamientos (cooldown_ms) activos de todas las acciones y jugadores,
+ * guardados en una rueda de tiempo con hash (hashed timing wheel).
+ *
+ * Cada enfriamiento guarda su vencimiento en tiempo real (System.nanoTime)
+ * y se indexa en la sesión del jugador por el handle de la acción, de
+ * forma que comprobar si una acción está en enfriamiento es un acceso a un
+ * array y una resta, y no depende de que el servidor vaya a 20 ticks por
+ * segundo: con lag, los enfriamientos duran lo mismo que predice el
+ * cliente.
+ *
+ * Los handles se reutilizan entre recargas (el de una acción eliminada lo
+ * puede ocupar una nueva), así que cada entrada guarda también el id de
+ * su acción y solo cuenta para esa acción: una acción nueva no hereda el
+ * enfriamiento de la eliminada.
+ *
+ * La rueda solo decide cuándo se liberan las entradas vencidas. Tiene
+ * RANURAS ranuras de 50 ms; cada entrada va en la primera ranura que
+ * empieza después de su vencimiento (módulo RANURAS) y en cada tick se recorren las ranuras
+ * cuyo tiempo ya pasó desde el tick anterior (todas si ha pasado más de
+ * una vuelta). Los enfriamientos que vencen en una vuelta posterior se
+ * quedan en su ranura.
+ *
+ * Las entradas se reutilizan desde una lista de libres, así que iniciar y
+ * vencer enfriamientos no reserva memoria en régimen estable.
+ *
+ * Todos los métodos se ejecutan en el hilo principal.
+ */
+public class RuedaEnfriamientos {
+
+    /** Número de ranuras de la rueda (potencia de 2; 64 ranuras de 50 ms = 3,2 segundos por vuelta) */
+    static final int RANURAS = 64;
+
+    /** Duración de cada ranura de la rueda */
+    static final long NANOS_POR_RANURA = 50_000_000L;
+
+    private static final long NANOS_POR_MILLI = 1_000_000L;
+
+    /**
+     * Enfriamiento activo de una acción para un jugador. Forma parte de la
+     * lista enlazada de su ranura.
+     */
+    static final class Entrada {
+        private SesionCliente sesion;
+        private int handle;
+        private String idAccion;
+        private long vencimientoNanos;
+        private Entrada siguiente;
+    }
+
+    private final SynchronizedKeyPlugin plugin;
+
+    /** Primera entrada de cada ranura */
+    private final Entrada[] ranuras = new Entrada[RANURAS];
+
+    /** Entradas vencidas disponibles para reutilizar */
+    private Entrada libres = null;
+
+    /** Última ranura recorrida, contada desde el origen de System.nanoTime */
+    private long ranuraProcesada = 0;
+
+    /** Enfriamientos activos en la rueda */
+    private int activas = 0;
+
+    /** Tarea que avanza la rueda (null mientras está vacía) */
+    private BukkitTask tarea = null;
+
+    /**
+     * Constructor de la rueda.
+     *
+     * @param plugin Instancia del plugin principal
+     */
+    public RuedaEnfriamientos(SynchronizedKeyPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Devuelve el tiempo de enfriamiento que le queda al jugador para una
+     * acción.
+     *
+     * @param sesion Sesión del jugador
+     * @param accion Acción pulsada
+     * @return Milisegundos restantes, o 0 si la acción no está en enfriamiento
+     */
+    public long restanteMillis(SesionCliente sesion, KeybindAction accion) {
+        return restanteMillis(sesion, accion, System.nanoTime());
+    }
+
+    /**
+     * @param sesion Sesión del jugador
+     * @param accion Acción pulsada
+     * @param ahora  Instante actual (System.nanoTime)
+     * @return Milisegundos restantes (redondeados hacia arriba), o 0 si no hay enfriamiento
+     */
+    long restanteMillis(SesionCliente sesion, KeybindAction accion, long ahora) {
+        Entrada entrada = sesion.obtenerEnfriamiento(accion.getHandle());
+        if (entrada == null || !entrada.idAccion.equals(accion.getId())) {
+            // Sin enfriamiento, o es de la acción que tenía antes este handle
+            return 0;
+        }
+        long restante = entrada.vencimientoNanos - ahora;
+        return restante <= 0 ? 0 : (restante + NANOS_POR_MILLI - 1) / NANOS_POR_MILLI;
+    }
+
+    /**
+     * Inicia el enfriamiento de una acción para un jugador.
+     *
+     * @param sesion Sesión del jugador
+     * @param accion Acción usada (con su cooldown_ms)
+     * @return Duración del enfriamiento en milisegundos
+     */
+    public long iniciar(SesionCliente sesion, KeybindAction accion) {
+        long duracion = iniciar(sesion, accion, System.nanoTime());
+        if (tarea == null) {
+            tarea = plugin.getServer().getScheduler().runTaskTimer(plugin, this::avanzar, 1L, 1L);
+        }
+        return duracion;
+    }
+
+    /**
+     * Guarda el enfriamiento en la rueda y en la sesión, sin programar la
+     * tarea que avanza la rueda.
+     *
+     * @param sesion Sesión del jugador
+     * @param accion Acción usada (con su cooldown_ms)
+     * @param ahora  Instante actual (System.nanoTime)
+     * @return Duración del enfriamiento en milisegundos
+     */
+    long iniciar(SesionCliente sesion, KeybindAction accion, long ahora) {
+        int handle = accion.getHandle();
+        int enfriamientoMs = Math.max(0, accion.getEnfriamientoMs());
+        if (activas == 0) {
+            // Rueda parada: empezar a contar las ranuras desde ahora
+            ranuraProcesada = Math.floorDiv(ahora, NANOS_POR_RANURA);
+        }
+
+        // Si ya había un enfriamiento de la acción, su entrada queda
+        // huérfana y se libera al vencer (quitarEnfriamiento la ignora)
+        Entrada entrada = libres;
+        if (entrada != null) {
+            libres = entrada.siguiente;
+        } else {
+            entrada = new Entrada();
+        }
+        entrada.sesion = sesion;
+        entrada.handle = handle;
+        entrada.idAccion = accion.getId();
+        entrada.vencimientoNanos = ahora + enfriamientoMs * NANOS_POR_MILLI;
+
+        // En la primera ranura que empieza después del vencimiento (al
+        // recorrerla ya ha vencido) y nunca en una ya recorrida, o esperaría
+        // una vuelta entera a liberarse
+        long ranuraVencimiento = Math.max(Math.ceilDiv(entrada.vencimientoNanos, NANOS_POR_RANURA),
+                ranuraProcesada + 1);
+        int ranura = (int) (ranuraVencimiento & (RANURAS - 1));
+        entrada.siguiente = ranuras[ranura];
+        ranuras[ranura] = entrada;
+        activas++;
+
+        sesion.guardarEnfriamiento(handle, entrada);
+        return enfriamientoMs;
+    }
+
+    /**
+     * Avanza la rueda hasta el instante actual y detiene su tarea si se vacía.
+     */
+    private void avanzar() {
+        avanzar(System.nanoTime());
+        if (activas == 0 && tarea != null) {
+            tarea.cancel();
+            tarea = null;
+        }
+    }
+
+    /**
+     * Recorre las ranuras cuyo tiempo ha pasado desde la última vez y
+     * libera los enfriamientos que ya vencieron.
+     *
+     * @param ahora Instante actual (System.nanoTime)
+     */
+    void avanzar(long ahora) {
+        long hasta = Math.floorDiv(ahora, NANOS_POR_RANURA);
+        // Con más de una vuelta de retraso basta con recorrer cada ranura una vez
+        long desde = Math.max(ranuraProcesada + 1, hasta - RANURAS + 1);
+        for (long r = desde; r <= hasta; r++) {
+            liberarVencidas((int) (r & (RANURAS - 1)), ahora);
+        }
+        ranuraProcesada = Math.max(ranuraProcesada, hasta);
+    }
+
+    /**
+     * Libera las entradas de una ranura que ya vencieron.
+     *
+     * @param ranura Índice de la ranura
+     * @param ahora  Instante actual (System.nanoTime)
+     */
+    private void liberarVencidas(int ranura, long ahora) {
+        Entrada anterior = null;
+        Entrada entrada = ranuras[ranura];
+        while (entrada != null) {
+            Entrada siguiente = entrada.siguiente;
+            if (entrada.vencimientoNanos - ahora <= 0) {
+                if (anterior == null) {
+                    ranuras[ranura] = siguiente;
+                } else {
+                    anterior.siguiente = siguiente;
+                }
+                liberar(entrada);
+            } else {
+                anterior = entrada;
+            }
+            entrada = siguiente;
+        }
+    }
+
+    /**
+     * @return Número de enfriamientos guardados en la rueda
+     */
+    int activas() {
+        return activas;
+    }
+
+    /**
+     * Quita la entrada de la sesión del jugador y la devuelve a la lista de libres.
+     *
+     * @param entrada Entrada vencida, ya desenlazada de su ranura
+     */
+    private void liberar(Entrada entrada) {
+        entrada.sesion.quitarEnfriamiento(entrada.handle, entrada);
+        entrada.sesion = null;
+        entrada.idAccion = null;
+        entrada.siguiente = libres;
+        libres = entrada;
+        activas--;
+    }
+
+    /**
+     * Vacía la rueda y detiene su tarea (al deshabilitar el plugin).
+     */
+    public void cancelar() {
+        if (tarea != null) {
+            tarea.cancel();
+            tarea = null;
+        }
+        for (int i = 0; i < RANURAS; i++) {
+            Entrada entrada = ranuras[i];
+            while (entrada != null) {
+                Entrada siguiente = entrada.siguiente;
+                liberar(entrada);
+                entrada = siguiente;
+            }
+            ranuras[i] = null;
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.example.synchronizedkey.plugin;
+
+import java.util.Arrays;
+
+/**
+ * Estado de red asociado a un jugador conectado.
+ * Guarda lo que se ha negociado con su cliente (versión del protocolo,
+ * capacidades, hash y generación de la lista de acciones que ya tiene) para elegir el
+ * formato y el contenido de los paquetes que se le envían, además del
+ * límite de frecuencia de sus mensajes, los enfriamientos activos de sus
+ * acciones y qué acciones tiene permitidas.
+ */
+public class SesionCliente {
+
+    /** Versión del protocolo binario anunciada por el mod (0 = cliente JSON antiguo) */
+    private volatile int versionProtocolo = 0;
+
+    /** Capacidades anunciadas por el mod en el saludo (ProtocoloTeclas.CAPACIDAD_*) */
+    private volatile int capacidades = 0;
+
+    /**
+     * Hash de la lista de acciones que el cliente tiene guardada: la de su
+     * caché local al conectarse, o la última que se le envió completa.
+     */
+    private volatile long hashCliente = ProtocoloTeclas.SIN_HASH;
+
+    /** Generación de configuración de la última lista enviada al cliente (0 = ninguna) */
+    private volatile int generacionCliente = 0;
+
+    /** Límite de frecuencia de sus mensajes (solo lo usa el hilo de decodificación) */
+    private final LimitadorPulsaciones limitador = new LimitadorPulsaciones();
+
+    /**
+     * Instante (System.nanoTime) de la última resincronización programada a
+     * petición del cliente, que puede estar en el futuro si se aplazó. Solo
+     * lo usa el hilo de decodificación.
+     */
+    private long ultimaSolicitudSincronizacion = 0;
+
+    /** false hasta la primera solicitud de sincronización */
+    private boolean haSolicitadoSincronizacion = false;
+
+    /**
+     * Enfriamientos activos por handle de acción (null = sin enfriamiento).
+     * Lo gestiona RuedaEnfriamientos desde el hilo principal.
+     */
+    private RuedaEnfriamientos.Entrada[] enfriamientos = new RuedaEnfriamientos.Entrada[0];
+
+    /**
+     * Acciones que el jugador tiene permitidas (null = sin calcular o
+     * invalidadas). Solo se usa desde el hilo principal.
+     */
+    private FirmaPermisos permisos = null;
+
+    /** Generación de configuración para la que se calcularon los permisos */
+    private int generacionPermisos = 0;
+
+    /** Permisos con los que se filtró la última lista enviada (null = no se envió ninguna) */
+    private FirmaPermisos permisosEnviados = null;
+
+    /**
+     * Versión del protocolo con la que se envió la última lista (-1 = no se
+     * envió ninguna, 0 = JSON). Solo se usa desde el hilo principal.
+     */
+    private int versionSincronizada = -1;
+
+    public int getVersionProtocolo() {
+        return versionProtocolo;
+    }
+
+    public void setVersionProtocolo(int versionProtocolo) {
+        this.versionProtocolo = versionProtocolo;
+    }
+
+    public int getCapacidades() {
+        return capacidades;
+    }
+
+    public void setCapacidades(int capacidades) {
+        this.capacidades = capacidades;
+    }
+
+    public long getHashCliente() {
+        return hashCliente;
+    }
+
+    public void setHashCliente(long hashCliente) {
+        this.hashCliente = hashCliente;
+    }
+
+    public int getGeneracionCliente() {
+        return generacionCliente;
+    }
+
+    public void setGeneracionCliente(int generacionCliente) {
+        this.generacionCliente = generacionCliente;
+    }
+
+    public LimitadorPulsaciones getLimitador() {
+        return limitador;
+    }
+
+    /**
+     * Decide cuándo atender una solicitud de sincronización del cliente,
+     * con al menos espera nanosegundos entre dos resincronizaciones. Una
+     * solicitud que llega antes se aplaza en lugar de descartarse (el
+     * cliente puede necesitar de verdad la lista), pero nunca hay más de
+     * una aplazada: las que llegan mientras tanto se descartan.
+     *
+     * @param ahora  Instante actual (System.nanoTime)
+     * @param espera Nanosegundos mínimos entre dos resincronizaciones
+     * @return Nanosegundos que hay que esperar para atenderla (0 = ya), o -1 si se descarta
+     */
+    long programarSolicitudSincronizacion(long ahora, long espera) {
+        long instante = ahora;
+        if (haSolicitadoSincronizacion) {
+            if (ultimaSolicitudSincronizacion - ahora > 0) {
+                // Ya hay una aplazada que enviará la lista vigente
+                return -1;
+            }
+            instante = Math.max(ahora, ultimaSolicitudSincronizacion + espera);
+        }
+        haSolicitadoSincronizacion = true;
+        ultimaSolicitudSincronizacion = instante;
+        return instante - ahora;
+    }
+
+    RuedaEnfriamientos.Entrada obtenerEnfriamiento(int handle) {
+        return handle < enfriamientos.length ? enfriamientos[handle] : null;
+    }
+
+    void guardarEnfriamiento(int handle, RuedaEnfriamientos.Entrada entrada) {
+        if (handle >= enfriamientos.length) {
+            enfriamientos = Arrays.copyOf(enfriamientos, handle + 1);
+        }
+        enfriamientos[handle] = entrada;
+    }
+
+    void quitarEnfriamiento(int handle, RuedaEnfriamientos.Entrada entrada) {
+        if (handle < enfriamientos.length && enfriamientos[handle] == entrada) {
+            enfriamientos[handle] = null;
+        }
+    }
+
+    /**
+     * @param generacion Generación de configuración actual
+     * @return Acciones permitidas, o null si no están calculadas para esa generación
+     */
+    FirmaPermisos obtenerPermisos(int generacion) {
+        return generacion == generacionPermisos ? permisos : null;
+    }
+
+    void guardarPermisos(FirmaPermisos permisos, int generacion) {
+        this.permisos = permisos;
+        this.generacionPermisos = generacion;
+    }
+
+    /**
+     * Olvida los permisos calculados para volver a consultarlos en la
+     * próxima pulsación o sincronización.
+     */
+    void invalidarPermisos() {
+        permisos = null;
+    }
+
+    FirmaPermisos getPermisosEnviados() {
+        return permisosEnviados;
+    }
+
+    void setPermisosEnviados(FirmaPermisos permisosEnviados) {
+        this.permisosEnviados = permisosEnviados;
+    }
+
+    /**
+     * Indica si el cliente ya recibió la lista en el formato que entiende
+     * ahora: tras un saludo tardío, la lista enviada en JSON no cuenta.
+     *
+     * @return true si la última lista se envió con la versión de protocolo actual
+     */
+    boolean estaSincronizada() {
+        return versionSincronizada == versionProtocolo;
+    }
+
+    void marcarSincronizada() {
+        versionSincronizada = versionProtocolo;
+    }
+
+    /**
+     * Olvida la última lista enviada, para que la cola de sincronización
+     * inicial vuelva a enviarla.
+     */
+    void olvidarSincronizacion() {
+        versionSincronizada = -1;
+    }
+
+    /**
+     * Indica si el cliente entiende el protocolo binario.
+     *
+     * @return true si el mod envió un saludo binario compatible
+     */
+    public boolean usaProtocoloBinario() {
+        return versionProtocolo > 0;
+    }
+
+    /**
+     * @return true si el mod acepta mensajes comprimidos y fragmentados
+     */
+    public boolean aceptaEmpaquetado() {
+        return (capacidades & ProtocoloTeclas.CAPACIDAD_EMPAQUETADO) != 0;
+    }
+
+    /**
+     * @return true si el mod puede enviar las pulsaciones agrupadas por tick
+     */
+    public boolean aceptaLotePulsaciones() {
+        return (capacidades & ProtocoloTeclas.CAPACIDAD_LOTE_PULSACIONES) != 0;
+    }
+}
@@ -2,15 +2,30 @@ package com.example.synchronizedkey.plugin;
 
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
+import org.bukkit.command.CommandMap;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.command.PluginCommand;
+import org.bukkit.entity.Player;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.bukkit.plugin.messaging.Messenger;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.reflect.Method;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
 
 /**
  * Clase principal del plugin SynchronizedKey para Spigot/Paper 1.21.
@@ -32,15 +47,69 @@ public class SynchronizedKeyPlugin extends JavaPlugin {
     public static final String CANAL = "teclas_pro:main";
 
     /**
-     * Mapa de acciones indexado por su ID para búsquedas rápidas O(1).
-     * Se carga desde config.yml al habilitar el plugin.
+     * Registro inmutable de las acciones de la generación actual (por ID y
+     * por handle) con sus paquetes de sincronización ya serializados. Cada
+     * carga de configuración construye uno nuevo y lo sustituye de una vez,
+     * así que los lectores nunca ven una configuración a medio cargar.
      */
-    private final Map<String, KeybindAction> mapaAcciones = new HashMap<>();
+    private volatile RegistroAcciones registro = RegistroAcciones.VACIO;
+
+    /**
+     * Firmas de permisos distintas de los jugadores en la generación actual,
+     * internadas para que los jugadores con los mismos permisos compartan
+     * los paquetes filtrados. Solo se usa desde el hilo principal.
+     */
+    private final Map<FirmaPermisos, FirmaPermisos> firmasPermisos = new HashMap<>();
+
+    /**
+     * Configuración cargada de config.yml (null hasta la primera lectura).
+     * Se sustituye entera en cada recarga.
+     */
+    private volatile FileConfiguration configuracion = null;
+
+    /** Límite de mensajes por segundo de cada jugador (0 = sin límite) y su ráfaga */
+    private volatile int limiteJugadorPorSegundo = 0;
+    private volatile int limiteJugadorRafaga = 0;
+
+    /** true si las pulsaciones repetidas de una acción en un mismo lote se ejecutan una sola vez */
+    private volatile boolean unirPulsacionesRepetidas = false;
+
+    /**
+     * CommandMap del servidor, para ejecutar los comandos de las acciones
+     * sin pasar por performCommand (null si no se pudo obtener).
+     */
+    private CommandMap mapaComandos = null;
+
+    /** Tipos de acción disponibles (incluidos y registrados por otros plugins) */
+    private final RegistroManejadores registroManejadores = new RegistroManejadores(this);
+
+    /** Estado negociado con el cliente de cada jugador conectado */
+    private final GestorSesiones gestorSesiones = new GestorSesiones();
+
+    /** Reparte entre ticks el envío de la sincronización tras un /sk reload */
+    private final DifusorSincronizacion difusorSincronizacion = new DifusorSincronizacion(this);
+
+    /** Cola de envío de la sincronización a los jugadores que se conectan */
+    private final ColaSincronizacionInicial colaSincronizacionInicial = new ColaSincronizacionInicial(this);
+
+    /** Decodifica los mensajes fuera del hilo principal y ejecuta las pulsaciones por lotes */
+    private final ProcesadorPulsaciones procesadorPulsaciones = new ProcesadorPulsaciones(this);
+
+    /** Enfriamientos activos de las acciones de todos los jugadores */
+    private final RuedaEnfriamientos ruedaEnfriamientos = new RuedaEnfriamientos(this);
+
+    /** Lee las acciones de los archivos de la carpeta acciones.d */
+    private final DirectorioAcciones directorioAcciones = new DirectorioAcciones(this);
+
+    /** Recarga la configuración cuando cambia config.yml (si está activada) */
+    private final VigilanteConfiguracion vigilanteConfiguracion = new VigilanteConfiguracion(this);
 
     @Override
     public void onEnable() {
         // Paso 1: Guardar y cargar la configuración por defecto
         saveDefaultConfig();
+        mapaComandos = resolverMapaComandos();
+        ManejadoresIncluidos.registrar(registroManejadores, this);
         cargarAccionesDesdeConfig();
 
         // Paso 2: Registrar el canal de comunicación con el sistema Messenger de Spigot
@@ -53,13 +122,20 @@ public class SynchronizedKeyPlugin extends JavaPlugin {
         registrarComandos();
 
         getLogger().info("SynchronizedKey Plugin habilitado correctamente.");
-        getLogger().info("Acciones cargadas: " + mapaAcciones.size());
+        getLogger().info("Acciones cargadas: " + registro.cantidad());
     }
 
     @Override
     public void onDisable() {
-        // Limpiar el mapa de acciones al deshabilitar
-        mapaAcciones.clear();
+        // Detener la difusión en curso y limpiar el mapa de acciones al deshabilitar
+        difusorSincronizacion.cancelar();
+        colaSincronizacionInicial.cancelar();
+        procesadorPulsaciones.detener();
+        ruedaEnfriamientos.cancelar();
+        vigilanteConfiguracion.detener();
+        registro = RegistroAcciones.VACIO;
+        firmasPermisos.clear();
+        gestorSesiones.limpiar();
         getLogger().info("SynchronizedKey Plugin deshabilitado.");
     }
 
@@ -87,6 +163,27 @@ public class SynchronizedKeyPlugin extends JavaPlugin {
     private void registrarListeners() {
         getServer().getPluginManager().registerEvents(
                 new PlayerJoinListener(this), this);
+        getServer().getPluginManager().registerEvents(gestorSesiones, this);
+        getServer().getPluginManager().registerEvents(new InvalidadorComandos(this), this);
+        getServer().getPluginManager().registerEvents(new RevisorPermisos(this), this);
+    }
+
+    /**
+     * Obtiene el CommandMap del servidor. La API de Spigot no lo expone,
+     * pero CraftServer (y sus derivados) tienen un método público
+     * getCommandMap().
+     *
+     * @return CommandMap del servidor, o null si no está disponible
+     */
+    private CommandMap resolverMapaComandos() {
+        try {
+            Method metodo = getServer().getClass().getMethod("getCommandMap");
+            return (CommandMap) metodo.invoke(getServer());
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            getLogger().warning("No se pudo obtener el CommandMap del servidor; "
+                    + "los comandos de las acciones se ejecutarán con performCommand.");
+            return null;
+        }
     }
 
     /**
@@ -103,59 +200,364 @@ public class SynchronizedKeyPlugin extends JavaPlugin {
     }
 
     /**
-     * Carga las acciones de keybind desde el archivo config.yml.
-     * Cada acción se almacena en el mapa indexada por su ID.
+     * Carga las acciones de keybind desde config.yml y la carpeta acciones.d.
+     * Construye un registro nuevo con las acciones indexadas por su ID y
+     * por su handle, serializa una sola vez los paquetes de sincronización
+     * de la nueva generación (incluido el delta respecto a la anterior) y
+     * solo entonces lo publica, sustituyendo al anterior de una vez.
+     *
+     * Las acciones que ya existían conservan su handle, de forma que el
+     * delta solo contiene lo que realmente cambió. De acciones.d solo se
+     * vuelven a leer los archivos modificados (ver DirectorioAcciones).
      *
-     * Formato esperado en config.yml:
+     * Formato esperado en config.yml (y en cada archivo de acciones.d):
      * acciones:
      * - id: "abrir_menu"
      * label: "Abrir Menú"
      * default_key: 77
+     * tipo: "comando" (opcional, ver RegistroManejadores)
      * comando: "dm open menu_principal"
      * permiso: ""
+     * limite_por_segundo: 2 (opcional)
+     * limite_rafaga: 3 (opcional)
+     * cooldown_ms: 1000 (opcional)
      */
     public void cargarAccionesDesdeConfig() {
-        mapaAcciones.clear();
+        FileConfiguration config = getConfig();
+        aplicarConfiguracion(config, construirRegistro(config, registro));
+    }
 
-        // Obtener la lista de acciones desde la configuración
-        List<?> listaAcciones = getConfig().getList("acciones");
+    /**
+     * Construye el registro de la siguiente generación a partir de una
+     * configuración, sin publicarlo. No modifica el estado del plugin, así
+     * que se puede llamar fuera del hilo principal (recarga automática).
+     *
+     * @param config   Configuración leída de config.yml
+     * @param anterior Registro actual (para conservar handles y calcular el delta)
+     * @return Registro nuevo con sus paquetes de sincronización ya serializados
+     */
+    RegistroAcciones construirRegistro(FileConfiguration config, RegistroAcciones anterior) {
+        int nuevaGeneracion = anterior.getGeneracion() + 1;
+        Map<String, KeybindAction> nuevasAcciones = new LinkedHashMap<>();
 
-        if (listaAcciones == null || listaAcciones.isEmpty()) {
-            getLogger().warning("No se encontraron acciones en config.yml");
-            return;
+        // Primero las acciones de config.yml
+        List<?> listaAcciones = config.getList("acciones");
+        if (listaAcciones != null) {
+            // Iterar sobre cada elemento de la lista
+            for (Object elemento : listaAcciones) {
+                if (elemento instanceof Map) {
+                    @SuppressWarnings("unchecked")
+                    Map<String, Object> datosAccion = (Map<String, Object>) elemento;
+
+                    KeybindAction accion = crearAccion(datosAccion, "config.yml");
+                    if (accion != null && agregarAccion(nuevasAcciones, accion, "config.yml")) {
+                        getLogger().info(
+                                "Acción cargada: '" + accion.getId() + "' -> " + accion.getTipo()
+                                        + " (tecla: " + accion.getDefaultKey() + ")");
+                    }
+                }
+            }
         }
 
-        // Iterar sobre cada elemento de la lista
-        for (Object elemento : listaAcciones) {
-            if (elemento instanceof Map) {
-                @SuppressWarnings("unchecked")
-                Map<String, Object> datosAccion = (Map<String, Object>) elemento;
-
-                String id = String.valueOf(datosAccion.getOrDefault("id", ""));
-                String label = String.valueOf(datosAccion.getOrDefault("label", ""));
-                int defaultKey = datosAccion.containsKey("default_key")
-                        ? ((Number) datosAccion.get("default_key")).intValue()
-                        : 0;
-                String comando = String.valueOf(datosAccion.getOrDefault("comando", ""));
-                String permiso = String.valueOf(datosAccion.getOrDefault("permiso", ""));
-
-                // Validar que los campos obligatorios no estén vacíos
-                if (id.isEmpty() || label.isEmpty() || comando.isEmpty()) {
-                    getLogger().warning(
-                            "Acción con datos incompletos encontrada en config.yml. "
-                                    + "Se requiere: id, label y comando. Saltando...");
-                    continue;
+        // Después las de acciones.d, en orden alfabético de archivo. Solo se
+        // vuelven a leer los archivos modificados desde la carga anterior.
+        Map<String, DirectorioAcciones.ArchivoAcciones> archivos = directorioAcciones.cargar(anterior.getArchivos());
+        Map<String, String> origenes = new HashMap<>();
+        for (Map.Entry<String, DirectorioAcciones.ArchivoAcciones> archivo : archivos.entrySet()) {
+            for (KeybindAction accion : archivo.getValue().acciones()) {
+                if (agregarAccion(nuevasAcciones, accion, DirectorioAcciones.CARPETA + "/" + archivo.getKey())) {
+                    origenes.put(accion.getId(), archivo.getKey());
                 }
+            }
+        }
+
+        if (nuevasAcciones.isEmpty()) {
+            getLogger().warning("No se encontraron acciones en config.yml ni en " + DirectorioAcciones.CARPETA);
+        }
+
+        KeybindAction[] porHandle = asignarHandles(nuevasAcciones, anterior);
+        archivos = DirectorioAcciones.conHandles(archivos, nuevasAcciones, origenes);
+
+        EmpaquetadorMensajes empaquetador = EmpaquetadorMensajes.desdeConfiguracion(config);
+        InstantaneaSincronizacion nuevaInstantanea = InstantaneaSincronizacion.VACIA;
+        if (!nuevasAcciones.isEmpty()) {
+            InstantaneaSincronizacion instantaneaAnterior = anterior.getInstantanea();
+            nuevaInstantanea = construirInstantanea(nuevaGeneracion, nuevasAcciones.values(),
+                    instantaneaAnterior.estaVacia() ? null : anterior, empaquetador);
+        }
+
+        return new RegistroAcciones(nuevaGeneracion, nuevasAcciones, porHandle, nuevaInstantanea, archivos,
+                empaquetador);
+    }
+
+    /**
+     * Añade una acción a las de la nueva generación, salvo que ya haya otra
+     * con el mismo ID.
+     *
+     * @param acciones Acciones de la nueva generación por ID
+     * @param accion   Acción a añadir (el handle se asigna después)
+     * @param origen   Archivo del que se leyó (para el aviso de duplicado)
+     * @return true si se añadió
+     */
+    private boolean agregarAccion(Map<String, KeybindAction> acciones, KeybindAction accion, String origen) {
+        if (acciones.putIfAbsent(accion.getId(), accion) != null) {
+            getLogger().warning("Acción con id duplicado '" + accion.getId() + "' en " + origen + ". Saltando...");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Aplica una configuración y publica su registro de acciones,
+     * sustituyendo al actual de una vez. Los permisos calculados para la
+     * generación anterior dejan de ser válidos. Debe llamarse desde el
+     * hilo principal.
+     *
+     * @param config Configuración de la que se construyó el registro
+     * @param nuevo  Registro ya construido de la nueva generación
+     */
+    private void aplicarConfiguracion(FileConfiguration config, RegistroAcciones nuevo) {
+        // Límite global de mensajes por jugador
+        limiteJugadorPorSegundo = Math.max(0, config.getInt("limites.pulsaciones_por_segundo", 10));
+        limiteJugadorRafaga = Math.max(1, config.getInt("limites.rafaga", 20));
+        unirPulsacionesRepetidas = config.getBoolean("limites.unir_pulsaciones_repetidas", false);
+
+        firmasPermisos.clear();
+        firmasPermisos.put(nuevo.getFirmaCompleta(), nuevo.getFirmaCompleta());
+        registro = nuevo;
+
+        vigilanteConfiguracion.actualizar(config);
+    }
+
+    /**
+     * Aplica una configuración leída y preparada por la recarga automática
+     * y envía la nueva lista a todos los jugadores. Si entretanto se cargó
+     * otra configuración (ej: con /sk reload), el registro se vuelve a
+     * construir sobre la actual. Debe llamarse desde el hilo principal.
+     *
+     * @param config Configuración leída de config.yml
+     * @param base   Registro sobre el que se construyó el nuevo
+     * @param nuevo  Registro construido fuera del hilo principal
+     */
+    void aplicarRecargaAutomatica(FileConfiguration config, RegistroAcciones base, RegistroAcciones nuevo) {
+        if (!isEnabled()) {
+            return;
+        }
+        if (registro != base) {
+            nuevo = construirRegistro(config, registro);
+        }
+
+        configuracion = config;
+        aplicarConfiguracion(config, nuevo);
+        getLogger().info("Archivos de configuración modificados: configuración recargada automáticamente ("
+                + nuevo.cantidad() + " acciones).");
+
+        if (!nuevo.getInstantanea().estaVacia()) {
+            difusorSincronizacion.difundir(getServer().getConsoleSender());
+        }
+    }
+
+    /**
+     * @return Cargador de las acciones de la carpeta acciones.d
+     */
+    public DirectorioAcciones obtenerDirectorioAcciones() {
+        return directorioAcciones;
+    }
+
+    /**
+     * @return Registro de acciones de la generación actual
+     */
+    RegistroAcciones obtenerRegistro() {
+        return registro;
+    }
 
-                // Crear la acción y almacenarla en el mapa
-                KeybindAction accion = new KeybindAction(id, label, defaultKey, comando, permiso);
-                mapaAcciones.put(id, accion);
+    /**
+     * Devuelve la configuración cargada. Sustituye a la de JavaPlugin para
+     * que la recarga automática pueda leer config.yml fuera del hilo
+     * principal y publicarla después de una vez.
+     */
+    @Override
+    public FileConfiguration getConfig() {
+        FileConfiguration actual = configuracion;
+        if (actual == null) {
+            reloadConfig();
+            actual = configuracion;
+        }
+        return actual;
+    }
+
+    /**
+     * Vuelve a leer config.yml desde disco. Si no es válido se usa una
+     * configuración vacía (solo con los valores por defecto), igual que
+     * hace JavaPlugin.
+     */
+    @Override
+    public void reloadConfig() {
+        try {
+            configuracion = leerConfiguracion();
+        } catch (IOException | InvalidConfigurationException e) {
+            getLogger().log(Level.SEVERE, "No se pudo cargar config.yml", e);
+            YamlConfiguration vacia = new YamlConfiguration();
+            aplicarValoresPorDefecto(vacia);
+            configuracion = vacia;
+        }
+    }
+
+    /**
+     * Lee config.yml desde disco, con los valores por defecto del config.yml
+     * incluido en el plugin. Se puede llamar desde cualquier hilo.
+     *
+     * @return Configuración leída
+     * @throws IOException                   si no se puede leer el archivo
+     * @throws InvalidConfigurationException si el YAML no es válido
+     */
+    FileConfiguration leerConfiguracion() throws IOException, InvalidConfigurationException {
+        YamlConfiguration config = new YamlConfiguration();
+        config.load(obtenerArchivoConfiguracion());
+        aplicarValoresPorDefecto(config);
+        return config;
+    }
+
+    private void aplicarValoresPorDefecto(YamlConfiguration config) {
+        InputStream porDefecto = getResource("config.yml");
+        if (porDefecto != null) {
+            config.setDefaults(YamlConfiguration.loadConfiguration(
+                    new InputStreamReader(porDefecto, StandardCharsets.UTF_8)));
+        }
+    }
+
+    /**
+     * @return Archivo config.yml de la carpeta de datos del plugin
+     */
+    File obtenerArchivoConfiguracion() {
+        return new File(getDataFolder(), "config.yml");
+    }
+
+    /**
+     * Crea una acción a partir de sus campos en config.yml (o en un archivo
+     * de acciones.d), incluido el manejador de su tipo. Se puede llamar
+     * desde cualquier hilo.
+     *
+     * @param datosAccion Campos de la acción
+     * @param origen      Archivo del que se lee (para los avisos)
+     * @return La acción, o null si faltan campos o no son válidos
+     */
+    KeybindAction crearAccion(Map<String, Object> datosAccion, String origen) {
+        String id = String.valueOf(datosAccion.getOrDefault("id", ""));
+        String label = String.valueOf(datosAccion.getOrDefault("label", ""));
+        int defaultKey = leerEntero(datosAccion, "default_key", 0);
+        String tipo = String.valueOf(datosAccion.getOrDefault("tipo",
+                datosAccion.getOrDefault("type", RegistroManejadores.TIPO_POR_DEFECTO)));
+        String permiso = String.valueOf(datosAccion.getOrDefault("permiso", ""));
+        int limitePorSegundo = Math.max(0, leerEntero(datosAccion, "limite_por_segundo", 0));
+        int limiteRafaga = Math.max(1, leerEntero(datosAccion, "limite_rafaga", limitePorSegundo));
+        int enfriamientoMs = Math.max(0, leerEntero(datosAccion, "cooldown_ms", 0));
+
+        // Validar que los campos obligatorios no estén vacíos
+        if (id.isEmpty() || label.isEmpty()) {
+            getLogger().warning(
+                    "Acción con datos incompletos encontrada en " + origen + ". "
+                            + "Se requiere: id y label. Saltando...");
+            return null;
+        }
+
+        // El mod rechaza la lista binaria entera si un texto supera el límite:
+        // el id identifica la acción y no se puede recortar, el label sí
+        if (id.length() > ProtocoloTeclas.LONGITUD_MAXIMA_TEXTO) {
+            getLogger().warning("Acción con un id de más de " + ProtocoloTeclas.LONGITUD_MAXIMA_TEXTO
+                    + " caracteres encontrada en " + origen + ". Saltando...");
+            return null;
+        }
+        if (label.length() > ProtocoloTeclas.LONGITUD_MAXIMA_TEXTO) {
+            getLogger().warning("El label de la acción '" + id + "' tiene más de "
+                    + ProtocoloTeclas.LONGITUD_MAXIMA_TEXTO + " caracteres; se recorta.");
+            label = recortar(label, ProtocoloTeclas.LONGITUD_MAXIMA_TEXTO);
+        }
+
+        // Preparar el manejador del tipo (valida sus campos propios, ej: comando)
+        ManejadorAccion manejador;
+        try {
+            manejador = registroManejadores.crear(tipo, datosAccion);
+        } catch (IllegalArgumentException e) {
+            getLogger().warning("Acción '" + id + "' de tipo '" + tipo + "' inválida: "
+                    + e.getMessage() + ". Saltando...");
+            return null;
+        }
+
+        return new KeybindAction(id, label, defaultKey, tipo, manejador, permiso,
+                limitePorSegundo, limiteRafaga, enfriamientoMs, KeybindAction.SIN_HANDLE);
+    }
+
+    /**
+     * Recorta un texto sin partir un par sustituto (caracteres fuera del BMP).
+     *
+     * @param texto    Texto a recortar
+     * @param longitud Longitud máxima en caracteres
+     * @return Texto de como mucho longitud caracteres
+     */
+    static String recortar(String texto, int longitud) {
+        if (texto.length() <= longitud) {
+            return texto;
+        }
+        int fin = Character.isHighSurrogate(texto.charAt(longitud - 1)) ? longitud - 1 : longitud;
+        return texto.substring(0, fin);
+    }
 
-                getLogger().info(
-                        "Acción cargada: '" + id + "' -> /" + comando
-                                + " (tecla: " + defaultKey + ")");
+    /**
+     * Lee un campo numérico opcional de una acción de config.yml.
+     *
+     * @param datosAccion Datos de la acción
+     * @param clave       Nombre del campo
+     * @param defecto     Valor si el campo no existe o no es numérico
+     * @return Valor del campo
+     */
+    private static int leerEntero(Map<String, Object> datosAccion, String clave, int defecto) {
+        Object valor = datosAccion.get(clave);
+        return valor instanceof Number numero ? numero.intValue() : defecto;
+    }
+
+    /**
+     * Asigna los handles de la nueva generación y construye el array de
+     * acciones por handle. Las acciones que ya existían conservan su
+     * handle; las nuevas ocupan el primer handle libre (reutilizando los
+     * huecos de las eliminadas, lo que es seguro porque la generación
+     * cambia).
+     *
+     * @param acciones Acciones de la nueva generación por ID (se actualizan con su handle)
+     * @param anterior Registro de la generación anterior
+     * @return Acciones indexadas por handle
+     */
+    private static KeybindAction[] asignarHandles(Map<String, KeybindAction> acciones, RegistroAcciones anterior) {
+        Set<Integer> handlesConservados = new HashSet<>();
+        for (String id : acciones.keySet()) {
+            KeybindAction accionAnterior = anterior.obtenerPorId(id);
+            if (accionAnterior != null) {
+                handlesConservados.add(accionAnterior.getHandle());
+            }
+        }
+
+        int siguienteLibre = 0;
+        int handleMaximo = -1;
+        for (Map.Entry<String, KeybindAction> entrada : acciones.entrySet()) {
+            KeybindAction accionAnterior = anterior.obtenerPorId(entrada.getKey());
+            int handle;
+            if (accionAnterior != null) {
+                handle = accionAnterior.getHandle();
+            } else {
+                while (handlesConservados.contains(siguienteLibre)) {
+                    siguienteLibre++;
+                }
+                handle = siguienteLibre++;
             }
+            entrada.setValue(entrada.getValue().conHandle(handle));
+            handleMaximo = Math.max(handleMaximo, handle);
         }
+
+        KeybindAction[] porHandle = new KeybindAction[handleMaximo + 1];
+        for (KeybindAction accion : acciones.values()) {
+            porHandle[accion.getHandle()] = accion;
+        }
+        return porHandle;
     }
 
     /**
@@ -164,7 +566,7 @@ public class SynchronizedKeyPlugin extends JavaPlugin {
      * @return Colección inmutable de todas las acciones
      */
     public Collection<KeybindAction> obtenerAcciones() {
-        return mapaAcciones.values();
+        return registro.obtenerAcciones();
     }
 
     /**
@@ -174,24 +576,167 @@ public class SynchronizedKeyPlugin extends JavaPlugin {
      * @return La acción encontrada, o null si no existe
      */
     public KeybindAction obtenerAccionPorId(String id) {
-        return mapaAcciones.get(id);
+        return registro.obtenerPorId(id);
     }
 
     /**
-     * Construye el JSON de acciones serializado como bytes UTF-8.
-     * Reutilizable por PlayerJoinListener y ReloadCommand.
+     * Busca una acción por su handle numérico.
+     * Rechaza los handles de una generación de configuración anterior,
+     * ya que tras un reload pueden apuntar a otra acción.
      *
-     * Formato: [{"id":"...", "label":"...", "default_key":N}, ...]
+     * @param generacionCliente Generación con la que el cliente recibió el handle
+     * @param handle            Handle de la acción
+     * @return La acción encontrada, o null si el handle no es válido o está obsoleto
+     */
+    public KeybindAction obtenerAccionPorHandle(int generacionCliente, int handle) {
+        return registro.obtenerPorHandle(generacionCliente, handle);
+    }
+
+    /**
+     * @return Mensajes por segundo permitidos a cada jugador (0 = sin límite)
+     */
+    public int obtenerLimiteJugadorPorSegundo() {
+        return limiteJugadorPorSegundo;
+    }
+
+    /**
+     * @return Mensajes seguidos permitidos a cada jugador antes de aplicar el límite
+     */
+    public int obtenerLimiteJugadorRafaga() {
+        return limiteJugadorRafaga;
+    }
+
+    /**
+     * @return true si las pulsaciones repetidas de una acción en un mismo lote se ejecutan una sola vez
+     */
+    public boolean unePulsacionesRepetidas() {
+        return unirPulsacionesRepetidas;
+    }
+
+    /**
+     * Registro de tipos de acción. Otros plugins pueden registrar aquí sus
+     * propios tipos (ver RegistroManejadores).
      *
-     * @return bytes del JSON, o null si no hay acciones configuradas
+     * @return Registro de tipos de acción
      */
-    public byte[] construirJsonAcciones() {
-        Collection<KeybindAction> acciones = obtenerAcciones();
+    public RegistroManejadores obtenerRegistroManejadores() {
+        return registroManejadores;
+    }
 
-        if (acciones.isEmpty()) {
-            return null;
+    /**
+     * @return CommandMap del servidor, o null si no está disponible
+     */
+    public CommandMap obtenerMapaComandos() {
+        return mapaComandos;
+    }
+
+    /**
+     * Olvida los Command resueltos de todas las acciones de tipo comando, para volver a
+     * buscarlos en su próximo uso. Debe llamarse desde el hilo principal.
+     */
+    public void invalidarComandos() {
+        for (KeybindAction accion : registro.obtenerAcciones()) {
+            if (accion.getManejador() instanceof ComandoPreparado comando) {
+                comando.invalidar();
+            }
+        }
+    }
+
+    /**
+     * Devuelve las acciones que el jugador tiene permitidas en la generación
+     * actual. Se calculan consultando hasPermission una sola vez por
+     * generación (o tras invalidarlas) y se guardan en su sesión. La firma
+     * se interna, así que los jugadores con los mismos permisos comparten
+     * la misma instancia. Debe llamarse desde el hilo principal.
+     *
+     * @param jugador Jugador
+     * @param sesion  Sesión del jugador
+     * @return Firma internada de las acciones permitidas
+     */
+    FirmaPermisos obtenerPermisos(Player jugador, SesionCliente sesion) {
+        RegistroAcciones actual = registro;
+        FirmaPermisos permisos = sesion.obtenerPermisos(actual.getGeneracion());
+        if (permisos != null) {
+            return permisos;
+        }
+
+        long[] bits = new long[(actual.cantidadHandles() + 63) >>> 6];
+        for (int handle = 0; handle < actual.cantidadHandles(); handle++) {
+            KeybindAction accion = actual.accionEnHandle(handle);
+            if (accion != null && (!accion.requierePermiso() || jugador.hasPermission(accion.getPermiso()))) {
+                bits[handle >>> 6] |= 1L << handle;
+            }
+        }
+
+        FirmaPermisos nueva = new FirmaPermisos(bits);
+        permisos = firmasPermisos.putIfAbsent(nueva, nueva);
+        if (permisos == null) {
+            permisos = nueva;
+        }
+
+        sesion.guardarPermisos(permisos, actual.getGeneracion());
+        return permisos;
+    }
+
+    /**
+     * @return Firmas de permisos distintas calculadas en la generación actual
+     */
+    public int obtenerCantidadFirmasPermisos() {
+        return firmasPermisos.size();
+    }
+
+    /**
+     * Comprueba si el jugador puede usar una acción de la generación actual.
+     * Debe llamarse desde el hilo principal.
+     *
+     * @param jugador Jugador que pulsó la tecla
+     * @param sesion  Sesión del jugador
+     * @param accion  Acción de la generación actual
+     * @return true si tiene permiso
+     */
+    public boolean tienePermiso(Player jugador, SesionCliente sesion, KeybindAction accion) {
+        return obtenerPermisos(jugador, sesion).permite(accion.getHandle());
+    }
+
+    /**
+     * Vuelve a calcular los permisos del jugador y, si ha cambiado el
+     * conjunto de acciones que puede usar desde la última sincronización,
+     * le envía la lista nueva. Debe llamarse desde el hilo principal.
+     *
+     * @param jugador Jugador cuyos permisos pueden haber cambiado
+     */
+    public void revisarPermisos(Player jugador) {
+        SesionCliente sesion = gestorSesiones.obtenerSesion(jugador);
+        sesion.invalidarPermisos();
+
+        // Si aún no recibió ninguna lista, la cola inicial ya usará los permisos nuevos
+        FirmaPermisos enviados = sesion.getPermisosEnviados();
+        if (enviados == null || registro.getInstantanea().estaVacia()) {
+            return;
+        }
+        // Las firmas están internadas: distinta instancia es distinto conjunto de acciones
+        if (obtenerPermisos(jugador, sesion) != enviados) {
+            enviarSincronizacion(jugador);
         }
+    }
+
+    /**
+     * @return Generación de la configuración cargada actualmente
+     */
+    public int obtenerGeneracion() {
+        return registro.getGeneracion();
+    }
 
+    /**
+     * Construye el JSON de acciones serializado como bytes UTF-8.
+     * Solo se llama al crear una instantánea.
+     *
+     * Formato: [{"id":"...", "label":"...", "default_key":N}, ...]
+     *
+     * @param acciones Acciones a incluir
+     * @return bytes del JSON
+     */
+    private static byte[] construirJsonAcciones(Collection<KeybindAction> acciones) {
         JsonArray arrayAcciones = new JsonArray();
         for (KeybindAction accion : acciones) {
             JsonObject objetoAccion = new JsonObject();
@@ -203,4 +748,291 @@ public class SynchronizedKeyPlugin extends JavaPlugin {
 
         return arrayAcciones.toString().getBytes(StandardCharsets.UTF_8);
     }
+
+    /**
+     * Serializa los paquetes de sincronización de una lista de acciones de
+     * la generación actual: la lista completa o la filtrada por los permisos
+     * de un jugador.
+     *
+     * Formato binario completo:
+     * [versión][TIPO_SINCRONIZACION][VarInt generación][long hash][cuerpo]
+     * Formato de confirmación de caché:
+     * [versión][TIPO_CONFIRMACION_CACHE][VarInt generación][long hash]
+     *
+     * El hash se calcula solo sobre el cuerpo, así que no cambia entre
+     * recargas que dejan las acciones igual. La lista completa y el delta
+     * se comprimen y fragmentan aquí, una sola vez, para los mods que lo
+     * admiten.
+     *
+     * @param generacion   Generación de configuración de las acciones
+     * @param acciones     Acciones a incluir
+     * @param anterior     Registro de la generación anterior (para el delta), o null para no calcularlo
+     * @param empaquetador Compresión y fragmentación configuradas
+     * @return Nueva instantánea con todos los paquetes ya serializados
+     */
+    private InstantaneaSincronizacion construirInstantanea(int generacion, Collection<KeybindAction> acciones,
+                                                           RegistroAcciones anterior,
+                                                           EmpaquetadorMensajes empaquetador) {
+        byte[] cuerpo = construirCuerpoBinario(acciones);
+        long hash = ProtocoloTeclas.calcularHash(cuerpo);
+
+        byte[] datosBinario = new ProtocoloTeclas.Escritor(ProtocoloTeclas.TIPO_SINCRONIZACION, cuerpo.length + 16)
+                .escribirVarInt(generacion)
+                .escribirLong(hash)
+                .escribirBytes(cuerpo)
+                .aBytes();
+        byte[] datosConfirmacion = new ProtocoloTeclas.Escritor(ProtocoloTeclas.TIPO_CONFIRMACION_CACHE, 16)
+                .escribirVarInt(generacion)
+                .escribirLong(hash)
+                .aBytes();
+
+        if (anterior == null) {
+            return new InstantaneaSincronizacion(generacion, acciones.size(), hash,
+                    datosBinario, datosConfirmacion, construirJsonAcciones(acciones),
+                    0, ProtocoloTeclas.SIN_HASH, null, empaquetador);
+        }
+
+        InstantaneaSincronizacion base = anterior.getInstantanea();
+        return new InstantaneaSincronizacion(generacion, acciones.size(), hash,
+                datosBinario, datosConfirmacion, construirJsonAcciones(acciones),
+                base.getGeneracion(), base.getHash(), construirDelta(generacion, acciones, anterior, hash),
+                empaquetador);
+    }
+
+    /**
+     * Devuelve la instantánea con solo las acciones de una firma de
+     * permisos. Se serializa la primera vez que algún jugador con esa firma
+     * la necesita y se comparte con todos los demás, así que el coste de
+     * una conexión no crece con el número de acciones.
+     *
+     * @param actual   Registro de la generación actual
+     * @param permisos Firma internada de las acciones permitidas
+     * @return Instantánea filtrada (sin delta, salvo la completa)
+     */
+    private InstantaneaSincronizacion obtenerInstantaneaFiltrada(RegistroAcciones actual, FirmaPermisos permisos) {
+        InstantaneaSincronizacion filtrada = permisos.getInstantanea();
+        if (filtrada != null) {
+            return filtrada;
+        }
+
+        List<KeybindAction> permitidas = new ArrayList<>(permisos.cantidadPermitidas());
+        for (KeybindAction accion : actual.obtenerAcciones()) {
+            if (permisos.permite(accion.getHandle())) {
+                permitidas.add(accion);
+            }
+        }
+        filtrada = construirInstantanea(actual.getGeneracion(), permitidas, null, actual.getEmpaquetador());
+        permisos.setInstantanea(filtrada);
+        return filtrada;
+    }
+
+    /**
+     * Construye el paquete delta entre la generación anterior y la actual.
+     * Se calcula una sola vez por recarga y se comparte entre todos los
+     * clientes que tenían la generación anterior.
+     *
+     * Formato: [versión][TIPO_DELTA][VarInt generación base][VarInt generación nueva]
+     * [long hash nuevo][VarInt eliminadas][VarInt handle]...
+     * [VarInt cambios] y por cada acción nueva o modificada:
+     * [VarInt handle][texto id][texto label][VarInt default_key]
+     *
+     * @param generacion Generación nueva
+     * @param acciones   Acciones de la generación nueva
+     * @param anterior   Registro de la generación anterior
+     * @param hash       Hash de la lista de la nueva generación
+     * @return bytes del paquete delta
+     */
+    private byte[] construirDelta(int generacion, Collection<KeybindAction> acciones,
+                                  RegistroAcciones anterior, long hash) {
+        Set<String> idsNuevos = new HashSet<>();
+        for (KeybindAction accion : acciones) {
+            idsNuevos.add(accion.getId());
+        }
+
+        List<KeybindAction> eliminadas = new ArrayList<>();
+        for (KeybindAction accionAnterior : anterior.obtenerAcciones()) {
+            if (!idsNuevos.contains(accionAnterior.getId())) {
+                eliminadas.add(accionAnterior);
+            }
+        }
+
+        List<KeybindAction> cambios = new ArrayList<>();
+        for (KeybindAction accion : acciones) {
+            KeybindAction accionAnterior = anterior.obtenerPorId(accion.getId());
+            // Las acciones de archivos de acciones.d sin cambios son el mismo objeto
+            if (accionAnterior != accion
+                    && (accionAnterior == null || !accionAnterior.mismosDatosCliente(accion))) {
+                cambios.add(accion);
+            }
+        }
+
+        ProtocoloTeclas.Escritor escritor = new ProtocoloTeclas.Escritor(
+                ProtocoloTeclas.TIPO_DELTA, 24 + eliminadas.size() * 2 + cambios.size() * 32);
+        escritor.escribirVarInt(anterior.getGeneracion())
+                .escribirVarInt(generacion)
+                .escribirLong(hash)
+                .escribirVarInt(eliminadas.size());
+        for (KeybindAction eliminada : eliminadas) {
+            escritor.escribirVarInt(eliminada.getHandle());
+        }
+        escritor.escribirVarInt(cambios.size());
+        for (KeybindAction accion : cambios) {
+            escribirAccion(escritor, accion);
+        }
+
+        getLogger().info("Delta de sincronización calculado: -" + eliminadas.size()
+                + " eliminadas, " + cambios.size() + " nuevas o modificadas.");
+        return escritor.aBytes();
+    }
+
+    /**
+     * Construye el cuerpo binario con la lista de acciones.
+     *
+     * Formato: [VarInt cantidad] y por cada acción:
+     * [VarInt handle][texto id][texto label][VarInt default_key]
+     *
+     * @param acciones Acciones a incluir
+     * @return bytes del cuerpo
+     */
+    private static byte[] construirCuerpoBinario(Collection<KeybindAction> acciones) {
+        ProtocoloTeclas.Escritor escritor = new ProtocoloTeclas.Escritor(acciones.size() * 32);
+        escritor.escribirVarInt(acciones.size());
+        for (KeybindAction accion : acciones) {
+            escribirAccion(escritor, accion);
+        }
+
+        return escritor.aBytes();
+    }
+
+    /**
+     * Escribe una acción con el formato común del cuerpo y del delta:
+     * [VarInt handle][texto id][texto label][VarInt default_key]
+     *
+     * @param escritor Escritor de destino
+     * @param accion   Acción a escribir
+     */
+    private static void escribirAccion(ProtocoloTeclas.Escritor escritor, KeybindAction accion) {
+        escritor.escribirVarInt(accion.getHandle())
+                .escribirTexto(accion.getId())
+                .escribirTexto(accion.getLabel())
+                .escribirVarInt(accion.getDefaultKey());
+    }
+
+    /**
+     * Obtiene la instantánea de paquetes de sincronización de la generación
+     * actual. Los bytes que contiene son compartidos entre todos los envíos.
+     *
+     * @return Instantánea actual (nunca null)
+     */
+    public InstantaneaSincronizacion obtenerInstantanea() {
+        return registro.getInstantanea();
+    }
+
+    /**
+     * Envía al jugador el paquete de sincronización de la instantánea actual,
+     * eligiendo el formato según su cliente (JSON, confirmación de caché,
+     * delta o lista completa). Si el jugador no tiene permiso para alguna
+     * acción, se le envía la lista compartida por los jugadores con sus
+     * mismos permisos. Debe llamarse desde el hilo principal.
+     *
+     * @param jugador Jugador destinatario
+     * @return true si se envió algo, false si no hay acciones configuradas
+     */
+    public boolean enviarSincronizacion(Player jugador) {
+        RegistroAcciones actual = registro;
+        if (actual.getInstantanea().estaVacia()) {
+            return false;
+        }
+
+        SesionCliente sesion = gestorSesiones.obtenerSesion(jugador);
+        FirmaPermisos permisos = obtenerPermisos(jugador, sesion);
+        InstantaneaSincronizacion paraJugador = obtenerInstantaneaFiltrada(actual, permisos);
+        for (byte[] paquete : paraJugador.paquetesPara(sesion)) {
+            jugador.sendPluginMessage(this, CANAL, paquete);
+        }
+        sesion.setPermisosEnviados(permisos);
+        sesion.marcarSincronizada();
+
+        // Tras este envío el cliente tiene (o confirma) la lista de este hash
+        if (sesion.usaProtocoloBinario()) {
+            sesion.setHashCliente(paraJugador.getHash());
+            sesion.setGeneracionCliente(paraJugador.getGeneracion());
+        }
+        return true;
+    }
+
+    /**
+     * Informa al cliente del enfriamiento restante de una acción, para que
+     * no envíe pulsaciones que el servidor va a rechazar. Solo se envía a
+     * clientes con protocolo binario. Debe llamarse desde el hilo principal.
+     *
+     * Formato: [versión][TIPO_ENFRIAMIENTO][VarInt generación][VarInt handle][VarInt ms restantes]
+     *
+     * @param jugador        Jugador destinatario
+     * @param sesion         Sesión del jugador
+     * @param accion         Acción en enfriamiento
+     * @param restanteMillis Milisegundos de enfriamiento restantes
+     */
+    public void enviarEnfriamiento(Player jugador, SesionCliente sesion, KeybindAction accion, long restanteMillis) {
+        if (!sesion.usaProtocoloBinario()) {
+            return;
+        }
+        byte[] datos = new ProtocoloTeclas.Escritor(ProtocoloTeclas.TIPO_ENFRIAMIENTO, 16)
+                .escribirVarInt(registro.getGeneracion())
+                .escribirVarInt(accion.getHandle())
+                .escribirVarInt((int) Math.min(Integer.MAX_VALUE, restanteMillis))
+                .aBytes();
+        jugador.sendPluginMessage(this, CANAL, datos);
+    }
+
+    /**
+     * Informa al mod de las capacidades del plugin. Solo se envía a los
+     * mods que anuncian CAPACIDAD_LOTE_PULSACIONES en el saludo: los
+     * anteriores no conocen este mensaje y siguen enviando una pulsación
+     * por paquete. Debe llamarse desde el hilo principal.
+     * Formato: [versión][TIPO_CAPACIDADES][byte capacidades]
+     *
+     * @param jugador Jugador al que se envían
+     */
+    public void enviarCapacidades(Player jugador) {
+        byte[] datos = new ProtocoloTeclas.Escritor(ProtocoloTeclas.TIPO_CAPACIDADES, 1)
+                .escribirByte(ProtocoloTeclas.CAPACIDAD_LOTE_PULSACIONES)
+                .aBytes();
+        jugador.sendPluginMessage(this, CANAL, datos);
+    }
+
+    /**
+     * @return Gestor de sesiones de los jugadores conectados
+     */
+    public GestorSesiones obtenerGestorSesiones() {
+        return gestorSesiones;
+    }
+
+    /**
+     * @return Difusor de la sincronización a todos los jugadores conectados
+     */
+    public DifusorSincronizacion obtenerDifusorSincronizacion() {
+        return difusorSincronizacion;
+    }
+
+    /**
+     * @return Cola de sincronización de los jugadores que se conectan
+     */
+    public ColaSincronizacionInicial obtenerColaSincronizacionInicial() {
+        return colaSincronizacionInicial;
+    }
+
+    /**
+     * @return Procesador de los mensajes y pulsaciones recibidos del mod
+     */
+    public ProcesadorPulsaciones obtenerProcesadorPulsaciones() {
+        return procesadorPulsaciones;
+    }
+
+    /**
+     * @return Rueda con los enfriamientos activos de las acciones
+     */
+    public RuedaEnfriamientos obtenerRuedaEnfriamientos() {
+        return ruedaEnfriamientos;
+    }
 }
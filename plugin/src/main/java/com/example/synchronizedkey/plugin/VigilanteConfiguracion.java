@@ -0,0 +1,219 @@
+package com.example.synchronizedkey.plugin;
+
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.FileConfiguration;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recarga automática de config.yml y de los archivos de acciones.d cuando
+ * cambian en disco (opcional, ver recarga_automatica en config.yml).
+ *
+ * Un hilo dedicado vigila la carpeta del plugin y la carpeta acciones.d
+ * con un WatchService; si acciones.d no existe al activar la recarga (o se
+ * borra y se vuelve a crear), se empieza a vigilar en cuanto aparece en la
+ * carpeta del plugin. Tras un cambio
+ * espera a que los archivos dejen de modificarse durante el tiempo
+ * configurado (los editores suelen escribir varias veces al guardar), y
+ * entonces lee y valida el YAML y construye el registro de acciones con
+ * sus paquetes, todo fuera del hilo principal. De acciones.d solo se
+ * vuelven a leer los archivos modificados. Solo la publicación del
+ * registro y el envío a los jugadores se hacen en el hilo principal, igual
+ * que con /sk reload.
+ *
+ * Si config.yml no es un YAML válido, o tiene acciones pero ninguna es
+ * válida (normalmente una edición a medias), se mantiene la configuración
+ * actual.
+ */
+public class VigilanteConfiguracion {
+
+    /** Espera sin cambios antes de recargar si no se configura otro valor */
+    private static final int ESPERA_MS_POR_DEFECTO = 500;
+
+    private final SynchronizedKeyPlugin plugin;
+
+    /** Servicio de vigilancia (null mientras está desactivada); solo lo cambia el hilo principal */
+    private WatchService servicio = null;
+
+    /** Hilo que espera los cambios (null mientras está desactivada) */
+    private Thread hilo = null;
+
+    /** Milisegundos sin cambios que se esperan antes de recargar */
+    private volatile long esperaMs = ESPERA_MS_POR_DEFECTO;
+
+    /**
+     * Constructor del vigilante.
+     *
+     * @param plugin Instancia del plugin principal
+     */
+    public VigilanteConfiguracion(SynchronizedKeyPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Activa o desactiva la vigilancia según la configuración recién
+     * cargada. Se llama desde el hilo principal en cada carga.
+     *
+     * @param config Configuración cargada
+     */
+    public void actualizar(FileConfiguration config) {
+        esperaMs = Math.max(50, config.getInt("recarga_automatica.espera_ms", ESPERA_MS_POR_DEFECTO));
+        boolean activada = config.getBoolean("recarga_automatica.activada", false);
+        if (activada && servicio == null) {
+            iniciar();
+        } else if (!activada && servicio != null) {
+            detener();
+            plugin.getLogger().info("Recarga automática de config.yml desactivada.");
+        }
+    }
+
+    private void iniciar() {
+        Path carpeta = plugin.getDataFolder().toPath();
+        Path carpetaAcciones = plugin.obtenerDirectorioAcciones().obtenerCarpeta().toPath();
+        WatchService nuevo;
+        try {
+            nuevo = carpeta.getFileSystem().newWatchService();
+            carpeta.register(nuevo, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            if (Files.isDirectory(carpetaAcciones)) {
+                vigilarCarpetaAcciones(nuevo, carpetaAcciones);
+            }
+        } catch (IOException e) {
+            plugin.getLogger().warning("No se pudo vigilar la carpeta del plugin; "
+                    + "la recarga automática de config.yml queda desactivada: " + e.getMessage());
+            return;
+        }
+
+        servicio = nuevo;
+        hilo = new Thread(() -> vigilar(nuevo, carpetaAcciones), "SynchronizedKey-Vigilante");
+        hilo.setDaemon(true);
+        hilo.start();
+        plugin.getLogger().info("Recarga automática de config.yml activada.");
+    }
+
+    private static void vigilarCarpetaAcciones(WatchService vigilado, Path carpetaAcciones) throws IOException {
+        carpetaAcciones.register(vigilado, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+    }
+
+    /**
+     * Detiene la vigilancia (al desactivarla o al deshabilitar el plugin).
+     */
+    public void detener() {
+        if (servicio == null) {
+            return;
+        }
+        try {
+            servicio.close();
+        } catch (IOException e) {
+            // El hilo termina igualmente al interrumpirlo
+        }
+        hilo.interrupt();
+        servicio = null;
+        hilo = null;
+    }
+
+    /**
+     * Bucle del hilo vigilante: espera un cambio de la configuración, deja pasar
+     * las escrituras seguidas y recarga una sola vez.
+     *
+     * @param vigilado        Servicio de vigilancia de este hilo
+     * @param carpetaAcciones Carpeta acciones.d (puede no existir todavía)
+     */
+    private void vigilar(WatchService vigilado, Path carpetaAcciones) {
+        try {
+            while (true) {
+                if (!afectaConfiguracion(vigilado.take(), vigilado, carpetaAcciones)) {
+                    continue;
+                }
+                WatchKey siguiente;
+                while ((siguiente = vigilado.poll(esperaMs, TimeUnit.MILLISECONDS)) != null) {
+                    afectaConfiguracion(siguiente, vigilado, carpetaAcciones);
+                }
+                recargar();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Vigilancia detenida
+        }
+    }
+
+    /**
+     * Consume los eventos de una clave y la prepara para los siguientes. Si
+     * acciones.d aparece en la carpeta del plugin, empieza a vigilarla.
+     *
+     * @param clave           Clave con eventos pendientes
+     * @param vigilado        Servicio de vigilancia de este hilo
+     * @param carpetaAcciones Carpeta acciones.d
+     * @return true si alguno de los eventos puede afectar a config.yml o a acciones.d
+     */
+    private boolean afectaConfiguracion(WatchKey clave, WatchService vigilado, Path carpetaAcciones) {
+        // Los eventos de la carpeta del plugin llevan el nombre del archivo; los de
+        // acciones.d, el de uno de sus archivos
+        boolean esCarpetaAcciones = clave.watchable() instanceof Path carpeta
+                && carpeta.getFileName().toString().equals(DirectorioAcciones.CARPETA);
+        boolean afecta = false;
+        for (WatchEvent<?> evento : clave.pollEvents()) {
+            if (!esCarpetaAcciones && evento.kind() == StandardWatchEventKinds.ENTRY_CREATE
+                    && evento.context() instanceof Path ruta
+                    && ruta.toString().equals(DirectorioAcciones.CARPETA)
+                    && Files.isDirectory(carpetaAcciones)) {
+                // Los archivos copiados antes de registrarla no generan eventos:
+                // recargar para leer los que ya tenga
+                try {
+                    vigilarCarpetaAcciones(vigilado, carpetaAcciones);
+                    afecta = true;
+                } catch (IOException e) {
+                    plugin.getLogger().warning("No se pudo vigilar la carpeta "
+                            + DirectorioAcciones.CARPETA + ": " + e.getMessage());
+                }
+            } else if (evento.kind() == StandardWatchEventKinds.OVERFLOW
+                    || (evento.context() instanceof Path ruta && (esCarpetaAcciones
+                    ? DirectorioAcciones.esArchivoAcciones(ruta.toString())
+                    : ruta.toString().equals("config.yml")))) {
+                afecta = true;
+            }
+        }
+        clave.reset();
+        return afecta;
+    }
+
+    /**
+     * Lee, valida y prepara la nueva configuración en este hilo, y programa
+     * su publicación en el hilo principal.
+     */
+    private void recargar() {
+        FileConfiguration config;
+        try {
+            config = plugin.leerConfiguracion();
+        } catch (IOException | InvalidConfigurationException e) {
+            plugin.getLogger().warning("La configuración ha cambiado pero config.yml no es válido; "
+                    + "se mantiene la configuración actual: " + e.getMessage());
+            return;
+        }
+
+        RegistroAcciones base = plugin.obtenerRegistro();
+        RegistroAcciones nuevo = plugin.construirRegistro(config, base);
+
+        List<?> listaAcciones = config.getList("acciones");
+        if (nuevo.cantidad() == 0 && listaAcciones != null && !listaAcciones.isEmpty()) {
+            plugin.getLogger().warning("config.yml ha cambiado pero ninguna de sus acciones es válida; "
+                    + "se mantiene la configuración actual.");
+            return;
+        }
+
+        try {
+            plugin.getServer().getScheduler().runTask(plugin,
+                    () -> plugin.aplicarRecargaAutomatica(config, base, nuevo));
+        } catch (IllegalStateException e) {
+            // El plugin se está deshabilitando
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.example.synchronizedkey.plugin;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Pruebas del empaquetado de mensajes grandes: umbral de compresión,
+ * reparto en fragmentos y reconstrucción del mensaje original a partir
+ * de los paquetes, igual que hace el mod.
+ */
+class EmpaquetadorMensajesTest {
+
+    /** Mensaje de sincronización que se comprime bien (IDs y labels repetitivos) */
+    private static byte[] mensajeRepetitivo(int acciones) {
+        ProtocoloTeclas.Escritor escritor = new ProtocoloTeclas.Escritor(ProtocoloTeclas.TIPO_SINCRONIZACION, 64);
+        escritor.escribirVarInt(acciones);
+        for (int i = 0; i < acciones; i++) {
+            escritor.escribirTexto("abrir_menu_" + i).escribirTexto("Abrir Menú " + i).escribirVarInt(77);
+        }
+        return escritor.aBytes();
+    }
+
+    /** Mensaje que no se puede comprimir */
+    private static byte[] mensajeAleatorio(int longitud) {
+        byte[] datos = new byte[longitud];
+        new Random(42).nextBytes(datos);
+        datos[0] = ProtocoloTeclas.VERSION;
+        datos[1] = ProtocoloTeclas.TIPO_SINCRONIZACION;
+        return datos;
+    }
+
+    private static int longitudVarInt(int valor) {
+        return new ProtocoloTeclas.Escritor(0).escribirVarInt(valor).aBytes().length;
+    }
+
+    /**
+     * Reensambla los fragmentos comprobando sus cabeceras.
+     *
+     * @return Mensaje reensamblado
+     */
+    private static byte[] reensamblar(byte[][] fragmentos, int tamanoFragmento) {
+        ByteArrayOutputStream mensaje = new ByteArrayOutputStream();
+        int transferencia = -1;
+        for (int i = 0; i < fragmentos.length; i++) {
+            ProtocoloTeclas.Lector lector = new ProtocoloTeclas.Lector(fragmentos[i]);
+            assertEquals(ProtocoloTeclas.VERSION, lector.leerByte());
+            assertEquals(ProtocoloTeclas.TIPO_FRAGMENTO, lector.leerByte());
+            int transferenciaFragmento = lector.leerVarInt();
+            if (i == 0) {
+                transferencia = transferenciaFragmento;
+            }
+            assertEquals(transferencia, transferenciaFragmento);
+            assertEquals(i, lector.leerVarInt());
+            assertEquals(fragmentos.length, lector.leerVarInt());
+
+            int cabecera = 2 + longitudVarInt(transferencia) + longitudVarInt(i) + longitudVarInt(fragmentos.length);
+            int trozo = fragmentos[i].length - cabecera;
+            assertTrue(trozo > 0 && trozo <= tamanoFragmento, "trozo " + i + ": " + trozo);
+            mensaje.write(fragmentos[i], cabecera, trozo);
+        }
+        return mensaje.toByteArray();
+    }
+
+    /**
+     * Descomprime un mensaje TIPO_COMPRIMIDO con el diccionario compartido.
+     *
+     * @return Mensaje original
+     */
+    private static byte[] descomprimir(byte[] comprimido) throws DataFormatException {
+        ProtocoloTeclas.Lector lector = new ProtocoloTeclas.Lector(comprimido);
+        assertEquals(ProtocoloTeclas.VERSION, lector.leerByte());
+        assertEquals(ProtocoloTeclas.TIPO_COMPRIMIDO, lector.leerByte());
+        int longitudOriginal = lector.leerVarInt();
+        int cabecera = 2 + longitudVarInt(longitudOriginal);
+
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(comprimido, cabecera, comprimido.length - cabecera);
+            byte[] resultado = new byte[longitudOriginal];
+            int leidos = inflater.inflate(resultado);
+            if (leidos == 0 && inflater.needsDictionary()) {
+                inflater.setDictionary(ProtocoloTeclas.DICCIONARIO);
+                leidos = inflater.inflate(resultado);
+            }
+            assertEquals(longitudOriginal, leidos);
+            assertTrue(inflater.finished());
+            return resultado;
+        } finally {
+            inflater.end();
+        }
+    }
+
+    @Test
+    void mensajeNuloDevuelveNulo() {
+        assertNull(new EmpaquetadorMensajes(1024, 1024).empaquetar(null));
+    }
+
+    @Test
+    void mensajePequenoSeEnviaTalCual() {
+        byte[] mensaje = mensajeRepetitivo(3);
+        byte[][] paquetes = new EmpaquetadorMensajes(1024, 32 * 1024).empaquetar(mensaje);
+
+        assertEquals(1, paquetes.length);
+        assertSame(mensaje, paquetes[0]);
+        assertSame(mensaje, EmpaquetadorMensajes.SIN_EMPAQUETAR.empaquetar(mensaje)[0]);
+    }
+
+    @Test
+    void mensajeGrandeSeComprimeYSeRecupera() throws DataFormatException {
+        byte[] mensaje = mensajeRepetitivo(200);
+        byte[][] paquetes = new EmpaquetadorMensajes(1024, 32 * 1024).empaquetar(mensaje);
+
+        assertEquals(1, paquetes.length);
+        assertTrue(paquetes[0].length < mensaje.length / 2, "comprimido: " + paquetes[0].length);
+        assertArrayEquals(mensaje, descomprimir(paquetes[0]));
+    }
+
+    @Test
+    void soloSeComprimeDesdeElUmbral() {
+        byte[] mensaje = mensajeRepetitivo(200);
+        EmpaquetadorMensajes justo = new EmpaquetadorMensajes(mensaje.length, 32 * 1024);
+        EmpaquetadorMensajes porEncima = new EmpaquetadorMensajes(mensaje.length + 1, 32 * 1024);
+
+        assertEquals(ProtocoloTeclas.TIPO_COMPRIMIDO, justo.empaquetar(mensaje)[0][1]);
+        assertSame(mensaje, porEncima.empaquetar(mensaje)[0]);
+    }
+
+    @Test
+    void mensajeIncompresibleNoSeComprime() {
+        byte[] mensaje = mensajeAleatorio(4000);
+        byte[][] paquetes = new EmpaquetadorMensajes(1024, 32 * 1024).empaquetar(mensaje);
+
+        assertEquals(1, paquetes.length);
+        assertSame(mensaje, paquetes[0]);
+    }
+
+    @Test
+    void mensajeSinComprimirSeFragmentaYSeReensambla() {
+        byte[] mensaje = mensajeAleatorio(5000);
+        byte[][] fragmentos = new EmpaquetadorMensajes(0, 1024).empaquetar(mensaje);
+
+        assertEquals(5, fragmentos.length);
+        assertArrayEquals(mensaje, reensamblar(fragmentos, 1024));
+    }
+
+    @Test
+    void fragmentosEnElLimiteDelTamano() {
+        EmpaquetadorMensajes empaquetador = new EmpaquetadorMensajes(0, 1024);
+
+        byte[] justo = mensajeAleatorio(1024);
+        assertSame(justo, empaquetador.empaquetar(justo)[0]);
+
+        byte[] unoMas = mensajeAleatorio(1025);
+        byte[][] fragmentos = empaquetador.empaquetar(unoMas);
+        assertEquals(2, fragmentos.length);
+        assertArrayEquals(unoMas, reensamblar(fragmentos, 1024));
+
+        byte[] doble = mensajeAleatorio(2048);
+        assertEquals(2, empaquetador.empaquetar(doble).length);
+    }
+
+    @Test
+    void elTamanoDeFragmentoTieneUnMinimo() {
+        byte[] mensaje = mensajeAleatorio(1024);
+        assertEquals(1, new EmpaquetadorMensajes(0, 10).empaquetar(mensaje).length);
+    }
+
+    @Test
+    void cadaMensajeUsaOtraTransferencia() {
+        EmpaquetadorMensajes empaquetador = new EmpaquetadorMensajes(0, 1024);
+        byte[] mensaje = mensajeAleatorio(3000);
+
+        byte[][] primero = empaquetador.empaquetar(mensaje);
+        byte[][] segundo = empaquetador.empaquetar(mensaje);
+        int transferenciaPrimero = leerTransferencia(primero[0]);
+        int transferenciaSegundo = leerTransferencia(segundo[0]);
+        assertTrue(transferenciaPrimero != transferenciaSegundo);
+        assertTrue(transferenciaPrimero >= 0 && transferenciaSegundo >= 0);
+    }
+
+    private static int leerTransferencia(byte[] fragmento) {
+        ProtocoloTeclas.Lector lector = new ProtocoloTeclas.Lector(fragmento);
+        lector.leerByte();
+        lector.leerByte();
+        return lector.leerVarInt();
+    }
+
+    @Test
+    void mensajeComprimidoYFragmentadoSeRecupera() throws DataFormatException {
+        // Acciones con IDs poco repetitivos para que siga ocupando varios fragmentos
+        ProtocoloTeclas.Escritor escritor = new ProtocoloTeclas.Escritor(ProtocoloTeclas.TIPO_SINCRONIZACION, 64);
+        Random aleatorio = new Random(7);
+        escritor.escribirVarInt(2000);
+        for (int i = 0; i < 2000; i++) {
+            escritor.escribirTexto("accion_" + Long.toHexString(aleatorio.nextLong()))
+                    .escribirTexto("Acción " + i)
+                    .escribirVarInt(aleatorio.nextInt(350));
+        }
+        byte[] mensaje = escritor.aBytes();
+
+        byte[][] fragmentos = new EmpaquetadorMensajes(1024, 1024).empaquetar(mensaje);
+        assertTrue(fragmentos.length > 1);
+        byte[] comprimido = reensamblar(fragmentos, 1024);
+        assertTrue(comprimido.length < mensaje.length);
+        assertArrayEquals(mensaje, descomprimir(comprimido));
+    }
+}
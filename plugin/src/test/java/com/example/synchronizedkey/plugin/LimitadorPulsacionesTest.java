@@ -0,0 +1,109 @@
+package com.example.synchronizedkey.plugin;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Pruebas del límite GCRA: ráfaga, recuperación de tokens y cubos por
+ * acción, con instantes fijos en lugar de System.nanoTime.
+ */
+class LimitadorPulsacionesTest {
+
+    private static final long SEGUNDO = 1_000_000_000L;
+
+    /** Instante de partida arbitrario (System.nanoTime puede ser negativo) */
+    private static final long INICIO = -7 * SEGUNDO;
+
+    private static KeybindAction accion(int handle, int porSegundo, int rafaga) {
+        return new KeybindAction("accion" + handle, "Acción " + handle, 77, "comando", null, null,
+                porSegundo, rafaga, 0, handle);
+    }
+
+    @Test
+    void sinLimiteAceptaTodo() {
+        LimitadorPulsaciones limitador = new LimitadorPulsaciones();
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(limitador.permitirJugador(INICIO, 0, 1));
+            assertTrue(limitador.permitirAccion(INICIO, accion(0, 0, 1), 1));
+        }
+    }
+
+    @Test
+    void aceptaLaRafagaYRechazaElSiguiente() {
+        LimitadorPulsaciones limitador = new LimitadorPulsaciones();
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limitador.permitirJugador(INICIO, 10, 5), "mensaje " + i);
+        }
+        assertFalse(limitador.permitirJugador(INICIO, 10, 5));
+
+        // Un rechazo no consume: sigue rechazando hasta recuperar un token
+        assertFalse(limitador.permitirJugador(INICIO + SEGUNDO / 10 - 1, 10, 5));
+        assertTrue(limitador.permitirJugador(INICIO + SEGUNDO / 10, 10, 5));
+        assertFalse(limitador.permitirJugador(INICIO + SEGUNDO / 10, 10, 5));
+    }
+
+    @Test
+    void rafagaCeroSeTrataComoUno() {
+        LimitadorPulsaciones limitador = new LimitadorPulsaciones();
+        assertTrue(limitador.permitirJugador(INICIO, 4, 0));
+        assertFalse(limitador.permitirJugador(INICIO, 4, 0));
+        assertTrue(limitador.permitirJugador(INICIO + SEGUNDO / 4, 4, 0));
+    }
+
+    @Test
+    void ritmoConstanteAlLimiteSeAceptaSiempre() {
+        LimitadorPulsaciones limitador = new LimitadorPulsaciones();
+        for (int i = 0; i < 200; i++) {
+            assertTrue(limitador.permitirJugador(INICIO + i * (SEGUNDO / 20), 20, 1), "mensaje " + i);
+        }
+    }
+
+    @Test
+    void elTiempoInactivoNoAcumulaMasQueLaRafaga() {
+        LimitadorPulsaciones limitador = new LimitadorPulsaciones();
+        assertTrue(limitador.permitirJugador(INICIO, 10, 3));
+
+        long despues = INICIO + 3600 * SEGUNDO;
+        for (int i = 0; i < 3; i++) {
+            assertTrue(limitador.permitirJugador(despues, 10, 3));
+        }
+        assertFalse(limitador.permitirJugador(despues, 10, 3));
+    }
+
+    @Test
+    void cadaAccionTieneSuPropioCubo() {
+        LimitadorPulsaciones limitador = new LimitadorPulsaciones();
+        KeybindAction primera = accion(0, 1, 2);
+        KeybindAction segunda = accion(5, 1, 1);
+
+        assertTrue(limitador.permitirAccion(INICIO, primera, 1));
+        assertTrue(limitador.permitirAccion(INICIO, primera, 1));
+        assertFalse(limitador.permitirAccion(INICIO, primera, 1));
+
+        // Un handle mayor hace crecer el array sin perder el cubo de la primera
+        assertTrue(limitador.permitirAccion(INICIO, segunda, 1));
+        assertFalse(limitador.permitirAccion(INICIO, segunda, 1));
+        assertFalse(limitador.permitirAccion(INICIO, primera, 1));
+    }
+
+    @Test
+    void cambiarDeGeneracionReiniciaLosCubosDeAccion() {
+        LimitadorPulsaciones limitador = new LimitadorPulsaciones();
+        KeybindAction accion = accion(2, 1, 1);
+
+        assertTrue(limitador.permitirAccion(INICIO, accion, 1));
+        assertFalse(limitador.permitirAccion(INICIO, accion, 1));
+        assertTrue(limitador.permitirAccion(INICIO, accion, 2));
+        assertFalse(limitador.permitirAccion(INICIO, accion, 2));
+    }
+
+    @Test
+    void cuentaLosDescartes() {
+        LimitadorPulsaciones limitador = new LimitadorPulsaciones();
+        assertEquals(1, limitador.registrarDescarte());
+        assertEquals(2, limitador.registrarDescarte());
+    }
+}
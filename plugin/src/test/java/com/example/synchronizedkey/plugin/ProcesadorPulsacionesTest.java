@@ -0,0 +1,88 @@
+package com.example.synchronizedkey.plugin;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Pruebas de la validación de los lotes de pulsaciones. El lote entero se
+ * valida antes de consultar la configuración o el limitador, así que un
+ * lote mal formado se rechaza sin necesitar el plugin.
+ */
+class ProcesadorPulsacionesTest {
+
+    /**
+     * @param generacion Generación del lote
+     * @param pares      Handles y repeticiones alternados
+     * @return Lector posicionado tras la cabecera del lote
+     */
+    private static ProtocoloTeclas.Lector lote(int generacion, int... pares) {
+        ProtocoloTeclas.Escritor escritor = new ProtocoloTeclas.Escritor(0)
+                .escribirVarInt(generacion)
+                .escribirVarInt(pares.length / 2);
+        for (int valor : pares) {
+            escritor.escribirVarInt(valor);
+        }
+        return new ProtocoloTeclas.Lector(escritor.aBytes());
+    }
+
+    private static void assertRechazado(ProtocoloTeclas.Lector lector) {
+        ProcesadorPulsaciones procesador = new ProcesadorPulsaciones(null);
+        try {
+            assertThrows(IllegalArgumentException.class,
+                    () -> procesador.encolarLote(null, new SesionCliente(), lector));
+        } finally {
+            procesador.detener();
+        }
+    }
+
+    @Test
+    void rechazaRepeticionesQueDesbordanElTotal() {
+        // 1 + Integer.MAX_VALUE da un total negativo si se suma antes de comprobarlo
+        assertRechazado(lote(1, 0, 1, 1, Integer.MAX_VALUE));
+        assertRechazado(lote(1, 0, Integer.MAX_VALUE, 1, Integer.MAX_VALUE));
+        assertRechazado(lote(1, 0, 1, 1, Integer.MIN_VALUE));
+    }
+
+    @Test
+    void rechazaMasPulsacionesQueElMaximoDelLote() {
+        assertRechazado(lote(1, 0, ProtocoloTeclas.MAXIMO_PULSACIONES_LOTE + 1));
+        assertRechazado(lote(1, 0, ProtocoloTeclas.MAXIMO_PULSACIONES_LOTE, 1, 1));
+        assertRechazado(lote(1, 0, 40, 1, 25));
+    }
+
+    @Test
+    void rechazaRepeticionesNoPositivas() {
+        assertRechazado(lote(1, 0, 0));
+        assertRechazado(lote(1, 0, 1, 1, -1));
+    }
+
+    @Test
+    void rechazaCantidadesInvalidas() {
+        assertRechazado(lote(1));
+        assertRechazado(new ProtocoloTeclas.Lector(new ProtocoloTeclas.Escritor(0)
+                .escribirVarInt(1)
+                .escribirVarInt(ProtocoloTeclas.MAXIMO_PULSACIONES_LOTE + 1)
+                .aBytes()));
+    }
+
+    @Test
+    void rechazaHandlesRepetidos() {
+        assertRechazado(lote(1, 3, 1, 4, 1, 3, 1));
+    }
+
+    @Test
+    void rechazaLotesTruncadosOConDatosSobrantes() {
+        byte[] completo = new ProtocoloTeclas.Escritor(0)
+                .escribirVarInt(1).escribirVarInt(2)
+                .escribirVarInt(0).escribirVarInt(1)
+                .escribirVarInt(1).escribirVarInt(1)
+                .aBytes();
+        assertRechazado(new ProtocoloTeclas.Lector(Arrays.copyOf(completo, completo.length - 1)));
+
+        byte[] sobrante = Arrays.copyOf(completo, completo.length + 1);
+        assertRechazado(new ProtocoloTeclas.Lector(sobrante));
+    }
+}
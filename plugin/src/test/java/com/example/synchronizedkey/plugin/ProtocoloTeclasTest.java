@@ -0,0 +1,137 @@
+package com.example.synchronizedkey.plugin;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Pruebas del Escritor y el Lector del protocolo binario: ida y vuelta de
+ * cada tipo de campo, longitudes de los VarInt y mensajes mal formados.
+ */
+class ProtocoloTeclasTest {
+
+    @Test
+    void varIntIdaYVueltaEnLosLimitesDeCadaLongitud() {
+        int[] valores = {0, 1, 127, 128, 16_383, 16_384, 2_097_151, 2_097_152,
+                268_435_455, 268_435_456, Integer.MAX_VALUE, -1, Integer.MIN_VALUE};
+        int[] longitudes = {1, 1, 1, 2, 2, 3, 3, 4, 4, 5, 5, 5, 5};
+
+        for (int i = 0; i < valores.length; i++) {
+            byte[] datos = new ProtocoloTeclas.Escritor(0).escribirVarInt(valores[i]).aBytes();
+            assertEquals(longitudes[i], datos.length, "longitud de " + valores[i]);
+
+            ProtocoloTeclas.Lector lector = new ProtocoloTeclas.Lector(datos);
+            assertEquals(valores[i], lector.leerVarInt());
+            assertFalse(lector.quedanDatos());
+        }
+    }
+
+    @Test
+    void longIdaYVuelta() {
+        long[] valores = {0L, 1L, -1L, Long.MAX_VALUE, Long.MIN_VALUE, 0x0102030405060708L};
+        ProtocoloTeclas.Escritor escritor = new ProtocoloTeclas.Escritor(0);
+        for (long valor : valores) {
+            escritor.escribirLong(valor);
+        }
+
+        byte[] datos = escritor.aBytes();
+        assertEquals(valores.length * 8, datos.length);
+        ProtocoloTeclas.Lector lector = new ProtocoloTeclas.Lector(datos);
+        for (long valor : valores) {
+            assertEquals(valor, lector.leerLong());
+        }
+        assertFalse(lector.quedanDatos());
+    }
+
+    @Test
+    void textoIdaYVueltaConPrefijoDeLongitudEnBytes() {
+        String texto = "Abrir menú ñ 🔑";
+        byte[] datos = new ProtocoloTeclas.Escritor(0).escribirTexto(texto).escribirTexto("").aBytes();
+
+        ProtocoloTeclas.Lector lector = new ProtocoloTeclas.Lector(datos);
+        assertEquals(texto.getBytes(StandardCharsets.UTF_8).length, new ProtocoloTeclas.Lector(datos).leerVarInt());
+        assertEquals(texto, lector.leerTexto(64));
+        assertEquals("", lector.leerTexto(64));
+        assertFalse(lector.quedanDatos());
+    }
+
+    @Test
+    void cabeceraConVersionYTipo() {
+        byte[] datos = new ProtocoloTeclas.Escritor(ProtocoloTeclas.TIPO_PULSACION, 4)
+                .escribirVarInt(300)
+                .aBytes();
+
+        ProtocoloTeclas.Lector lector = new ProtocoloTeclas.Lector(datos);
+        assertEquals(ProtocoloTeclas.VERSION, lector.leerByte());
+        assertEquals(ProtocoloTeclas.TIPO_PULSACION, lector.leerByte());
+        assertEquals(300, lector.leerVarInt());
+        assertFalse(ProtocoloTeclas.esJsonLegado(datos));
+        assertTrue(ProtocoloTeclas.esJsonLegado("{\"action_id\":\"a\"}".getBytes(StandardCharsets.UTF_8)));
+        assertFalse(ProtocoloTeclas.esJsonLegado(new byte[0]));
+    }
+
+    @Test
+    void escritorCreceMasAllaDeLaCapacidadInicial() {
+        byte[] bloque = new byte[1000];
+        for (int i = 0; i < bloque.length; i++) {
+            bloque[i] = (byte) i;
+        }
+        byte[] datos = new ProtocoloTeclas.Escritor(0)
+                .escribirBytes(bloque)
+                .escribirBytes(bloque, 10, 5)
+                .aBytes();
+
+        assertEquals(1005, datos.length);
+        byte[] esperado = new byte[1005];
+        System.arraycopy(bloque, 0, esperado, 0, 1000);
+        System.arraycopy(bloque, 10, esperado, 1000, 5);
+        assertArrayEquals(esperado, datos);
+    }
+
+    @Test
+    void mensajeTruncadoSeRechaza() {
+        ProtocoloTeclas.Lector vacio = new ProtocoloTeclas.Lector(new byte[0]);
+        assertThrows(IllegalArgumentException.class, vacio::leerByte);
+
+        // VarInt con el bit de continuación en su último byte
+        ProtocoloTeclas.Lector varIntCortado = new ProtocoloTeclas.Lector(new byte[]{(byte) 0x80, (byte) 0x80});
+        assertThrows(IllegalArgumentException.class, varIntCortado::leerVarInt);
+
+        ProtocoloTeclas.Lector longCortado = new ProtocoloTeclas.Lector(new byte[7]);
+        assertThrows(IllegalArgumentException.class, longCortado::leerLong);
+    }
+
+    @Test
+    void varIntDeMasDeCincoBytesSeRechaza() {
+        byte[] datos = {(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x01};
+        assertThrows(IllegalArgumentException.class, () -> new ProtocoloTeclas.Lector(datos).leerVarInt());
+    }
+
+    @Test
+    void textoConLongitudInvalidaSeRechaza() {
+        byte[] largo = new ProtocoloTeclas.Escritor(0).escribirTexto("123456789").aBytes();
+        assertThrows(IllegalArgumentException.class, () -> new ProtocoloTeclas.Lector(largo).leerTexto(8));
+
+        // Anuncia 10 bytes pero solo trae 3
+        byte[] cortado = new ProtocoloTeclas.Escritor(0).escribirVarInt(10).escribirBytes(new byte[3]).aBytes();
+        assertThrows(IllegalArgumentException.class, () -> new ProtocoloTeclas.Lector(cortado).leerTexto(64));
+
+        byte[] negativo = new ProtocoloTeclas.Escritor(0).escribirVarInt(-1).aBytes();
+        assertThrows(IllegalArgumentException.class, () -> new ProtocoloTeclas.Lector(negativo).leerTexto(64));
+    }
+
+    @Test
+    void hashDeterministaYNuncaSinHash() {
+        byte[] cuerpo = "lista".getBytes(StandardCharsets.UTF_8);
+        assertEquals(ProtocoloTeclas.calcularHash(cuerpo), ProtocoloTeclas.calcularHash(cuerpo.clone()));
+        assertTrue(ProtocoloTeclas.calcularHash(cuerpo) != ProtocoloTeclas.SIN_HASH);
+        assertTrue(ProtocoloTeclas.calcularHash(cuerpo)
+                != ProtocoloTeclas.calcularHash("lista2".getBytes(StandardCharsets.UTF_8)));
+    }
+}
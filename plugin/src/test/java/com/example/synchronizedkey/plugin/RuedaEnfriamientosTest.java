@@ -0,0 +1,182 @@
+package com.example.synchronizedkey.plugin;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Pruebas de la rueda de enfriamientos con instantes fijos: tiempo
+ * restante, liberación de las entradas vencidas (también de las que dan
+ * más de una vuelta y tras un salto largo) y handles reutilizados.
+ */
+class RuedaEnfriamientosTest {
+
+    private static final long MILLI = 1_000_000L;
+
+    /** Instante de partida arbitrario, a mitad de una ranura */
+    private static final long INICIO = 123_456_789_012_345L;
+
+    private static KeybindAction accion(String id, int handle, int enfriamientoMs) {
+        return new KeybindAction(id, id, 77, "comando", null, null, 0, 1, enfriamientoMs, handle);
+    }
+
+    /** Avanza la rueda de tick en tick (50 ms) hasta el instante indicado */
+    private static void avanzarPorTicks(RuedaEnfriamientos rueda, long desde, long hasta) {
+        for (long t = desde; t < hasta; t += RuedaEnfriamientos.NANOS_POR_RANURA) {
+            rueda.avanzar(t);
+        }
+        rueda.avanzar(hasta);
+    }
+
+    @Test
+    void sinEnfriamientoNoQuedaTiempo() {
+        RuedaEnfriamientos rueda = new RuedaEnfriamientos(null);
+        assertEquals(0, rueda.restanteMillis(new SesionCliente(), accion("a", 3, 1000), INICIO));
+    }
+
+    @Test
+    void restanteSeRedondeaHaciaArribaHastaVencer() {
+        RuedaEnfriamientos rueda = new RuedaEnfriamientos(null);
+        SesionCliente sesion = new SesionCliente();
+        KeybindAction accion = accion("a", 0, 1000);
+
+        assertEquals(1000, rueda.iniciar(sesion, accion, INICIO));
+        assertEquals(1000, rueda.restanteMillis(sesion, accion, INICIO));
+        assertEquals(1000, rueda.restanteMillis(sesion, accion, INICIO + 1));
+        assertEquals(1, rueda.restanteMillis(sesion, accion, INICIO + 999 * MILLI + 1));
+        assertEquals(0, rueda.restanteMillis(sesion, accion, INICIO + 1000 * MILLI));
+    }
+
+    @Test
+    void liberaLaEntradaAlVencerYNoAntes() {
+        RuedaEnfriamientos rueda = new RuedaEnfriamientos(null);
+        SesionCliente sesion = new SesionCliente();
+        rueda.iniciar(sesion, accion("a", 0, 120), INICIO);
+
+        avanzarPorTicks(rueda, INICIO, INICIO + 119 * MILLI);
+        assertEquals(1, rueda.activas());
+
+        avanzarPorTicks(rueda, INICIO + 119 * MILLI, INICIO + 200 * MILLI);
+        assertEquals(0, rueda.activas());
+        assertNull(sesion.obtenerEnfriamiento(0));
+    }
+
+    @Test
+    void enfriamientoDeVariasVueltasSigueEnSuRanura() {
+        RuedaEnfriamientos rueda = new RuedaEnfriamientos(null);
+        SesionCliente sesion = new SesionCliente();
+        KeybindAction accion = accion("larga", 1, 10_000);
+        rueda.iniciar(sesion, accion, INICIO);
+
+        // Más de tres vueltas completas de la rueda antes de vencer
+        avanzarPorTicks(rueda, INICIO, INICIO + 9_999 * MILLI);
+        assertEquals(1, rueda.activas());
+        assertEquals(1, rueda.restanteMillis(sesion, accion, INICIO + 9_999 * MILLI));
+
+        avanzarPorTicks(rueda, INICIO + 9_999 * MILLI, INICIO + 10_100 * MILLI);
+        assertEquals(0, rueda.activas());
+    }
+
+    @Test
+    void unSaltoDeMasDeUnaVueltaLiberaTodasLasVencidas() {
+        RuedaEnfriamientos rueda = new RuedaEnfriamientos(null);
+        SesionCliente sesion = new SesionCliente();
+        for (int handle = 0; handle < 40; handle++) {
+            rueda.iniciar(sesion, accion("a" + handle, handle, 50 + handle * 100), INICIO);
+        }
+        KeybindAction pendiente = accion("pendiente", 40, 60_000);
+        rueda.iniciar(sesion, pendiente, INICIO);
+
+        // Lag de 30 segundos sin ticks
+        rueda.avanzar(INICIO + 30_000 * MILLI);
+        assertEquals(1, rueda.activas());
+        assertEquals(30_000, rueda.restanteMillis(sesion, pendiente, INICIO + 30_000 * MILLI));
+        for (int handle = 0; handle < 40; handle++) {
+            assertNull(sesion.obtenerEnfriamiento(handle), "handle " + handle);
+        }
+    }
+
+    @Test
+    void enfriamientoCeroSeLiberaEnElSiguienteAvance() {
+        RuedaEnfriamientos rueda = new RuedaEnfriamientos(null);
+        SesionCliente sesion = new SesionCliente();
+        rueda.iniciar(sesion, accion("otra", 1, 5_000), INICIO);
+        rueda.avanzar(INICIO + 500 * MILLI);
+
+        // Su ranura ya se recorrió: debe ir a la siguiente, no esperar una vuelta
+        KeybindAction instantanea = accion("instantanea", 0, 0);
+        rueda.iniciar(sesion, instantanea, INICIO + 500 * MILLI);
+        assertEquals(0, rueda.restanteMillis(sesion, instantanea, INICIO + 500 * MILLI));
+        rueda.avanzar(INICIO + 550 * MILLI);
+        assertEquals(1, rueda.activas());
+    }
+
+    @Test
+    void reiniciarLaAccionNoPierdeElEnfriamientoNuevo() {
+        RuedaEnfriamientos rueda = new RuedaEnfriamientos(null);
+        SesionCliente sesion = new SesionCliente();
+        KeybindAction accion = accion("a", 2, 1000);
+        rueda.iniciar(sesion, accion, INICIO);
+        rueda.iniciar(sesion, accion, INICIO + 500 * MILLI);
+
+        // Se libera la entrada antigua (como mucho una ranura después de
+        // vencer): la nueva sigue en la sesión
+        avanzarPorTicks(rueda, INICIO, INICIO + 1050 * MILLI);
+        assertEquals(1, rueda.activas());
+        assertEquals(450, rueda.restanteMillis(sesion, accion, INICIO + 1050 * MILLI));
+
+        avanzarPorTicks(rueda, INICIO + 1050 * MILLI, INICIO + 1600 * MILLI);
+        assertEquals(0, rueda.activas());
+        assertNull(sesion.obtenerEnfriamiento(2));
+    }
+
+    @Test
+    void unHandleReutilizadoNoHeredaElEnfriamiento() {
+        RuedaEnfriamientos rueda = new RuedaEnfriamientos(null);
+        SesionCliente sesion = new SesionCliente();
+        rueda.iniciar(sesion, accion("eliminada", 4, 10_000), INICIO);
+
+        assertEquals(0, rueda.restanteMillis(sesion, accion("nueva", 4, 10_000), INICIO + MILLI));
+        assertEquals(9_999, rueda.restanteMillis(sesion, accion("eliminada", 4, 10_000), INICIO + MILLI));
+    }
+
+    @Test
+    void lasSesionesNoComparten() {
+        RuedaEnfriamientos rueda = new RuedaEnfriamientos(null);
+        SesionCliente primera = new SesionCliente();
+        SesionCliente segunda = new SesionCliente();
+        KeybindAction accion = accion("a", 0, 1000);
+        rueda.iniciar(primera, accion, INICIO);
+
+        assertEquals(1000, rueda.restanteMillis(primera, accion, INICIO));
+        assertEquals(0, rueda.restanteMillis(segunda, accion, INICIO));
+    }
+
+    @Test
+    void lasEntradasLiberadasSeReutilizan() {
+        RuedaEnfriamientos rueda = new RuedaEnfriamientos(null);
+        SesionCliente sesion = new SesionCliente();
+        KeybindAction accion = accion("a", 0, 100);
+
+        rueda.iniciar(sesion, accion, INICIO);
+        RuedaEnfriamientos.Entrada primera = sesion.obtenerEnfriamiento(0);
+        rueda.avanzar(INICIO + 200 * MILLI);
+
+        rueda.iniciar(sesion, accion, INICIO + 200 * MILLI);
+        assertEquals(primera, sesion.obtenerEnfriamiento(0));
+    }
+
+    @Test
+    void cancelarVaciaLaRueda() {
+        RuedaEnfriamientos rueda = new RuedaEnfriamientos(null);
+        SesionCliente sesion = new SesionCliente();
+        for (int handle = 0; handle < 10; handle++) {
+            rueda.iniciar(sesion, accion("a" + handle, handle, 1000 * (handle + 1)), INICIO);
+        }
+
+        rueda.cancelar();
+        assertEquals(0, rueda.activas());
+        assertNull(sesion.obtenerEnfriamiento(9));
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.synchronizedkey.plugin;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Pruebas de la espera entre las resincronizaciones que pide un cliente.
+ */
+class SesionClienteTest {
+
+    private static final long SEGUNDO = 1_000_000_000L;
+
+    /** Instante de partida arbitrario (System.nanoTime puede ser negativo) */
+    private static final long INICIO = -3 * SEGUNDO;
+
+    @Test
+    void laPrimeraSolicitudSeAtiendeYa() {
+        assertEquals(0, new SesionCliente().programarSolicitudSincronizacion(INICIO, 2 * SEGUNDO));
+    }
+
+    @Test
+    void unaSolicitudSeguidaSeAplazaHastaCumplirLaEspera() {
+        SesionCliente sesion = new SesionCliente();
+        sesion.programarSolicitudSincronizacion(INICIO, 2 * SEGUNDO);
+
+        assertEquals(3 * SEGUNDO / 2, sesion.programarSolicitudSincronizacion(INICIO + SEGUNDO / 2, 2 * SEGUNDO));
+    }
+
+    @Test
+    void soloHayUnaAplazadaALaVez() {
+        SesionCliente sesion = new SesionCliente();
+        sesion.programarSolicitudSincronizacion(INICIO, 2 * SEGUNDO);
+        sesion.programarSolicitudSincronizacion(INICIO + 1, 2 * SEGUNDO);
+
+        for (int i = 2; i < 1000; i++) {
+            assertEquals(-1, sesion.programarSolicitudSincronizacion(INICIO + i, 2 * SEGUNDO));
+        }
+
+        // Atendida la aplazada, la siguiente vuelve a esperar desde ella
+        assertEquals(2 * SEGUNDO, sesion.programarSolicitudSincronizacion(INICIO + 2 * SEGUNDO, 2 * SEGUNDO));
+    }
+
+    @Test
+    void trasLaEsperaSeAtiendeYa() {
+        SesionCliente sesion = new SesionCliente();
+        sesion.programarSolicitudSincronizacion(INICIO, 2 * SEGUNDO);
+
+        assertEquals(0, sesion.programarSolicitudSincronizacion(INICIO + 2 * SEGUNDO, 2 * SEGUNDO));
+        assertEquals(0, sesion.programarSolicitudSincronizacion(INICIO + 60 * SEGUNDO, 2 * SEGUNDO));
+    }
+}